@@ -0,0 +1,172 @@
+package team.kaleni.ping.tower.backend.ping_service.cluster;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Членство узлов ping-service и владение мониторами по кольцу консистентного хеширования.
+ * Каждый узел раз в ping.cluster.heartbeat-interval-ms пишет свой heartbeat в ZSET
+ * ping:cluster:nodes (score - время в epoch millis); живыми считаются узлы,
+ * отметившиеся за последние ping.cluster.node-ttl-ms. Все узлы строят кольцо
+ * из одного и того же набора, поэтому сходятся на одном владельце монитора.
+ */
+@Component
+@ConditionalOnProperty(name = "ping.cluster.ownership", havingValue = "RING", matchIfMissing = true)
+@ConditionalOnWheelScheduler
+@RequiredArgsConstructor
+@Slf4j
+public class ClusterMembershipService implements MonitorOwnership {
+
+    private static final String NODES_KEY = "ping:cluster:nodes";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ping.cluster.node-id:}")
+    private String configuredNodeId;
+
+    @Value("${ping.cluster.node-ttl-ms:10000}")
+    private long nodeTtlMs;
+
+    @Value("${ping.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong ringVersion = new AtomicLong(0);
+
+    private String nodeId;
+    private volatile ConsistentHashRing ring;
+    private volatile Instant ringUpdatedAt;
+
+    @PostConstruct
+    public void init() {
+        nodeId = configuredNodeId.isBlank() ? defaultNodeId() : configuredNodeId;
+        // До первого heartbeat узел не знает о других и ничем не владеет
+        ring = new ConsistentHashRing(Set.of(), virtualNodes);
+        ringUpdatedAt = Instant.now();
+
+        Gauge.builder("ping.cluster.nodes", () -> ring.getNodes().size())
+                .description("Live ping-service nodes in the ownership ring")
+                .register(meterRegistry);
+
+        heartbeat();
+        log.info("Cluster membership started: node={}, virtualNodes={}, ttl={}ms", nodeId, virtualNodes, nodeTtlMs);
+    }
+
+    /**
+     * Отметиться в Redis, убрать просроченные узлы и перестроить кольцо, если состав изменился
+     */
+    @Scheduled(fixedDelayString = "${ping.cluster.heartbeat-interval-ms:2000}")
+    public void heartbeat() {
+        try {
+            long now = System.currentTimeMillis();
+            long aliveSince = now - nodeTtlMs;
+
+            redisTemplate.opsForZSet().add(NODES_KEY, nodeId, now);
+            redisTemplate.opsForZSet().removeRangeByScore(NODES_KEY, Double.NEGATIVE_INFINITY, aliveSince);
+            Set<Object> members = redisTemplate.opsForZSet().rangeByScore(NODES_KEY, aliveSince, Double.POSITIVE_INFINITY);
+
+            Set<String> liveNodes = new TreeSet<>();
+            if (members != null) {
+                members.forEach(member -> liveNodes.add(member.toString()));
+            }
+            liveNodes.add(nodeId);
+
+            updateRing(liveNodes);
+
+        } catch (Exception e) {
+            // Кольцо остаётся прежним; если Redis недоступен дольше node-ttl, остальные узлы заберут наши мониторы
+            log.error("Error sending cluster heartbeat for node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean owns(long monitorId) {
+        return nodeId.equals(ring.ownerOf(monitorId));
+    }
+
+    @Override
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public String ownerOf(long monitorId) {
+        return ring.ownerOf(monitorId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    public long getRingVersion() {
+        return ringVersion.get();
+    }
+
+    public Instant getRingUpdatedAt() {
+        return ringUpdatedAt;
+    }
+
+    /**
+     * Корректный выход: узел убирает себя из состава, и остальные перераспределяют
+     * его мониторы со следующим heartbeat, не дожидаясь node-ttl
+     */
+    @PreDestroy
+    public void leave() {
+        try {
+            redisTemplate.opsForZSet().remove(NODES_KEY, nodeId);
+            log.info("Node {} left the cluster", nodeId);
+        } catch (Exception e) {
+            log.error("Error leaving cluster for node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void updateRing(Set<String> liveNodes) {
+        if (liveNodes.equals(new TreeSet<>(ring.getNodes()))) {
+            return;
+        }
+
+        List<String> previous = ring.getNodes();
+        ring = new ConsistentHashRing(liveNodes, virtualNodes);
+        ringUpdatedAt = Instant.now();
+        long version = ringVersion.incrementAndGet();
+
+        log.info("Ownership ring v{} changed: {} -> {}", version, previous, ring.getNodes());
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("Error notifying ownership change listener: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private String defaultNodeId() {
+        try {
+            return InetAddress.getLocalHost().getHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        } catch (Exception e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package team.kaleni.ping.tower.backend.ping_service.cluster;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Бин нужен только в режиме ping.scheduler.mode=WHEEL: владение мониторами учитывает лишь колесо таймеров,
+ * а в режиме POLLING узлы разбирают общую ping:queue и членство в кластере ничего не меняет
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@ConditionalOnProperty(name = "ping.scheduler.mode", havingValue = "WHEEL")
+public @interface ConditionalOnWheelScheduler {
+}
@@ -0,0 +1,99 @@
+package team.kaleni.ping.tower.backend.ping_service.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Неизменяемое кольцо консистентного хеширования с виртуальными узлами.
+ * Монитор принадлежит узлу первой точки кольца по часовой стрелке от hash(monitorId).
+ * При добавлении или уходе узла переезжает только доля мониторов порядка 1/N.
+ */
+public class ConsistentHashRing {
+
+    private static final double HASH_SPACE = Math.pow(2, 64);
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final String[] owners;
+
+    public ConsistentHashRing(Collection<String> nodeIds, int virtualNodes) {
+        this.nodes = List.copyOf(new TreeSet<>(nodeIds));
+
+        TreeMap<Long, String> ring = new TreeMap<>();
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                // При совпадении точек побеждает меньший ID, чтобы кольцо было одинаковым на всех узлах
+                ring.merge(hash(node + "#" + i), node, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+
+        this.points = new long[ring.size()];
+        this.owners = new String[ring.size()];
+        int i = 0;
+        for (Map.Entry<Long, String> point : ring.entrySet()) {
+            points[i] = point.getKey();
+            owners[i] = point.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * Узел-владелец монитора; null, если кольцо пустое
+     */
+    public String ownerOf(long monitorId) {
+        if (points.length == 0) return null;
+
+        int index = Arrays.binarySearch(points, mix(monitorId));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Доля пространства хешей, принадлежащая каждому узлу
+     */
+    public Map<String, Double> shares() {
+        Map<String, Double> shares = new TreeMap<>();
+        for (int i = 0; i < points.length; i++) {
+            long previous = points[i == 0 ? points.length - 1 : i - 1];
+            // Длина дуги (previous, points[i]] как беззнаковое число; одна точка - всё кольцо
+            double arc = points.length == 1 ? HASH_SPACE : unsignedToDouble(points[i] - previous);
+            shares.merge(owners[i], arc / HASH_SPACE, Double::sum);
+        }
+        return shares;
+    }
+
+    /**
+     * Перемешивание битов (финализатор MurmurHash3), чтобы последовательные ID
+     * распределялись по кольцу равномерно
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * FNV-1a по байтам строки с последующим перемешиванием
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static double unsignedToDouble(long value) {
+        return (value >>> 1) * 2.0 + (value & 1);
+    }
+}
@@ -0,0 +1,16 @@
+package team.kaleni.ping.tower.backend.ping_service.cluster;
+
+/**
+ * Какие мониторы планирует этот узел в режиме колеса таймеров.
+ * Каждый монитор должен принадлежать ровно одному узлу.
+ */
+public interface MonitorOwnership {
+
+    boolean owns(long monitorId);
+
+    /**
+     * Подписаться на смену владельцев (узел присоединился или ушёл)
+     */
+    default void addChangeListener(Runnable listener) {
+    }
+}
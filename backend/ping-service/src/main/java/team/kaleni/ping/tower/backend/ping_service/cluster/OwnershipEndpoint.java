@@ -0,0 +1,52 @@
+package team.kaleni.ping.tower.backend.ping_service.cluster;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import team.kaleni.ping.tower.backend.ping_service.dto.ClusterOwnershipDto;
+
+import java.util.Map;
+
+/**
+ * /actuator/ownership - состав кольца и доли узлов,
+ * /actuator/ownership/{monitorId} - владелец конкретного монитора
+ */
+@Component
+@Endpoint(id = "ownership")
+@ConditionalOnProperty(name = "ping.cluster.ownership", havingValue = "RING", matchIfMissing = true)
+@ConditionalOnWheelScheduler
+@RequiredArgsConstructor
+public class OwnershipEndpoint {
+
+    private final ClusterMembershipService membershipService;
+
+    @Value("${ping.cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @ReadOperation
+    public ClusterOwnershipDto ownership() {
+        ConsistentHashRing ring = membershipService.getRing();
+        return ClusterOwnershipDto.builder()
+                .nodeId(membershipService.getNodeId())
+                .liveNodes(ring.getNodes())
+                .virtualNodes(virtualNodes)
+                .ringVersion(membershipService.getRingVersion())
+                .ringUpdatedAt(membershipService.getRingUpdatedAt())
+                .shares(ring.shares())
+                .build();
+    }
+
+    @ReadOperation
+    public Map<String, Object> ownerOf(@Selector Long monitorId) {
+        String owner = membershipService.ownerOf(monitorId);
+        return Map.of(
+                "monitorId", monitorId,
+                "owner", owner != null ? owner : "",
+                "local", membershipService.owns(monitorId)
+        );
+    }
+}
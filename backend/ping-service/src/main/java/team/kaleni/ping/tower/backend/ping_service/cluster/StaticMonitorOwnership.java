@@ -0,0 +1,38 @@
+package team.kaleni.ping.tower.backend.ping_service.cluster;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Статическое разбиение: узел с номером node-index из node-count
+ * владеет мониторами, у которых hash(monitorId) mod node-count = node-index.
+ * Узлы не следят друг за другом: мониторы упавшего узла не пингуются, пока он не вернётся.
+ */
+@Component
+@ConditionalOnProperty(name = "ping.cluster.ownership", havingValue = "STATIC")
+@ConditionalOnWheelScheduler
+@Slf4j
+public class StaticMonitorOwnership implements MonitorOwnership {
+
+    @Value("${ping.wheel.node-index:0}")
+    private int nodeIndex;
+
+    @Value("${ping.wheel.node-count:1}")
+    private int nodeCount;
+
+    @PostConstruct
+    public void init() {
+        if (nodeCount < 1 || nodeIndex < 0 || nodeIndex >= nodeCount) {
+            throw new IllegalStateException("Invalid partition: node-index=" + nodeIndex + ", node-count=" + nodeCount);
+        }
+        log.info("Static monitor partition: node {} of {}", nodeIndex, nodeCount);
+    }
+
+    @Override
+    public boolean owns(long monitorId) {
+        return Math.floorMod(ConsistentHashRing.mix(monitorId), (long) nodeCount) == nodeIndex;
+    }
+}
@@ -0,0 +1,295 @@
+package team.kaleni.ping.tower.backend.ping_service.codec;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Компактный бинарный формат значений monitor:config:{id} и monitor:status:{id}.
+ * Формат общий для URL Service и Ping Service: копия класса в другом сервисе должна оставаться байт-в-байт
+ * совместимой, любое изменение раскладки - только через новую версию.
+ * <p>
+ * Запись начинается с байта версии; старые JSON-значения начинаются с '{' и читаются как Map,
+ * поэтому оба формата сосуществуют, пока старые ключи не перезапишутся или не истечёт их TTL.
+ */
+public final class MonitorRecordCodec {
+
+    public static final byte VERSION_1 = 0x01;
+
+    private static final byte JSON_OBJECT_START = '{';
+
+    // Ограничение, чтобы стек ошибки не раздувал статус
+    private static final int MAX_ERROR_MESSAGE_LENGTH = 1024;
+
+    // Биты присутствия необязательных полей
+    private static final int STATUS_HAS_CHECKED_AT = 1;
+    private static final int STATUS_HAS_RESPONSE_TIME = 1 << 1;
+    private static final int STATUS_HAS_RESPONSE_CODE = 1 << 2;
+    private static final int STATUS_HAS_ERROR = 1 << 3;
+
+    private static final int CONFIG_HAS_HEADERS = 1;
+    private static final int CONFIG_HAS_BODY = 1 << 1;
+    private static final int CONFIG_HAS_CONTENT_TYPE = 1 << 2;
+    private static final int CONFIG_ENABLED = 1 << 3;
+
+    private static final ObjectMapper LEGACY_MAPPER = new ObjectMapper();
+
+    private MonitorRecordCodec() {
+    }
+
+    /**
+     * Конфигурация монитора в нейтральном для обоих сервисов виде
+     */
+    public record ConfigRecord(long monitorId, long ownerId, String name, String url, String method,
+                               Map<String, String> headers, String requestBody, String contentType,
+                               int timeoutMs, int intervalSeconds, boolean enabled) {
+    }
+
+    /**
+     * Последний результат проверки монитора
+     */
+    public record StatusRecord(String status, Instant lastCheckedAt, Integer responseTimeMs,
+                               Integer responseCode, String errorMessage) {
+    }
+
+    public static byte[] encodeConfig(ConfigRecord config) {
+        int flags = 0;
+        if (config.headers() != null && !config.headers().isEmpty()) flags |= CONFIG_HAS_HEADERS;
+        if (config.requestBody() != null) flags |= CONFIG_HAS_BODY;
+        if (config.contentType() != null) flags |= CONFIG_HAS_CONTENT_TYPE;
+        if (config.enabled()) flags |= CONFIG_ENABLED;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION_1);
+            out.writeByte(flags);
+            out.writeLong(config.monitorId());
+            out.writeLong(config.ownerId());
+            writeString(out, config.name());
+            writeString(out, config.url());
+            writeString(out, config.method());
+            out.writeInt(config.timeoutMs());
+            out.writeInt(config.intervalSeconds());
+
+            if ((flags & CONFIG_HAS_HEADERS) != 0) {
+                out.writeShort(config.headers().size());
+                for (Map.Entry<String, String> header : config.headers().entrySet()) {
+                    writeString(out, header.getKey());
+                    writeString(out, header.getValue());
+                }
+            }
+            if ((flags & CONFIG_HAS_BODY) != 0) writeString(out, config.requestBody());
+            if ((flags & CONFIG_HAS_CONTENT_TYPE) != 0) writeString(out, config.contentType());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Прочитать конфигурацию в любом из поддерживаемых форматов; null, если значения нет
+     */
+    public static ConfigRecord decodeConfig(byte[] value, Long monitorId) {
+        if (value == null || value.length == 0) return null;
+
+        if (value[0] == JSON_OBJECT_START) {
+            return configFromLegacyMap(readLegacyMap(value), monitorId);
+        }
+        checkVersion(value[0]);
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value, 1, value.length - 1))) {
+            int flags = in.readUnsignedByte();
+            long id = in.readLong();
+            long ownerId = in.readLong();
+            String name = readString(in);
+            String url = readString(in);
+            String method = readString(in);
+            int timeoutMs = in.readInt();
+            int intervalSeconds = in.readInt();
+
+            Map<String, String> headers = null;
+            if ((flags & CONFIG_HAS_HEADERS) != 0) {
+                int count = in.readUnsignedShort();
+                headers = new LinkedHashMap<>(count * 2);
+                for (int i = 0; i < count; i++) {
+                    headers.put(readString(in), readString(in));
+                }
+            }
+            String requestBody = (flags & CONFIG_HAS_BODY) != 0 ? readString(in) : null;
+            String contentType = (flags & CONFIG_HAS_CONTENT_TYPE) != 0 ? readString(in) : null;
+
+            return new ConfigRecord(id, ownerId, name, url, method, headers, requestBody, contentType,
+                    timeoutMs, intervalSeconds, (flags & CONFIG_ENABLED) != 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted config record for monitor " + monitorId, e);
+        }
+    }
+
+    public static byte[] encodeStatus(StatusRecord status) {
+        String errorMessage = status.errorMessage();
+        if (errorMessage != null && errorMessage.length() > MAX_ERROR_MESSAGE_LENGTH) {
+            errorMessage = errorMessage.substring(0, MAX_ERROR_MESSAGE_LENGTH);
+        }
+
+        int flags = 0;
+        if (status.lastCheckedAt() != null) flags |= STATUS_HAS_CHECKED_AT;
+        if (status.responseTimeMs() != null) flags |= STATUS_HAS_RESPONSE_TIME;
+        if (status.responseCode() != null) flags |= STATUS_HAS_RESPONSE_CODE;
+        if (errorMessage != null) flags |= STATUS_HAS_ERROR;
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION_1);
+            out.writeByte(flags);
+            writeString(out, status.status());
+            if ((flags & STATUS_HAS_CHECKED_AT) != 0) out.writeLong(status.lastCheckedAt().toEpochMilli());
+            if ((flags & STATUS_HAS_RESPONSE_TIME) != 0) out.writeInt(status.responseTimeMs());
+            if ((flags & STATUS_HAS_RESPONSE_CODE) != 0) out.writeShort(status.responseCode());
+            if ((flags & STATUS_HAS_ERROR) != 0) writeString(out, errorMessage);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Прочитать статус в любом из поддерживаемых форматов; null, если значения нет
+     */
+    public static StatusRecord decodeStatus(byte[] value) {
+        if (value == null || value.length == 0) return null;
+
+        if (value[0] == JSON_OBJECT_START) {
+            return statusFromLegacyMap(readLegacyMap(value));
+        }
+        checkVersion(value[0]);
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(value, 1, value.length - 1))) {
+            int flags = in.readUnsignedByte();
+            String status = readString(in);
+            Instant lastCheckedAt = (flags & STATUS_HAS_CHECKED_AT) != 0 ? Instant.ofEpochMilli(in.readLong()) : null;
+            Integer responseTimeMs = (flags & STATUS_HAS_RESPONSE_TIME) != 0 ? in.readInt() : null;
+            Integer responseCode = (flags & STATUS_HAS_RESPONSE_CODE) != 0 ? in.readUnsignedShort() : null;
+            String errorMessage = (flags & STATUS_HAS_ERROR) != 0 ? readString(in) : null;
+
+            return new StatusRecord(status, lastCheckedAt, responseTimeMs, responseCode, errorMessage);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted status record", e);
+        }
+    }
+
+    // Helper methods
+
+    private static void checkVersion(byte version) {
+        if (version != VERSION_1) {
+            throw new IllegalArgumentException("Unsupported monitor record version: " + version);
+        }
+    }
+
+    // Длина + UTF-8: writeUTF ограничен 64 КБ, а тело запроса может быть больше
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Object> readLegacyMap(byte[] value) {
+        try {
+            return LEGACY_MAPPER.readValue(value, new TypeReference<Map<String, Object>>() {
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted legacy JSON record", e);
+        }
+    }
+
+    private static ConfigRecord configFromLegacyMap(Map<String, Object> map, Long monitorId) {
+        return new ConfigRecord(
+                monitorId,
+                parseLong(map.get("ownerId"), 0L),
+                parseString(map.get("name")),
+                parseString(map.get("url")),
+                parseString(map.get("method")),
+                parseHeaders(map.get("headers")),
+                parseString(map.get("requestBody")),
+                parseString(map.get("contentType")),
+                parseInteger(map.get("timeoutMs"), 10000),
+                parseInteger(map.get("intervalSeconds"), 300),
+                !Boolean.FALSE.equals(map.get("enabled"))
+        );
+    }
+
+    private static StatusRecord statusFromLegacyMap(Map<String, Object> map) {
+        return new StatusRecord(
+                parseString(map.get("status")),
+                parseInstant(map.get("lastCheckedAt")),
+                map.get("responseTimeMs") != null ? parseInteger(map.get("responseTimeMs"), 0) : null,
+                map.get("responseCode") != null ? parseInteger(map.get("responseCode"), 0) : null,
+                parseString(map.get("errorMessage"))
+        );
+    }
+
+    private static String parseString(Object obj) {
+        return obj != null ? obj.toString() : null;
+    }
+
+    private static int parseInteger(Object obj, int defaultValue) {
+        if (obj instanceof Number number) return number.intValue();
+        if (obj == null) return defaultValue;
+        try {
+            return Integer.parseInt(obj.toString());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static long parseLong(Object obj, long defaultValue) {
+        if (obj instanceof Number number) return number.longValue();
+        if (obj == null) return defaultValue;
+        try {
+            return Long.parseLong(obj.toString());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    // Ping Service писал ISO-строку, URL Service - Instant через JavaTimeModule (секунды с дробной частью)
+    private static Instant parseInstant(Object obj) {
+        if (obj == null) return null;
+        if (obj instanceof Number number) {
+            return Instant.ofEpochMilli(Math.round(number.doubleValue() * 1000));
+        }
+        try {
+            return Instant.parse(obj.toString());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> parseHeaders(Object obj) {
+        if (!(obj instanceof Map<?, ?> raw)) return null;
+        Map<String, String> headers = new LinkedHashMap<>();
+        raw.forEach((key, value) -> headers.put(key.toString(), value != null ? value.toString() : null));
+        return headers;
+    }
+}
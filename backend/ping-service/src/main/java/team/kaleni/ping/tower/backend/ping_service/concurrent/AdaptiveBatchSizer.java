@@ -0,0 +1,66 @@
+package team.kaleni.ping.tower.backend.ping_service.concurrent;
+
+/**
+ * Адаптивный размер батча для захвата мониторов из очереди.
+ * Размер растёт (x2), пока есть отставание и задержка пингов в норме,
+ * и уменьшается (/2), когда сглаженная задержка превышает целевую.
+ */
+public class AdaptiveBatchSizer {
+
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final int minBatchSize;
+    private final int maxBatchSize;
+    private final long targetLatencyMs;
+
+    private volatile int currentBatchSize;
+    private volatile double latencyEwmaMs = -1;
+
+    public AdaptiveBatchSizer(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetLatencyMs) {
+        this.minBatchSize = Math.max(1, minBatchSize);
+        this.maxBatchSize = Math.max(this.minBatchSize, maxBatchSize);
+        this.targetLatencyMs = targetLatencyMs;
+        this.currentBatchSize = clamp(initialBatchSize);
+    }
+
+    /**
+     * Учесть время выполнения очередного пинга
+     */
+    public synchronized void recordLatency(long latencyMs) {
+        latencyEwmaMs = latencyEwmaMs < 0
+                ? latencyMs
+                : latencyEwmaMs + LATENCY_SMOOTHING * (latencyMs - latencyEwmaMs);
+    }
+
+    /**
+     * Пересчитать размер батча с учётом текущего отставания очереди
+     */
+    public synchronized void adjust(long backlog) {
+        if (latencyEwmaMs > targetLatencyMs) {
+            currentBatchSize = clamp(currentBatchSize / 2);
+        } else if (backlog > currentBatchSize) {
+            currentBatchSize = clamp(currentBatchSize * 2);
+        } else if (backlog < currentBatchSize / 2) {
+            currentBatchSize = clamp((int) Math.max(backlog, currentBatchSize - currentBatchSize / 4));
+        }
+    }
+
+    /**
+     * Размер следующего батча, не превышающий свободную ёмкость узла
+     */
+    public int nextBatchSize(int freeCapacity) {
+        return Math.min(currentBatchSize, Math.max(0, freeCapacity));
+    }
+
+    public int getCurrentBatchSize() {
+        return currentBatchSize;
+    }
+
+    public double getLatencyEwmaMs() {
+        return Math.max(0, latencyEwmaMs);
+    }
+
+    private int clamp(int value) {
+        return Math.max(minBatchSize, Math.min(maxBatchSize, value));
+    }
+}
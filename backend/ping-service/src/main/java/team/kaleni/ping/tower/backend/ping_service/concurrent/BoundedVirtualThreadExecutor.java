@@ -0,0 +1,101 @@
+package team.kaleni.ping.tower.backend.ping_service.concurrent;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executor на виртуальных потоках с ограничением числа одновременно выполняемых задач.
+ * Когда все разрешения заняты, {@link #execute(Runnable)} блокирует вызывающий поток
+ * до освобождения места, а не выполняет задачу в нём (в отличие от CallerRunsPolicy).
+ */
+public class BoundedVirtualThreadExecutor extends AbstractExecutorService {
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final int maxConcurrency;
+
+    public BoundedVirtualThreadExecutor(String threadNamePrefix, int maxConcurrency) {
+        this.delegate = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name(threadNamePrefix, 0).factory());
+        this.permits = new Semaphore(maxConcurrency);
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for a free ping slot", e);
+        }
+
+        try {
+            delegate.execute(() -> {
+                try {
+                    command.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Количество задач, выполняющихся в данный момент
+     */
+    public int getInFlightCount() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * Количество потоков, ожидающих свободного разрешения
+     */
+    public int getWaitingCount() {
+        return permits.getQueueLength();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Сколько задач можно передать, не блокируя вызывающий поток на семафоре
+     */
+    public int getFreeSlots() {
+        return Math.max(0, permits.availablePermits() - permits.getQueueLength());
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,151 @@
+package team.kaleni.ping.tower.backend.ping_service.concurrent;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров: уровень 0 делится на слоты по tickMs,
+ * каждый следующий уровень - в wheelSize раз грубее. Постановка задачи - O(1),
+ * при повороте колеса задачи из слота верхнего уровня опускаются на нижние.
+ * Ставить задачи можно из любого потока (через очередь входящих),
+ * поворачивает колесо один поток - вызовом advance.
+ */
+public class HierarchicalTimingWheel<T> {
+
+    /**
+     * Задача колеса: элемент и момент срабатывания (epoch millis)
+     */
+    public record Entry<T>(T item, long deadlineMillis) {
+    }
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<ArrayDeque<Entry<T>>[]> levels = new ArrayList<>();
+    private final ConcurrentLinkedQueue<Entry<T>> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    // Начало текущего слота уровня 0; меняется только потоком, вызывающим advance
+    private long clock;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMillis) {
+        if (tickMs <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("tickMs must be positive and wheelSize at least 2");
+        }
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.clock = startMillis - Math.floorMod(startMillis, tickMs);
+        addLevel();
+    }
+
+    /**
+     * Поставить задачу; потокобезопасно, в колесо она попадёт при следующем advance
+     */
+    public void schedule(T item, long deadlineMillis) {
+        inbox.offer(new Entry<>(item, deadlineMillis));
+        size.incrementAndGet();
+    }
+
+    /**
+     * Повернуть колесо до nowMillis; просроченные задачи передаются в expired в порядке слотов
+     */
+    public void advance(long nowMillis, Consumer<Entry<T>> expired) {
+        drainInbox(expired);
+
+        while (clock + tickMs <= nowMillis) {
+            clock += tickMs;
+
+            // Сначала верхние уровни, чей слот начинается на этом тике: их задачи опускаются ниже
+            for (int level = levels.size() - 1; level >= 1; level--) {
+                long levelTick = levelTickMs(level);
+                if (Math.floorMod(clock, levelTick) == 0) {
+                    flushSlot(level, slotIndex(clock, levelTick), expired);
+                }
+            }
+            flushSlot(0, slotIndex(clock, tickMs), expired);
+
+            drainInbox(expired);
+        }
+    }
+
+    /**
+     * Число задач в колесе, включая ещё не разобранные входящие
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public long getClock() {
+        return clock;
+    }
+
+    private void drainInbox(Consumer<Entry<T>> expired) {
+        Entry<T> entry;
+        while ((entry = inbox.poll()) != null) {
+            place(entry, expired);
+        }
+    }
+
+    /**
+     * Положить задачу на самый мелкий уровень, в пределах оборота которого лежит её срок.
+     * Задача в текущем слоте уровня 0 уже просрочена и срабатывает сразу.
+     */
+    private void place(Entry<T> entry, Consumer<Entry<T>> expired) {
+        long deadline = entry.deadlineMillis();
+
+        for (int level = 0; ; level++) {
+            if (level == levels.size()) {
+                addLevel();
+            }
+
+            long levelTick = levelTickMs(level);
+            long slotsAhead = Math.floorDiv(deadline, levelTick) - Math.floorDiv(clock, levelTick);
+
+            if (slotsAhead <= 0 && level == 0) {
+                size.decrementAndGet();
+                expired.accept(entry);
+                return;
+            }
+            if (slotsAhead < wheelSize) {
+                ArrayDeque<Entry<T>>[] slots = levels.get(level);
+                int index = slotIndex(deadline, levelTick);
+                if (slots[index] == null) {
+                    slots[index] = new ArrayDeque<>();
+                }
+                slots[index].add(entry);
+                return;
+            }
+        }
+    }
+
+    private void flushSlot(int level, int index, Consumer<Entry<T>> expired) {
+        ArrayDeque<Entry<T>>[] slots = levels.get(level);
+        ArrayDeque<Entry<T>> slot = slots[index];
+        if (slot == null || slot.isEmpty()) return;
+
+        slots[index] = null;
+        for (Entry<T> entry : slot) {
+            place(entry, expired);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void addLevel() {
+        levels.add(new ArrayDeque[wheelSize]);
+    }
+
+    private long levelTickMs(int level) {
+        long levelTick = tickMs;
+        for (int i = 0; i < level; i++) {
+            levelTick = Math.multiplyExact(levelTick, wheelSize);
+        }
+        return levelTick;
+    }
+
+    private int slotIndex(long millis, long levelTick) {
+        return (int) Math.floorMod(Math.floorDiv(millis, levelTick), (long) wheelSize);
+    }
+}
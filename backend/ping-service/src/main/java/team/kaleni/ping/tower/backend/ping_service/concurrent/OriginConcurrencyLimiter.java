@@ -0,0 +1,63 @@
+package team.kaleni.ping.tower.backend.ping_service.concurrent;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ограничение одновременных проверок на один origin (схема, хост, порт).
+ * Монитор, для origin которого лимит исчерпан, не занимает слот узла, а откладывается,
+ * поэтому зависший хост держит не больше maxPerOrigin слотов и не тормозит остальные.
+ */
+public class OriginConcurrencyLimiter {
+
+    private final int maxPerOrigin;
+    private final Map<String, Integer> inFlight = new ConcurrentHashMap<>();
+
+    public OriginConcurrencyLimiter(int maxPerOrigin) {
+        this.maxPerOrigin = Math.max(1, maxPerOrigin);
+    }
+
+    /**
+     * Занять слот origin; false, если лимит исчерпан
+     */
+    public boolean tryAcquire(String origin) {
+        boolean[] acquired = {false};
+        inFlight.compute(origin, (key, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= maxPerOrigin) {
+                return count;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        return acquired[0];
+    }
+
+    public void release(String origin) {
+        inFlight.computeIfPresent(origin, (key, count) -> count <= 1 ? null : count - 1);
+    }
+
+    /**
+     * Число origin, по которым сейчас идут проверки
+     */
+    public int getActiveOrigins() {
+        return inFlight.size();
+    }
+
+    /**
+     * Ключ origin для URL монитора; некорректный URL - отдельный ключ на строку
+     */
+    public static String originOf(String url) {
+        try {
+            URI uri = URI.create(url.trim());
+            String scheme = uri.getScheme() != null ? uri.getScheme().toLowerCase(Locale.ROOT) : "http";
+            String host = uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : "";
+            int port = uri.getPort() != -1 ? uri.getPort() : ("https".equals(scheme) ? 443 : 80);
+            return scheme + "://" + host + ":" + port;
+        } catch (Exception e) {
+            return String.valueOf(url);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.clickhouse.client.ClickHouseCredentials;
 import com.clickhouse.client.ClickHouseNode;
 import com.clickhouse.client.ClickHouseProtocol;
 import com.clickhouse.client.config.ClickHouseClientOption;
+import com.clickhouse.data.ClickHouseCompression;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
@@ -32,14 +33,20 @@ public class ClickhouseConfig {
     @Value("${clickhouse.socket-timeout:30000}")
     private int socketTimeout;
 
+    @Value("${clickhouse.compress:true}")
+    private boolean compress;
+
     @Bean
     public ClickHouseClient clickHouseClient() {
         log.info("Initializing ClickHouse client with URL: {}", clickhouseUrl);
         return ClickHouseClient.builder()
                 .option(ClickHouseClientOption.CONNECTION_TIMEOUT, connectionTimeout)
                 .option(ClickHouseClientOption.SOCKET_TIMEOUT, socketTimeout)
-                .option(ClickHouseClientOption.COMPRESS, false)
-                .option(ClickHouseClientOption.DECOMPRESS, false)
+                // LZ4 в обе стороны: ответы сервера и тела INSERT
+                .option(ClickHouseClientOption.COMPRESS, compress)
+                .option(ClickHouseClientOption.COMPRESS_ALGORITHM, ClickHouseCompression.LZ4)
+                .option(ClickHouseClientOption.DECOMPRESS, compress)
+                .option(ClickHouseClientOption.DECOMPRESS_ALGORITHM, ClickHouseCompression.LZ4)
                 .build();
     }
 
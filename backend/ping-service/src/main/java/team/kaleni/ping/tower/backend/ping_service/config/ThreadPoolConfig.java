@@ -1,9 +1,13 @@
 package team.kaleni.ping.tower.backend.ping_service.config;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import team.kaleni.ping.tower.backend.ping_service.concurrent.BoundedVirtualThreadExecutor;
+import team.kaleni.ping.tower.backend.ping_service.enums.PingExecutorType;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
@@ -14,6 +18,9 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class ThreadPoolConfig {
 
+    @Value("${ping.executor.type:PLATFORM}")
+    private PingExecutorType executorType;
+
     @Value("${ping.thread-pool.core-size:10}")
     private int corePoolSize;
 
@@ -23,8 +30,18 @@ public class ThreadPoolConfig {
     @Value("${ping.thread-pool.queue-capacity:100}")
     private int queueCapacity;
 
+    @Value("${ping.virtual-threads.max-concurrency:2000}")
+    private int virtualMaxConcurrency;
+
     @Bean("pingExecutorService")
-    public ExecutorService pingExecutorService() {
+    public ExecutorService pingExecutorService(MeterRegistry meterRegistry) {
+        if (executorType == PingExecutorType.VIRTUAL) {
+            return virtualThreadExecutor(meterRegistry);
+        }
+        return platformThreadExecutor(meterRegistry);
+    }
+
+    private ExecutorService platformThreadExecutor(MeterRegistry meterRegistry) {
         ThreadPoolExecutor executor = new ThreadPoolExecutor(
                 corePoolSize,
                 maxPoolSize,
@@ -38,10 +55,40 @@ public class ThreadPoolConfig {
                 new ThreadPoolExecutor.CallerRunsPolicy()
         );
 
+        Gauge.builder("ping.executor.in.flight", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Ping tasks currently running")
+                .tag("type", "platform")
+                .register(meterRegistry);
+        Gauge.builder("ping.executor.waiting", executor, e -> e.getQueue().size())
+                .description("Ping tasks waiting for a worker")
+                .tag("type", "platform")
+                .register(meterRegistry);
+
         log.info("Initialized ping executor service with core={}, max={}, queue={}",
                 corePoolSize, maxPoolSize, queueCapacity);
 
         return executor;
     }
-}
 
+    private ExecutorService virtualThreadExecutor(MeterRegistry meterRegistry) {
+        BoundedVirtualThreadExecutor executor =
+                new BoundedVirtualThreadExecutor("ping-vworker-", virtualMaxConcurrency);
+
+        Gauge.builder("ping.executor.in.flight", executor, BoundedVirtualThreadExecutor::getInFlightCount)
+                .description("Ping tasks currently running")
+                .tag("type", "virtual")
+                .register(meterRegistry);
+        Gauge.builder("ping.executor.waiting", executor, BoundedVirtualThreadExecutor::getWaitingCount)
+                .description("Threads waiting for a free ping slot")
+                .tag("type", "virtual")
+                .register(meterRegistry);
+        Gauge.builder("ping.executor.max.concurrency", executor, BoundedVirtualThreadExecutor::getMaxConcurrency)
+                .description("Per-node cap on concurrent ping tasks")
+                .tag("type", "virtual")
+                .register(meterRegistry);
+
+        log.info("Initialized virtual-thread ping executor with maxConcurrency={}", virtualMaxConcurrency);
+
+        return executor;
+    }
+}
@@ -0,0 +1,27 @@
+package team.kaleni.ping.tower.backend.ping_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Текущее кольцо владения мониторами глазами одного узла
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterOwnershipDto {
+    private String nodeId;
+    private List<String> liveNodes;
+    private int virtualNodes;
+    private long ringVersion;
+    private Instant ringUpdatedAt;
+    // Доля пространства хешей мониторов по узлам
+    private Map<String, Double> shares;
+}
@@ -0,0 +1,28 @@
+package team.kaleni.ping.tower.backend.ping_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import team.kaleni.ping.tower.backend.ping_service.enums.PingStatus;
+
+import java.time.Instant;
+
+/**
+ * Итог обработки монитора для пакетной записи в Redis:
+ * новый статус (может отсутствовать) и время следующего пинга
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PingCompletionDto {
+    private Long monitorId;
+    private PingStatus status;
+    private Integer responseTimeMs;
+    private Integer responseCode;
+    private String errorMessage;
+    private Instant checkedAt;
+    // Время следующего пинга на фазовой сетке монитора (PingSchedulePolicy)
+    private long nextPingEpochMilli;
+}
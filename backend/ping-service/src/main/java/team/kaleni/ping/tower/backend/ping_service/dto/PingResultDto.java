@@ -23,4 +23,10 @@ public class PingResultDto {
     private String url;
     private Map<String, Object> metadata;
     private boolean fromCache;
+    // Разбивка времени последней попытки по фазам, мс; null - фаза не наблюдалась
+    private Double dnsMs;
+    private Double connectMs;
+    private Double tlsMs;
+    private Double ttfbMs;
+    private Double downloadMs;
 }
@@ -0,0 +1,15 @@
+package team.kaleni.ping.tower.backend.ping_service.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueBacklogDto {
+    private long overdueCount;
+    private long lagSeconds;
+}
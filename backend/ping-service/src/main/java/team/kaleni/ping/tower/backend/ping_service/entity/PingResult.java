@@ -23,6 +23,11 @@ public class PingResult {
     private String errorMessage;
     private String url;
     private Instant createdAt;
+    private Double dnsMs;
+    private Double connectMs;
+    private Double tlsMs;
+    private Double ttfbMs;
+    private Double downloadMs;
 
     /**
      * 🔥 Создать PingResult из DTO
@@ -37,6 +42,11 @@ public class PingResult {
                 .errorMessage(dto.getErrorMessage())
                 .url(dto.getUrl())
                 .createdAt(Instant.now())
+                .dnsMs(dto.getDnsMs())
+                .connectMs(dto.getConnectMs())
+                .tlsMs(dto.getTlsMs())
+                .ttfbMs(dto.getTtfbMs())
+                .downloadMs(dto.getDownloadMs())
                 .build();
     }
 }
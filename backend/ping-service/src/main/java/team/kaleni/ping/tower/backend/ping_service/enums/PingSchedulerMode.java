@@ -0,0 +1,5 @@
+package team.kaleni.ping.tower.backend.ping_service.enums;
+
+public enum PingSchedulerMode {
+    POLLING, WHEEL
+}
@@ -0,0 +1,422 @@
+package team.kaleni.ping.tower.backend.ping_service.journal;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import team.kaleni.ping.tower.backend.ping_service.entity.PingResult;
+import team.kaleni.ping.tower.backend.ping_service.enums.PingStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал результатов пингов на диске на случай недоступности ClickHouse.
+ * Сегменты - файлы фиксированного размера, отображённые в память; запись = длина + CRC32 + данные,
+ * нулевая длина означает конец записанной части. Заполненный сегмент закрывается и открывается следующий.
+ * Сегменты читаются от старого к новому порциями прямо из отображения, без загрузки сегмента в кучу;
+ * позиция после каждой записанной в ClickHouse порции сохраняется в файл .offset рядом с сегментом,
+ * поэтому повтор после ошибки продолжает с первой незаписанной порции, а не с начала сегмента.
+ * Полностью воспроизведённый сегмент удаляется. Оборванная при падении процесса запись отсекается по CRC.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PingResultJournal {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String OFFSET_SUFFIX = ".offset";
+    // Длина записи + CRC32
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ping.journal.dir:./data/ping-journal}")
+    private String journalDir;
+
+    @Value("${ping.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    private Path directory;
+    private int segmentSizeBytes;
+
+    // Закрытые сегменты в порядке записи
+    private final Deque<Path> sealedSegments = new ArrayDeque<>();
+    private long nextSequence;
+
+    private Path activePath;
+    private FileChannel activeChannel;
+    private MappedByteBuffer activeBuffer;
+    private int activeRecords;
+
+    /**
+     * Сегмент, выданный на воспроизведение: записи читаются порциями с сохранённой позиции.
+     * Позиция фиксируется вызовом commit, сегмент удаляется вызовом acknowledge.
+     */
+    public final class Segment implements Closeable {
+
+        private final Path path;
+        private final FileChannel channel;
+        private final ByteBuffer buffer;
+        private int replayed;
+        private boolean exhausted;
+
+        private Segment(Path path, long offset) throws IOException {
+            this.path = path;
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.position((int) Math.min(offset, buffer.limit()));
+        }
+
+        /**
+         * Следующие до maxRows записей; пустой список - сегмент дочитан
+         */
+        public List<PingResult> next(int maxRows) throws IOException {
+            List<PingResult> results = new ArrayList<>(Math.min(maxRows, 1024));
+
+            while (!exhausted && results.size() < maxRows && buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                if (length <= 0) {
+                    exhausted = true;
+                    break;
+                }
+
+                int expectedCrc = buffer.getInt();
+                if (length > buffer.remaining()) {
+                    log.warn("Truncated record in ping journal segment {}, stopping after {} results",
+                            path.getFileName(), replayed + results.size());
+                    buffer.position(start);
+                    exhausted = true;
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != expectedCrc) {
+                    log.warn("Corrupted record in ping journal segment {}, stopping after {} results",
+                            path.getFileName(), replayed + results.size());
+                    buffer.position(start);
+                    exhausted = true;
+                    break;
+                }
+                results.add(decode(payload));
+            }
+
+            replayed += results.size();
+            return results;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public int getReplayed() {
+            return replayed;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        directory = Paths.get(journalDir);
+        segmentSizeBytes = segmentSizeMb * 1024 * 1024;
+        Files.createDirectories(directory);
+
+        // Сегменты, оставшиеся от прошлого запуска, ждут воспроизведения
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(this::isSegmentFile)
+                    .sorted()
+                    .forEach(sealedSegments::addLast);
+        }
+        // Позиции, оставшиеся от уже удалённых сегментов
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(path -> path.getFileName().toString().endsWith(OFFSET_SUFFIX))
+                    .filter(path -> !sealedSegments.contains(segmentOf(path)))
+                    .forEach(path -> {
+                        try {
+                            Files.deleteIfExists(path);
+                        } catch (IOException e) {
+                            log.warn("Failed to delete stale journal offset {}: {}", path, e.getMessage());
+                        }
+                    });
+        }
+        nextSequence = sealedSegments.stream()
+                .mapToLong(this::sequenceOf)
+                .max()
+                .orElse(0) + 1;
+
+        Gauge.builder("ping.journal.segments", this, PingResultJournal::getSegmentCount)
+                .description("Journal segments waiting to be replayed into ClickHouse")
+                .register(meterRegistry);
+
+        if (!sealedSegments.isEmpty()) {
+            log.warn("Found {} ping journal segments to replay in {}", sealedSegments.size(), directory);
+        }
+    }
+
+    /**
+     * Дописать результаты в журнал и сбросить их на диск
+     */
+    public synchronized void append(List<PingResult> results) throws IOException {
+        for (PingResult result : results) {
+            byte[] payload = encode(result);
+
+            if (RECORD_HEADER_BYTES + payload.length > segmentSizeBytes) {
+                log.warn("Ping result for monitor {} does not fit into a journal segment, dropping",
+                        result.getMonitorId());
+                continue;
+            }
+            if (activeBuffer == null || activeBuffer.remaining() < RECORD_HEADER_BYTES + payload.length) {
+                sealActive();
+                openActive();
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+
+            activeBuffer.putInt(payload.length);
+            activeBuffer.putInt((int) crc.getValue());
+            activeBuffer.put(payload);
+            activeRecords++;
+        }
+
+        if (activeBuffer != null) {
+            activeBuffer.force();
+        }
+    }
+
+    public synchronized boolean hasPending() {
+        return !sealedSegments.isEmpty() || activeRecords > 0;
+    }
+
+    /**
+     * Самый старый сегмент для воспроизведения, открытый с сохранённой позиции.
+     * Если закрытых сегментов нет, закрывается текущий, чтобы в него больше ничего не дописывалось.
+     * Сегмент нужно закрыть после использования.
+     */
+    public synchronized Optional<Segment> oldestSegment() throws IOException {
+        if (sealedSegments.isEmpty() && activeRecords > 0) {
+            sealActive();
+        }
+
+        Path path = sealedSegments.peekFirst();
+        if (path == null) return Optional.empty();
+
+        return Optional.of(new Segment(path, readOffset(path)));
+    }
+
+    /**
+     * Прочитанные до сих пор записи сегмента сохранены в ClickHouse - запоминаем позицию.
+     * Файл позиции заменяется атомарно, поэтому после падения он либо старый, либо новый.
+     */
+    public void commit(Segment segment) throws IOException {
+        Path offsetPath = offsetOf(segment.getPath());
+        Path tmp = offsetPath.resolveSibling(offsetPath.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.allocate(Long.BYTES).putLong(0, segment.buffer.position()));
+            channel.force(true);
+        }
+        Files.move(tmp, offsetPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Сегмент полностью записан в ClickHouse - удаляем его вместе с позицией
+     */
+    public synchronized void acknowledge(Segment segment) throws IOException {
+        sealedSegments.remove(segment.getPath());
+        Files.deleteIfExists(segment.getPath());
+        Files.deleteIfExists(offsetOf(segment.getPath()));
+        log.info("Replayed and deleted ping journal segment {} ({} results in this pass)",
+                segment.getPath().getFileName(), segment.getReplayed());
+    }
+
+    public synchronized int getSegmentCount() {
+        return sealedSegments.size() + (activeRecords > 0 ? 1 : 0);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        sealActive();
+    }
+
+    // Helper methods
+
+    private void openActive() throws IOException {
+        activePath = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextSequence++, SEGMENT_SUFFIX));
+        activeChannel = FileChannel.open(activePath,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeBuffer = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSizeBytes);
+        activeRecords = 0;
+        log.debug("Opened ping journal segment {}", activePath.getFileName());
+    }
+
+    private void sealActive() throws IOException {
+        if (activeChannel == null) return;
+
+        activeBuffer.force();
+        activeChannel.close();
+        if (activeRecords > 0) {
+            sealedSegments.addLast(activePath);
+        } else {
+            Files.deleteIfExists(activePath);
+        }
+
+        activePath = null;
+        activeChannel = null;
+        activeBuffer = null;
+        activeRecords = 0;
+    }
+
+    private long readOffset(Path segment) throws IOException {
+        Path offsetPath = offsetOf(segment);
+        if (!Files.exists(offsetPath)) return 0;
+
+        byte[] bytes = Files.readAllBytes(offsetPath);
+        if (bytes.length != Long.BYTES) {
+            log.warn("Ignoring malformed journal offset {}, replaying segment from the start", offsetPath.getFileName());
+            return 0;
+        }
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    private Path offsetOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + OFFSET_SUFFIX);
+    }
+
+    private Path segmentOf(Path offset) {
+        String name = offset.getFileName().toString();
+        return offset.resolveSibling(name.substring(0, name.length() - OFFSET_SUFFIX.length()) + SEGMENT_SUFFIX);
+    }
+
+    private boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private long sequenceOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private byte[] encode(PingResult result) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(result.getMonitorId());
+            out.writeLong(toEpochMilli(result.getPingTimestamp()));
+            writeString(out, result.getStatus().name());
+            writeNullableInt(out, result.getResponseTimeMs());
+            writeNullableInt(out, result.getResponseCode());
+            writeString(out, result.getErrorMessage());
+            writeString(out, result.getUrl());
+            out.writeLong(toEpochMilli(result.getCreatedAt()));
+            writeNullableDouble(out, result.getDnsMs());
+            writeNullableDouble(out, result.getConnectMs());
+            writeNullableDouble(out, result.getTlsMs());
+            writeNullableDouble(out, result.getTtfbMs());
+            writeNullableDouble(out, result.getDownloadMs());
+        }
+        return bytes.toByteArray();
+    }
+
+    private PingResult decode(byte[] payload) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            PingResult result = PingResult.builder()
+                    .monitorId(in.readLong())
+                    .pingTimestamp(Instant.ofEpochMilli(in.readLong()))
+                    .status(PingStatus.valueOf(readString(in)))
+                    .responseTimeMs(readNullableInt(in))
+                    .responseCode(readNullableInt(in))
+                    .errorMessage(readString(in))
+                    .url(readString(in))
+                    .createdAt(Instant.ofEpochMilli(in.readLong()))
+                    .build();
+
+            // Записи старых сегментов заканчиваются на created_at, разбивки по фазам в них нет
+            if (in.available() > 0) {
+                result.setDnsMs(readNullableDouble(in));
+                result.setConnectMs(readNullableDouble(in));
+                result.setTlsMs(readNullableDouble(in));
+                result.setTtfbMs(readNullableDouble(in));
+                result.setDownloadMs(readNullableDouble(in));
+            }
+            return result;
+        }
+    }
+
+    private long toEpochMilli(Instant instant) {
+        return (instant != null ? instant : Instant.now()).toEpochMilli();
+    }
+
+    private void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeInt(value);
+    }
+
+    private Integer readNullableInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private void writeNullableDouble(DataOutputStream out, Double value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeDouble(value);
+    }
+
+    private Double readNullableDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
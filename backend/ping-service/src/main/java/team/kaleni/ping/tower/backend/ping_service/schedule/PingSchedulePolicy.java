@@ -0,0 +1,87 @@
+package team.kaleni.ping.tower.backend.ping_service.schedule;
+
+import java.math.BigDecimal;
+
+/**
+ * Фазовое расписание пингов. Каждый монитор получает постоянное смещение
+ * phase = hash(monitorId) mod period, и пинги идут по сетке phase + k * period.
+ * Мониторы, созданные или восстановленные после ошибки одновременно, расходятся
+ * по всему периоду, а время следующего пинга не дрейфует на длительность проверки.
+ * <p>
+ * Политика общая для URL Service и Ping Service: копия класса в другом сервисе
+ * должна давать те же моменты. Score в ping:queue - секунды с дробной частью (миллисекунды).
+ */
+public final class PingSchedulePolicy {
+
+    // Окно, по которому разносятся первые пинги новых и включённых мониторов
+    public static final int INITIAL_WINDOW_SECONDS = 60;
+
+    private PingSchedulePolicy() {
+    }
+
+    /**
+     * Постоянное смещение монитора внутри периода, мс
+     */
+    public static long phaseMillis(long monitorId, int periodSeconds) {
+        return Math.floorMod(mix(monitorId), periodMillis(periodSeconds));
+    }
+
+    /**
+     * Первый момент сетки монитора строго после afterMillis
+     */
+    public static long nextSlotAfter(long monitorId, int periodSeconds, long afterMillis) {
+        long period = periodMillis(periodSeconds);
+        long phase = Math.floorMod(mix(monitorId), period);
+        return (Math.floorDiv(afterMillis - phase, period) + 1) * period + phase;
+    }
+
+    /**
+     * Следующий пинг после проверки, завершённой в nowMillis: ближайший момент сетки
+     * позже now + period/2. Пинг, выполненный вовремя, попадает ровно на следующий слот;
+     * сильно опоздавший пропускает слот, а не догоняет его сразу.
+     * Средняя задержка - period, поэтому так же считаются и повторы после ошибки.
+     */
+    public static long nextRun(long monitorId, int periodSeconds, long nowMillis) {
+        if (periodSeconds <= 0) return nowMillis;
+        return nextSlotAfter(monitorId, periodSeconds, nowMillis + periodMillis(periodSeconds) / 2);
+    }
+
+    /**
+     * Первый пинг нового или включённого монитора: не раньше notBeforeMillis,
+     * на сетке с периодом min(interval, INITIAL_WINDOW_SECONDS)
+     */
+    public static long initialRun(long monitorId, int intervalSeconds, long notBeforeMillis) {
+        int window = Math.max(1, Math.min(intervalSeconds, INITIAL_WINDOW_SECONDS));
+        return nextSlotAfter(monitorId, window, notBeforeMillis - 1);
+    }
+
+    /**
+     * Score ZSET для момента в epoch millis: секунды с тремя знаками после точки
+     */
+    public static double toScore(long epochMillis) {
+        return epochMillis / 1000.0;
+    }
+
+    /**
+     * Тот же score строкой для аргументов Lua-скриптов
+     */
+    public static String toScoreString(long epochMillis) {
+        return BigDecimal.valueOf(epochMillis, 3).toPlainString();
+    }
+
+    private static long periodMillis(int periodSeconds) {
+        return Math.max(1, periodSeconds) * 1000L;
+    }
+
+    /**
+     * Перемешивание битов (финализатор MurmurHash3), чтобы соседние ID получали далёкие фазы
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -1,13 +1,18 @@
 package team.kaleni.ping.tower.backend.ping_service.service;
 
 import com.clickhouse.client.*;
+import com.clickhouse.data.ClickHouseFormat;
 import com.clickhouse.data.ClickHouseRecord;
+import com.clickhouse.data.format.BinaryStreamUtils;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import team.kaleni.ping.tower.backend.ping_service.entity.PingResult;
 import team.kaleni.ping.tower.backend.ping_service.enums.PingStatus;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
@@ -23,43 +28,69 @@ public class ClickHouseService {
     private final ClickHouseClient clickHouseClient;
     private final ClickHouseNode clickHouseNode;
 
-    private static final String INSERT_PING_RESULT = """
+    // Колонки в порядке, в котором строки пишутся в RowBinary
+    private static final String INSERT_PING_RESULTS = """
+        INSERT INTO ping_history.ping_results (
+            monitor_id, ping_timestamp, status, response_time_ms,
+            response_code, error_message, url, created_at,
+            dns_ms, connect_ms, tls_ms, ttfb_ms, download_ms
+        )
+        """;
+
+    // Без фаз проверки - для таблицы, в которой ещё нет колонок из 07-ping-results-timings.sql
+    private static final String INSERT_PING_RESULTS_BASE = """
         INSERT INTO ping_history.ping_results (
             monitor_id, ping_timestamp, status, response_time_ms,
             response_code, error_message, url, created_at
-        ) VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+        )
         """;
 
+    private static final List<String> TIMING_COLUMNS = List.of("dns_ms", "connect_ms", "tls_ms", "ttfb_ms", "download_ms");
+
+    // Код ошибки ClickHouse NO_SUCH_COLUMN_IN_TABLE
+    private static final int NO_SUCH_COLUMN_IN_TABLE = 16;
+
+    // Есть ли в ping_results колонки фаз проверки; пока не проверено, считаем что есть
+    private volatile boolean timingColumns = true;
+
     /**
-     * Сохранить один результат пинга в ClickHouse
+     * Проверить, есть ли в ping_results колонки фаз проверки. Схему меняют только миграции
+     * (07-ping-results-timings.sql); без колонок строки пишутся без фаз.
      */
-    public void savePingResult(PingResult pingResult) {
+    @PostConstruct
+    public void detectTimingColumns() {
         try (ClickHouseResponse response = clickHouseClient
                 .read(clickHouseNode)
-                .write()
-                .query(INSERT_PING_RESULT)
-                .params(
-                        pingResult.getMonitorId(),
-                        formatInstant(pingResult.getPingTimestamp()),
-                        pingResult.getStatus().name(),
-                        pingResult.getResponseTimeMs(),
-                        pingResult.getResponseCode(),
-                        pingResult.getErrorMessage(),
-                        pingResult.getUrl(),
-                        formatInstant(pingResult.getCreatedAt())
-                )
+                .query("""
+                    SELECT count()
+                    FROM system.columns
+                    WHERE database = 'ping_history' AND table = 'ping_results'
+                      AND name IN ('dns_ms', 'connect_ms', 'tls_ms', 'ttfb_ms', 'download_ms')
+                    """)
                 .executeAndWait()) {
 
-            log.debug("Saved ping result for monitor {} to ClickHouse", pingResult.getMonitorId());
+            ClickHouseRecord record = response.firstRecord();
+            timingColumns = record != null && record.getValue(0).asInt() == TIMING_COLUMNS.size();
+            if (!timingColumns) {
+                log.warn("ping_history.ping_results has no timing columns (apply 07-ping-results-timings.sql), "
+                        + "ping phase timings will not be saved");
+            }
         } catch (Exception e) {
-            log.error("Error saving ping result for monitor {} to ClickHouse: {}",
-                    pingResult.getMonitorId(), e.getMessage(), e);
-            throw new RuntimeException("Failed to save ping result", e);
+            // ClickHouse недоступен: схема будет уточнена при первой ошибке записи
+            log.warn("Could not check timing columns of ping_history.ping_results: {}", e.getMessage());
         }
     }
 
     /**
-     * Пакетное сохранение результатов пингов
+     * Сохранить один результат пинга в ClickHouse
+     */
+    public void savePingResult(PingResult pingResult) {
+        savePingResultsBatch(List.of(pingResult));
+    }
+
+    /**
+     * Пакетное сохранение результатов пингов: строки стримятся в RowBinary прямо в тело HTTP-запроса
+     * (сжатое LZ4), без сборки SQL-строки и экранирования значений
      */
     public void savePingResultsBatch(List<PingResult> pingResults) {
         if (pingResults == null || pingResults.isEmpty()) {
@@ -67,11 +98,19 @@ public class ClickHouseService {
         }
 
         try {
-            for (PingResult result : pingResults) {
-                savePingResult(result);
-            }
-            log.info("Saved batch of {} ping results to ClickHouse", pingResults.size());
+            boolean withTimings = timingColumns;
+            try {
+                insertPingResults(pingResults, withTimings);
+            } catch (ClickHouseException e) {
+                if (!withTimings || !isNoSuchColumn(e)) throw e;
 
+                // Колонок фаз нет (миграция 07 не применена): повторить без них и уточнить схему
+                log.warn("ping_results has no timing columns, retrying batch of {} ping results without them: {}",
+                        pingResults.size(), e.getMessage());
+                timingColumns = false;
+                detectTimingColumns();
+                insertPingResults(pingResults, false);
+            }
         } catch (Exception e) {
             log.error("Error saving batch of {} ping results to ClickHouse: {}",
                     pingResults.size(), e.getMessage(), e);
@@ -79,45 +118,21 @@ public class ClickHouseService {
         }
     }
 
-    public void savePingResultsBatchOptimized(List<PingResult> pingResults) {
-        if (pingResults == null || pingResults.isEmpty()) {
-            return;
-        }
-
-        try {
-            StringBuilder queryBuilder = new StringBuilder(
-                    "INSERT INTO ping_history.ping_results (monitor_id, ping_timestamp, status, response_time_ms, " +
-                            "response_code, error_message, url, created_at) VALUES ");
-
-            for (int i = 0; i < pingResults.size(); i++) {
-                if (i > 0) queryBuilder.append(", ");
-
-                PingResult result = pingResults.get(i);
-                queryBuilder.append("(")
-                        .append(result.getMonitorId()).append(", ")
-                        .append("'").append(formatInstant(result.getPingTimestamp())).append("', ")
-                        .append("'").append(result.getStatus().name()).append("', ")
-                        .append(result.getResponseTimeMs() != null ? result.getResponseTimeMs() : "NULL").append(", ")
-                        .append(result.getResponseCode() != null ? result.getResponseCode() : "NULL").append(", ")
-                        .append(result.getErrorMessage() != null ? "'" + result.getErrorMessage().replace("'", "\\'") + "'" : "NULL").append(", ")
-                        .append("'").append(result.getUrl()).append("', ")
-                        .append("'").append(formatInstant(result.getCreatedAt())).append("'")
-                        .append(")");
-            }
-
-            try (ClickHouseResponse response = clickHouseClient
-                    .read(clickHouseNode)
-                    .write()
-                    .query(queryBuilder.toString())
-                    .executeAndWait()) {
-
-                log.info("Saved optimized batch of {} ping results to ClickHouse", pingResults.size());
-            }
+    private void insertPingResults(List<PingResult> pingResults, boolean withTimings) throws ClickHouseException {
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .write()
+                .format(ClickHouseFormat.RowBinary)
+                .query(withTimings ? INSERT_PING_RESULTS : INSERT_PING_RESULTS_BASE)
+                .data(output -> {
+                    for (PingResult result : pingResults) {
+                        writeRow(output, result, withTimings);
+                    }
+                })
+                .executeAndWait()) {
 
-        } catch (Exception e) {
-            log.error("Error saving optimized batch of {} ping results to ClickHouse: {}",
-                    pingResults.size(), e.getMessage(), e);
-            throw new RuntimeException("Failed to save ping results batch", e);
+            log.info("Saved batch of {} ping results to ClickHouse ({} rows written)",
+                    pingResults.size(), response.getSummary().getWrittenRows());
         }
     }
 
@@ -184,9 +199,71 @@ public class ClickHouseService {
     }
 
     // Helper methods
-    private String formatInstant(Instant instant) {
-        if (instant == null) return null;
-        return instant.atOffset(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS"));
+
+    /**
+     * Одна строка ping_results в RowBinary: UInt32, DateTime64(3) как Int64 миллисекунд,
+     * Nullable - байт-флаг перед значением, String - varint длины + UTF-8
+     */
+    private void writeRow(OutputStream output, PingResult result, boolean withTimings) throws IOException {
+        BinaryStreamUtils.writeUnsignedInt32(output, result.getMonitorId());
+        BinaryStreamUtils.writeInt64(output, toEpochMilli(result.getPingTimestamp()));
+        BinaryStreamUtils.writeString(output, result.getStatus().name());
+
+        if (result.getResponseTimeMs() == null) {
+            BinaryStreamUtils.writeNull(output);
+        } else {
+            BinaryStreamUtils.writeNonNull(output);
+            BinaryStreamUtils.writeUnsignedInt32(output, result.getResponseTimeMs());
+        }
+
+        if (result.getResponseCode() == null) {
+            BinaryStreamUtils.writeNull(output);
+        } else {
+            BinaryStreamUtils.writeNonNull(output);
+            BinaryStreamUtils.writeUnsignedInt16(output, result.getResponseCode());
+        }
+
+        if (result.getErrorMessage() == null) {
+            BinaryStreamUtils.writeNull(output);
+        } else {
+            BinaryStreamUtils.writeNonNull(output);
+            BinaryStreamUtils.writeString(output, result.getErrorMessage());
+        }
+
+        BinaryStreamUtils.writeString(output, result.getUrl() != null ? result.getUrl() : "");
+        BinaryStreamUtils.writeInt64(output, toEpochMilli(result.getCreatedAt()));
+
+        if (!withTimings) {
+            return;
+        }
+        writeNullableFloat32(output, result.getDnsMs());
+        writeNullableFloat32(output, result.getConnectMs());
+        writeNullableFloat32(output, result.getTlsMs());
+        writeNullableFloat32(output, result.getTtfbMs());
+        writeNullableFloat32(output, result.getDownloadMs());
+    }
+
+    private boolean isNoSuchColumn(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof ClickHouseException clickHouseException
+                    && clickHouseException.getErrorCode() == NO_SUCH_COLUMN_IN_TABLE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeNullableFloat32(OutputStream output, Double value) throws IOException {
+        if (value == null) {
+            BinaryStreamUtils.writeNull(output);
+        } else {
+            BinaryStreamUtils.writeNonNull(output);
+            BinaryStreamUtils.writeFloat32(output, value.floatValue());
+        }
+    }
+
+    private long toEpochMilli(Instant instant) {
+        return (instant != null ? instant : Instant.now()).toEpochMilli();
     }
 
     private Instant parseInstant(String dateTime) {
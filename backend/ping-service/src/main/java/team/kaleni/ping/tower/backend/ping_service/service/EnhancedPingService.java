@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -18,6 +19,8 @@ import team.kaleni.ping.tower.backend.ping_service.dto.MonitorConfigDto;
 import team.kaleni.ping.tower.backend.ping_service.dto.PingResultDto;
 import team.kaleni.ping.tower.backend.ping_service.enums.HttpMethod;
 import team.kaleni.ping.tower.backend.ping_service.enums.PingStatus;
+import team.kaleni.ping.tower.backend.ping_service.timing.CheckTiming;
+import team.kaleni.ping.tower.backend.ping_service.timing.CheckTimingHooks;
 
 import java.net.ConnectException;
 import java.net.UnknownHostException;
@@ -26,6 +29,7 @@ import java.time.Instant;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @Slf4j
@@ -39,90 +43,140 @@ public class EnhancedPingService {
     @Value("${ping.retry.delay:500}")
     private long retryDelayMs;
 
+    // Лимиты пула действуют на каждый удалённый адрес: Reactor Netty держит отдельный пул на хост
+    @Value("${ping.http.max-connections-per-host:20}")
+    private int maxConnectionsPerHost;
+
+    @Value("${ping.http.pending-acquire-max-count:40}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${ping.http.pending-acquire-timeout-ms:2000}")
+    private long pendingAcquireTimeoutMs;
+
+    @Value("${ping.http.max-idle-time:20s}")
+    private Duration maxIdleTime;
+
     @PostConstruct
     public void initializeWebClient() {
+        // Соединения к одному origin переиспользуются (keep-alive), LIFO отдаёт самое свежее,
+        // лишние простаивающие закрываются фоновым вытеснением. Очередь ожидания на хост
+        // ограничена и короткая: зависший хост быстро получает ошибку, а не копит запросы.
         ConnectionProvider connectionProvider = ConnectionProvider.builder("ping-pool")
-                .maxConnections(100)
-                .maxIdleTime(Duration.ofSeconds(20))
+                .maxConnections(maxConnectionsPerHost)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMs))
+                .maxIdleTime(maxIdleTime)
                 .maxLifeTime(Duration.ofSeconds(60))
-                .pendingAcquireTimeout(Duration.ofSeconds(10))
+                .evictInBackground(Duration.ofSeconds(30))
+                .lifo()
                 .build();
 
-        HttpClient httpClient = HttpClient.create(connectionProvider)
+        // Хуки фаз навешиваются один раз на общий клиент, замеры каждой проверки идут через контекст подписки
+        HttpClient httpClient = CheckTimingHooks.instrument(HttpClient.create(connectionProvider)
                 .followRedirect(true)
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 10000)
                 .responseTimeout(Duration.ofSeconds(30))
-                .compress(true);
+                .compress(true));
 
         this.webClient = WebClient.builder()
                 .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
 
-        log.info("Enhanced ping service initialized with connection pool");
+        log.info("Enhanced ping service initialized with per-host connection pools: maxConnections={}, pendingAcquire={}",
+                maxConnectionsPerHost, pendingAcquireMaxCount);
     }
 
     /**
-     * 🔥 Главный метод для пинга монитора
+     * 🔥 Главный метод для пинга монитора (блокирующий, для executor-режима)
      */
     public PingResultDto pingMonitor(MonitorConfigDto config) {
+        return pingMonitorReactive(config).block();
+    }
+
+    /**
+     * Неблокирующий пинг монитора: вся цепочка выполняется на event loop Netty
+     */
+    public Mono<PingResultDto> pingMonitorReactive(MonitorConfigDto config) {
         if (config.getUrl() == null || config.getUrl().trim().isEmpty()) {
-            return PingResultDto.builder()
+            return Mono.just(PingResultDto.builder()
                     .monitorId(config.getMonitorId())
                     .status(PingStatus.ERROR)
                     .errorMessage("URL is null or empty")
                     .responseTimeMs(0)
                     .timestamp(Instant.now())
                     .url(config.getUrl())
-                    .build();
+                    .build());
         }
 
-        long startTime = System.currentTimeMillis();
-        try {
-            WebClient.RequestHeadersSpec<?> requestSpec = buildRequest(config);
-
-            return requestSpec
-                    .retrieve()
-                    .toBodilessEntity()
-                    .timeout(Duration.ofMillis(config.getTimeoutMs()))
-                    .retryWhen(Retry.backoff(retryAttempts, Duration.ofMillis(retryDelayMs))
-                            .filter(this::isRetriableException))
-                    .map(response -> {
-                        long responseTime = System.currentTimeMillis() - startTime;
-                        HttpStatus status = (HttpStatus) response.getStatusCode();
-
-                        Map<String, Object> metadata = new HashMap<>();
-                        response.getHeaders().forEach((key, values) -> {
-                            if ("content-type".equalsIgnoreCase(key) ||
-                                    "server".equalsIgnoreCase(key)) {
-                                metadata.put(key, values.size() == 1 ? values.get(0) : values);
-                            }
+        return Mono.defer(() -> {
+            // Каждая попытка замеряется отдельно: в результат идёт время последней, а не сумма ретраев с паузами
+            AtomicReference<CheckTiming> lastAttempt = new AtomicReference<>(new CheckTiming());
+            try {
+                WebClient.RequestHeadersSpec<?> requestSpec = buildRequest(config);
+                Mono<ResponseEntity<Void>> exchange = requestSpec.retrieve().toBodilessEntity();
+
+                return Mono.defer(() -> {
+                            CheckTiming timing = new CheckTiming();
+                            lastAttempt.set(timing);
+                            return exchange.contextWrite(ctx -> ctx.put(CheckTiming.CONTEXT_KEY, timing));
+                        })
+                        .timeout(Duration.ofMillis(config.getTimeoutMs()))
+                        .retryWhen(Retry.backoff(retryAttempts, Duration.ofMillis(retryDelayMs))
+                                .filter(this::isRetriableException))
+                        .map(response -> {
+                            CheckTiming timing = lastAttempt.get();
+                            HttpStatus status = (HttpStatus) response.getStatusCode();
+
+                            Map<String, Object> metadata = new HashMap<>();
+                            response.getHeaders().forEach((key, values) -> {
+                                if ("content-type".equalsIgnoreCase(key) ||
+                                        "server".equalsIgnoreCase(key)) {
+                                    metadata.put(key, values.size() == 1 ? values.get(0) : values);
+                                }
+                            });
+
+                            PingStatus pingStatus = determinePingStatus(status.value());
+
+                            PingResultDto result = PingResultDto.builder()
+                                    .monitorId(config.getMonitorId())
+                                    .status(pingStatus)
+                                    .responseCode(status.value())
+                                    .responseTimeMs(totalMillis(timing))
+                                    .metadata(metadata)
+                                    .fromCache(false)
+                                    .timestamp(Instant.now())
+                                    .url(config.getUrl())
+                                    .build();
+                            applyTiming(result, timing);
+                            return result;
+                        })
+                        .onErrorResume(throwable -> {
+                            CheckTiming timing = lastAttempt.get();
+                            PingResultDto errorResult = createErrorResult(config, throwable, totalMillis(timing));
+                            applyTiming(errorResult, timing);
+                            return Mono.just(errorResult);
                         });
 
-                        PingStatus pingStatus = determinePingStatus(status.value());
-
-                        return PingResultDto.builder()
-                                .monitorId(config.getMonitorId())
-                                .status(pingStatus)
-                                .responseCode(status.value())
-                                .responseTimeMs((int) responseTime)
-                                .metadata(metadata)
-                                .fromCache(false)
-                                .timestamp(Instant.now())
-                                .url(config.getUrl())
-                                .build();
-                    })
-                    .onErrorResume(throwable -> {
-                        long responseTime = System.currentTimeMillis() - startTime;
-                        PingResultDto errorResult = createErrorResult(config, throwable, (int) responseTime);
-                        return Mono.just(errorResult);
-                    })
-                    .block();
-
-        } catch (Exception e) {
-            long responseTime = System.currentTimeMillis() - startTime;
-            log.error("Unexpected error pinging monitor {}: {}", config.getMonitorId(), e.getMessage());
-            return createErrorResult(config, e, (int) responseTime);
-        }
+            } catch (Exception e) {
+                log.error("Unexpected error pinging monitor {}: {}", config.getMonitorId(), e.getMessage());
+                return Mono.just(createErrorResult(config, e, totalMillis(lastAttempt.get())));
+            }
+        });
+    }
+
+    private int totalMillis(CheckTiming timing) {
+        return (int) Math.round(timing.getTotalMs());
+    }
+
+    /**
+     * Перенести разбивку по фазам в результат; фазы соединения пусты, если оно взято из пула
+     */
+    private void applyTiming(PingResultDto result, CheckTiming timing) {
+        result.setDnsMs(timing.getDnsMs());
+        result.setConnectMs(timing.getConnectMs());
+        result.setTlsMs(timing.getTlsMs());
+        result.setTtfbMs(timing.getTtfbMs());
+        result.setDownloadMs(timing.getDownloadMs());
     }
 
     private WebClient.RequestHeadersSpec<?> buildRequest(MonitorConfigDto config) {
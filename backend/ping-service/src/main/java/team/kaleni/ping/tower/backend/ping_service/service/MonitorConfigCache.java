@@ -0,0 +1,90 @@
+package team.kaleni.ping.tower.backend.ping_service.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+import team.kaleni.ping.tower.backend.ping_service.dto.MonitorConfigDto;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Локальный кэш конфигураций мониторов.
+ * URL Service публикует ID монитора в канал при сохранении или удалении конфигурации,
+ * запись сбрасывается, и при следующем пинге конфигурация перечитывается из Redis.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MonitorConfigCache implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "monitor:config:invalidate";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ping.config-cache.max-size:100000}")
+    private long maxSize;
+
+    @Value("${ping.config-cache.expire-after-write:10m}")
+    private Duration expireAfterWrite;
+
+    private Cache<Long, MonitorConfigDto> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+
+        // cache.gets / cache.puts / cache.evictions с тегом cache=monitor-config
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "monitor-config");
+
+        log.info("Monitor config cache initialized: maxSize={}, expireAfterWrite={}", maxSize, expireAfterWrite);
+    }
+
+    /**
+     * Получить конфигурации; промахи догружаются одним вызовом loader.
+     * Мониторы, которых loader не вернул, не кэшируются.
+     */
+    public Map<Long, MonitorConfigDto> getAll(Collection<Long> monitorIds,
+                                              Function<Set<? extends Long>, Map<Long, MonitorConfigDto>> loader) {
+        return cache.getAll(monitorIds, loader);
+    }
+
+    public void invalidate(Long monitorId) {
+        cache.invalidate(monitorId);
+    }
+
+    /**
+     * Сообщение из канала инвалидации: тело - ID монитора
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (payload == null) return;
+
+            Long monitorId = Long.valueOf(payload.toString());
+            invalidate(monitorId);
+            log.debug("Invalidated cached config for monitor {}", monitorId);
+
+        } catch (Exception e) {
+            log.error("Error handling config invalidation message: {}", e.getMessage());
+        }
+    }
+}
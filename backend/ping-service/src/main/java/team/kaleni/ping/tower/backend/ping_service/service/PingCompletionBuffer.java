@@ -0,0 +1,134 @@
+package team.kaleni.ping.tower.backend.ping_service.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import team.kaleni.ping.tower.backend.ping_service.dto.PingCompletionDto;
+import team.kaleni.ping.tower.backend.ping_service.dto.PingResultDto;
+import team.kaleni.ping.tower.backend.ping_service.enums.PingSchedulerMode;
+import team.kaleni.ping.tower.backend.ping_service.schedule.PingSchedulePolicy;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Буфер результатов проверок: статусы и перепланирование копятся в памяти
+ * и сбрасываются в Redis пачками, вместо SET + ZADD на каждый монитор.
+ * Добавление неблокирующее, поэтому буфер можно вызывать с event loop.
+ * В режиме колеса таймеров аренды нет: расписание записывается в Redis лениво
+ * (writeBackPings), а слушатели перепланирования ставят монитор обратно в колесо.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PingCompletionBuffer {
+
+    private final RedisMonitorService redisMonitorService;
+    private final MeterRegistry meterRegistry;
+
+    private final ConcurrentLinkedQueue<PingCompletionDto> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger(0);
+
+    private final List<ObjLongConsumer<Long>> rescheduleListeners = new CopyOnWriteArrayList<>();
+
+    @Value("${ping.bookkeeping.max-batch:500}")
+    private int maxBatch;
+
+    @Value("${ping.scheduler.mode:POLLING}")
+    private PingSchedulerMode schedulerMode;
+
+    @PostConstruct
+    public void registerMetrics() {
+        Gauge.builder("ping.bookkeeping.pending", pendingCount, AtomicInteger::get)
+                .description("Ping completions waiting to be flushed to Redis")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Пинг выполнен: сохранить статус и запланировать следующий на фазовой сетке монитора
+     */
+    public void complete(PingResultDto pingResult, int intervalSeconds) {
+        Instant now = Instant.now();
+        long nextPing = PingSchedulePolicy.nextRun(pingResult.getMonitorId(), intervalSeconds, now.toEpochMilli());
+        enqueue(PingCompletionDto.builder()
+                .monitorId(pingResult.getMonitorId())
+                .status(pingResult.getStatus())
+                .responseTimeMs(pingResult.getResponseTimeMs())
+                .responseCode(pingResult.getResponseCode())
+                .errorMessage(pingResult.getErrorMessage())
+                .checkedAt(now)
+                .nextPingEpochMilli(nextPing)
+                .build());
+    }
+
+    /**
+     * Пинг не выполнялся: только перепланировать (статус не меняется).
+     * Повтор в среднем через delaySeconds, разнесённый по фазе монитора,
+     * чтобы мониторы, упавшие одновременно, не повторялись одной пачкой.
+     */
+    public void reschedule(Long monitorId, int delaySeconds) {
+        long nextPing = PingSchedulePolicy.nextRun(monitorId, delaySeconds, System.currentTimeMillis());
+        enqueue(PingCompletionDto.builder()
+                .monitorId(monitorId)
+                .nextPingEpochMilli(nextPing)
+                .build());
+    }
+
+    /**
+     * Подписаться на перепланирование: слушатель получает ID монитора и время следующего пинга (epoch millis)
+     */
+    public void addRescheduleListener(ObjLongConsumer<Long> listener) {
+        rescheduleListeners.add(listener);
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    @Scheduled(fixedDelayString = "${ping.bookkeeping.flush-interval:200}")
+    public void flush() {
+        while (!pending.isEmpty()) {
+            List<PingCompletionDto> batch = new ArrayList<>(Math.min(maxBatch, pendingCount.get()));
+            PingCompletionDto completion;
+            while (batch.size() < maxBatch && (completion = pending.poll()) != null) {
+                batch.add(completion);
+            }
+            pendingCount.addAndGet(-batch.size());
+
+            if (batch.isEmpty()) {
+                return;
+            }
+            if (schedulerMode == PingSchedulerMode.WHEEL) {
+                redisMonitorService.writeBackPings(batch);
+            } else {
+                redisMonitorService.completePings(batch);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Flushing {} pending ping completions before shutdown", pendingCount.get());
+        flush();
+    }
+
+    private void enqueue(PingCompletionDto completion) {
+        pending.offer(completion);
+        pendingCount.incrementAndGet();
+
+        for (ObjLongConsumer<Long> listener : rescheduleListeners) {
+            listener.accept(completion.getMonitorId(), completion.getNextPingEpochMilli());
+        }
+    }
+}
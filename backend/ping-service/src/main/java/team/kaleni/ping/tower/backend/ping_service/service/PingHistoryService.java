@@ -1,41 +1,127 @@
 package team.kaleni.ping.tower.backend.ping_service.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import team.kaleni.ping.tower.backend.ping_service.dto.PingResultDto;
 import team.kaleni.ping.tower.backend.ping_service.entity.PingResult;
+import team.kaleni.ping.tower.backend.ping_service.journal.PingResultJournal;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Потоковая запись истории пингов в ClickHouse.
+ * Отдельный поток-писатель копит строки и сбрасывает их, как только набралось
+ * ping.history.max-batch-rows строк или самая старая строка ждёт дольше ping.history.max-latency-ms.
+ * Очередь ограничена: при заполнении производители ждут (backpressure), а не растят память.
+ * Если ClickHouse недоступен или очередь почти заполнена, батчи уходят в журнал на диске
+ * (PingResultJournal) и воспроизводятся по порядку, когда ClickHouse снова принимает записи.
+ * Воспроизведение идёт по одной порции за проход цикла, вперемешку с разбором очереди,
+ * поэтому во время восстановления производители не упираются в заполненную очередь.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PingHistoryService {
 
     private final ClickHouseService clickHouseService;
-    private final ConcurrentLinkedQueue<PingResult> pendingResults = new ConcurrentLinkedQueue<>();
+    private final PingResultJournal journal;
+    private final MeterRegistry meterRegistry;
 
-    @Value("${ping.batch.size:50}")
-    private int batchSize;
+    @Value("${ping.history.queue-capacity:100000}")
+    private int queueCapacity;
+
+    @Value("${ping.history.max-batch-rows:5000}")
+    private int maxBatchRows;
+
+    @Value("${ping.history.max-latency-ms:2000}")
+    private long maxLatencyMs;
+
+    @Value("${ping.history.offer-timeout-ms:1000}")
+    private long offerTimeoutMs;
+
+    @Value("${ping.history.retry-backoff-ms:1000}")
+    private long retryBackoffMs;
+
+    // Доля заполнения очереди, после которой батчи сразу уходят в журнал
+    @Value("${ping.history.spill-threshold:0.8}")
+    private double spillThreshold;
+
+    private BlockingQueue<PingResult> pendingResults;
+    private Thread writerThread;
+    private volatile boolean running;
+    private long nextReplayAttemptAt;
+    // Воспроизводимый сегмент журнала; используется только потоком-писателем
+    private PingResultJournal.Segment replaySegment;
+
+    private Timer flushTimer;
+    private Counter droppedCounter;
+    private Counter writtenCounter;
+    private Counter spilledCounter;
+
+    @PostConstruct
+    public void init() {
+        pendingResults = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("ping.history.queue.depth", pendingResults, BlockingQueue::size)
+                .description("Ping results waiting to be written to ClickHouse")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("ping.history.flush")
+                .description("Time to insert one batch of ping results into ClickHouse")
+                .register(meterRegistry);
+        droppedCounter = Counter.builder("ping.history.dropped")
+                .description("Ping results dropped because the history queue stayed full")
+                .register(meterRegistry);
+        writtenCounter = Counter.builder("ping.history.written")
+                .description("Ping results written to ClickHouse")
+                .register(meterRegistry);
+        spilledCounter = Counter.builder("ping.history.spilled")
+                .description("Ping results spilled to the on-disk journal")
+                .register(meterRegistry);
+
+        running = true;
+        writerThread = new Thread(this::writeLoop, "ping-history-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+
+        log.info("Ping history writer started: capacity={}, maxBatchRows={}, maxLatencyMs={}",
+                queueCapacity, maxBatchRows, maxLatencyMs);
+    }
 
     /**
-     * Добавить результат пинга в батч для сохранения
+     * Добавить результат пинга в очередь записи.
+     * Если очередь заполнена, вызывающий поток ждёт до ping.history.offer-timeout-ms.
      */
-    @Async
     public void addToBatch(PingResultDto pingResultDto) {
         try {
             PingResult pingResult = PingResult.fromPingResultDto(pingResultDto);
-            pendingResults.offer(pingResult);
+
+            if (!pendingResults.offer(pingResult, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                droppedCounter.increment();
+                log.warn("History queue is full, dropped ping result for monitor {}", pingResult.getMonitorId());
+                return;
+            }
 
             log.debug("Added ping result to batch for monitor {}, queue size: {}",
                     pingResult.getMonitorId(), pendingResults.size());
 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCounter.increment();
         } catch (Exception e) {
             log.error("Error adding ping result to batch for monitor {}: {}",
                     pingResultDto.getMonitorId(), e.getMessage(), e);
@@ -43,45 +129,174 @@ public class PingHistoryService {
     }
 
     /**
-     * Получить размер батча (вызывается из scheduler для статистики)
+     * Неблокирующий вариант для реактивного конвейера: если место есть, строка кладётся сразу,
+     * иначе ожидание уходит на boundedElastic и удерживает слот конвейера до освобождения очереди
+     */
+    public Mono<Void> addToBatchReactive(PingResultDto pingResultDto) {
+        return Mono.defer(() -> {
+            if (pendingResults.offer(PingResult.fromPingResultDto(pingResultDto))) {
+                return Mono.empty();
+            }
+            return Mono.<Void>fromRunnable(() -> addToBatch(pingResultDto))
+                    .subscribeOn(Schedulers.boundedElastic());
+        });
+    }
+
+    /**
+     * Получить размер очереди записи (вызывается из scheduler для статистики)
      */
     public int getBatchSize() {
         return pendingResults.size();
     }
 
+    private void writeLoop() {
+        List<PingResult> batch = new ArrayList<>(maxBatchRows);
+
+        while (running || !pendingResults.isEmpty()) {
+            try {
+                // Пока есть что воспроизводить, не ждём наполнения батча - следующая порция журнала ждёт
+                collectBatch(batch, isReplayDue() ? 0 : maxLatencyMs);
+                if (!batch.isEmpty()) {
+                    writeOrSpill(batch);
+                }
+                replayJournal();
+            } catch (InterruptedException e) {
+                // Прерывание - сигнал остановки: дописываем то, что уже набрано
+                running = false;
+            } catch (Exception e) {
+                log.error("Unexpected error in ping history writer: {}", e.getMessage(), e);
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            writeOrSpill(batch);
+        }
+        closeReplaySegment();
+        log.info("Ping history writer stopped");
+    }
+
     /**
-     * Обработать накопленные результаты пингов (вызывается по расписанию)
+     * Набрать батч: ждём первую строку, затем добираем до лимита строк
+     * или до истечения waitMs с момента её получения
      */
-    @Scheduled(fixedRateString = "${ping.batch.process.interval:10000}")
-    public void processPendingResults() {
-        if (pendingResults.isEmpty()) {
-            return;
+    private void collectBatch(List<PingResult> batch, long waitMs) throws InterruptedException {
+        if (batch.isEmpty()) {
+            PingResult first = pendingResults.poll(waitMs, TimeUnit.MILLISECONDS);
+            if (first == null) return;
+            batch.add(first);
         }
 
-        List<PingResult> batch = new ArrayList<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMs);
+        while (batch.size() < maxBatchRows) {
+            pendingResults.drainTo(batch, maxBatchRows - batch.size());
+            if (batch.size() >= maxBatchRows || !running) break;
 
-        for (int i = 0; i < batchSize && !pendingResults.isEmpty(); i++) {
-            PingResult result = pendingResults.poll();
-            if (result != null) {
-                batch.add(result);
-            }
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) break;
+
+            PingResult next = pendingResults.poll(remainingNanos, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
         }
+    }
 
-        if (!batch.isEmpty()) {
+    /**
+     * Записать батч в ClickHouse или, если это сейчас невозможно, в журнал на диске.
+     * Пока в журнале есть данные, новые батчи тоже уходят в журнал, чтобы сохранить порядок.
+     */
+    private void writeOrSpill(List<PingResult> batch) {
+        boolean overThreshold = pendingResults.size() >= queueCapacity * spillThreshold;
+
+        if (!journal.hasPending() && !overThreshold) {
             try {
-                clickHouseService.savePingResultsBatchOptimized(batch);
+                flush(batch);
+                batch.clear();
+                return;
+            } catch (Exception e) {
+                log.error("Error processing ping results batch of {}, spilling to journal: {}",
+                        batch.size(), e.getMessage());
+                nextReplayAttemptAt = System.currentTimeMillis() + retryBackoffMs;
+            }
+        }
 
-                log.info("Processed batch of {} ping results (remaining: {})",
-                        batch.size(), pendingResults.size());
-                PingResult sample = batch.get(0);
-                log.debug("Sample ping result: monitor={}, status={}, responseTime={} ms, url={}",
-                        sample.getMonitorId(), sample.getStatus(), sample.getResponseTimeMs(), sample.getUrl());
+        try {
+            journal.append(batch);
+            spilledCounter.increment(batch.size());
+            log.debug("Spilled {} ping results to journal (queue={}, overThreshold={})",
+                    batch.size(), pendingResults.size(), overThreshold);
+        } catch (Exception e) {
+            log.error("Error spilling {} ping results to journal, dropping: {}", batch.size(), e.getMessage(), e);
+            droppedCounter.increment(batch.size());
+        }
+        batch.clear();
+    }
 
-            } catch (Exception e) {
-                log.error("Error processing ping results batch: {}", e.getMessage(), e);
-                batch.forEach(pendingResults::offer);
+    private boolean isReplayDue() {
+        return journal.hasPending() && System.currentTimeMillis() >= nextReplayAttemptAt;
+    }
+
+    /**
+     * Воспроизвести одну порцию (до max-batch-rows) самого старого сегмента журнала.
+     * После каждой записанной порции позиция сохраняется, поэтому при ошибке повтор (через паузу)
+     * начинается с первой незаписанной порции и не дублирует строки в ping_results и rollup-таблицах.
+     * Дочитанный сегмент удаляется, следующий открывается на следующем проходе.
+     */
+    private void replayJournal() {
+        if (!isReplayDue()) {
+            return;
+        }
+
+        try {
+            if (replaySegment == null) {
+                Optional<PingResultJournal.Segment> oldest = journal.oldestSegment();
+                if (oldest.isEmpty()) return;
+                replaySegment = oldest.get();
             }
+
+            List<PingResult> chunk = replaySegment.next(maxBatchRows);
+            if (chunk.isEmpty()) {
+                journal.acknowledge(replaySegment);
+                closeReplaySegment();
+                return;
+            }
+            flush(chunk);
+            journal.commit(replaySegment);
+
+        } catch (Exception e) {
+            log.warn("ClickHouse is still unavailable, journal replay postponed: {}", e.getMessage());
+            nextReplayAttemptAt = System.currentTimeMillis() + retryBackoffMs;
+            // Повтор откроет сегмент заново с последней сохранённой позиции
+            closeReplaySegment();
         }
     }
 
+    private void closeReplaySegment() {
+        if (replaySegment == null) return;
+        try {
+            replaySegment.close();
+        } catch (Exception e) {
+            log.warn("Failed to close journal segment {}: {}", replaySegment.getPath(), e.getMessage());
+        }
+        replaySegment = null;
+    }
+
+    private void flush(List<PingResult> batch) {
+        long start = System.nanoTime();
+        clickHouseService.savePingResultsBatch(batch);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        writtenCounter.increment(batch.size());
+
+        log.info("Processed batch of {} ping results (remaining: {})", batch.size(), pendingResults.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Ping history writer shutdown, {} results left unwritten", pendingResults.size());
+    }
 }
@@ -1,5 +1,9 @@
 package team.kaleni.ping.tower.backend.ping_service.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -7,15 +11,26 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import team.kaleni.ping.tower.backend.ping_service.concurrent.AdaptiveBatchSizer;
+import team.kaleni.ping.tower.backend.ping_service.concurrent.BoundedVirtualThreadExecutor;
+import team.kaleni.ping.tower.backend.ping_service.concurrent.OriginConcurrencyLimiter;
 import team.kaleni.ping.tower.backend.ping_service.dto.MonitorConfigDto;
 import team.kaleni.ping.tower.backend.ping_service.dto.PingResultDto;
+import team.kaleni.ping.tower.backend.ping_service.dto.QueueBacklogDto;
+import team.kaleni.ping.tower.backend.ping_service.enums.PingExecutionMode;
+import team.kaleni.ping.tower.backend.ping_service.enums.PingSchedulerMode;
 import team.kaleni.ping.tower.backend.ping_service.notifications.NotificationSender;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
@@ -25,6 +40,9 @@ import java.util.stream.Collectors;
 @Slf4j
 public class PingSchedulerService {
 
+    // Повтор мониторов, которые не удалось выдать на пинг (Redis или executor недоступны)
+    private static final int DISPATCH_RETRY_SECONDS = 10;
+
     private final RedisMonitorService redisMonitorService;
     private final EnhancedPingService pingService;
     private final PingHistoryService pingHistoryService;
@@ -33,64 +51,341 @@ public class PingSchedulerService {
     private final ExecutorService executorService;
 
     private final NotificationSender notificationSender;
+    private final PingCompletionBuffer completionBuffer;
+    private final MeterRegistry meterRegistry;
 
     @Value("${ping.batch.size:50}")
     private int batchSize;
 
+    @Value("${ping.batch.min-size:10}")
+    private int minBatchSize;
+
+    @Value("${ping.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${ping.batch.target-latency-ms:2000}")
+    private long targetLatencyMs;
+
+    @Value("${ping.scheduler.max-in-flight:500}")
+    private int maxInFlight;
+
+    @Value("${ping.execution.mode:EXECUTOR}")
+    private PingExecutionMode executionMode;
+
+    @Value("${ping.reactive.concurrency:1000}")
+    private int reactiveConcurrency;
+
+    @Value("${ping.scheduler.mode:POLLING}")
+    private PingSchedulerMode schedulerMode;
+
+    @Value("${ping.origin.max-concurrency:20}")
+    private int maxConcurrencyPerOrigin;
+
+    @Value("${ping.origin.busy-retry-seconds:5}")
+    private int originBusyRetrySeconds;
+
     private final AtomicLong totalProcessed = new AtomicLong(0);
     private final AtomicInteger currentlyProcessing = new AtomicInteger(0);
+    private final AtomicLong backlogSize = new AtomicLong(0);
+    private final AtomicLong backlogLagSeconds = new AtomicLong(0);
+
+    private AdaptiveBatchSizer batchSizer;
+    private OriginConcurrencyLimiter originLimiter;
+    private Counter originDeferredCounter;
+
+    // Поток конфигураций мониторов для реактивного режима: планировщик публикует, конвейер пингует
+    private final Sinks.Many<MonitorConfigDto> reactiveQueue = Sinks.many().unicast().onBackpressureBuffer();
+    private Disposable reactivePipeline;
+
+    @PostConstruct
+    public void init() {
+        batchSizer = new AdaptiveBatchSizer(batchSize, minBatchSize, maxBatchSize, targetLatencyMs);
+        originLimiter = new OriginConcurrencyLimiter(maxConcurrencyPerOrigin);
+
+        Gauge.builder("ping.scheduler.backlog.lag", backlogLagSeconds, AtomicLong::get)
+                .description("Age of the oldest due monitor in ping:queue")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("ping.scheduler.backlog.size", backlogSize, AtomicLong::get)
+                .description("Monitors in ping:queue that are already due")
+                .register(meterRegistry);
+        Gauge.builder("ping.scheduler.in.flight", currentlyProcessing, AtomicInteger::get)
+                .description("Monitors claimed by this node and not yet completed")
+                .register(meterRegistry);
+        Gauge.builder("ping.scheduler.batch.size", batchSizer, AdaptiveBatchSizer::getCurrentBatchSize)
+                .description("Current adaptive claim batch size")
+                .register(meterRegistry);
+        Gauge.builder("ping.origin.active", originLimiter, OriginConcurrencyLimiter::getActiveOrigins)
+                .description("Origins with checks in flight on this node")
+                .register(meterRegistry);
+        originDeferredCounter = Counter.builder("ping.origin.deferred")
+                .description("Checks deferred because their origin reached ping.origin.max-concurrency")
+                .register(meterRegistry);
+
+        if (executionMode == PingExecutionMode.REACTIVE) {
+            startReactivePipeline();
+        }
+    }
+
+    private void startReactivePipeline() {
+
+        reactivePipeline = reactiveQueue.asFlux()
+                .flatMap(this::processMonitorReactive, reactiveConcurrency)
+                .subscribe(
+                        null,
+                        e -> log.error("Reactive ping pipeline terminated: {}", e.getMessage(), e)
+                );
+
+        log.info("Reactive ping pipeline started with concurrency={}", reactiveConcurrency);
+    }
 
     /**
-     * Основной планировщик - запускается каждые 5 секунд
+     * Основной планировщик - запускается каждые 5 секунд.
+     * Забирает батчи, пока в очереди есть готовые мониторы и у узла есть свободная ёмкость.
+     * В режиме WHEEL мониторы выдаёт TimingWheelScheduler, и очередь не опрашивается.
      */
     @Scheduled(fixedRateString = "${ping.scheduler.interval:5000}")
     public void processPingQueue() {
+        if (schedulerMode != PingSchedulerMode.POLLING) {
+            return;
+        }
+
         try {
-            List<Long> monitorsToProcess = redisMonitorService.getMonitorsReadyForPing(batchSize);
+            QueueBacklogDto backlog = redisMonitorService.getBacklog();
+            backlogSize.set(backlog.getOverdueCount());
+            backlogLagSeconds.set(backlog.getLagSeconds());
+            batchSizer.adjust(backlog.getOverdueCount());
+
+            int claimedTotal = 0;
+            while (true) {
+                int requested = batchSizer.nextBatchSize(availableCapacity());
+                if (requested <= 0) {
+                    log.debug("No free capacity for new pings, in flight: {}", currentlyProcessing.get());
+                    break;
+                }
+
+                // Атомарно забираем готовые мониторы под аренду этого узла
+                List<Long> monitorsToProcess = redisMonitorService.claimMonitorsReadyForPing(requested);
+                if (monitorsToProcess.isEmpty()) {
+                    break;
+                }
+
+                claimedTotal += monitorsToProcess.size();
+                log.debug("Processing {} monitors from ping queue: [{}]", monitorsToProcess.size(),
+                        monitorsToProcess.stream().map(Object::toString).collect(Collectors.joining(",")));
+
+                // Обрабатываем асинхронно
+                processMonitorsBatch(monitorsToProcess);
+
+                // Очередь опустела
+                if (monitorsToProcess.size() < requested) {
+                    break;
+                }
+            }
 
-            if (monitorsToProcess.isEmpty()) {
+            if (claimedTotal == 0) {
                 log.debug("No monitors ready for ping");
-                return;
+            } else {
+                log.info("Claimed {} monitors (backlog={}, lag={}s, batch={}, in flight={})",
+                        claimedTotal, backlog.getOverdueCount(), backlog.getLagSeconds(),
+                        batchSizer.getCurrentBatchSize(), currentlyProcessing.get());
             }
 
-            log.info("Processing {} monitors from ping queue: [{}]", monitorsToProcess.size(),
-                    monitorsToProcess.stream().map(Object::toString).collect(Collectors.joining(",")));
+        } catch (Exception e) {
+            log.error("Error in ping scheduler: {}", e.getMessage(), e);
+        }
+    }
 
-            // Помечаем как обрабатываемые
-            redisMonitorService.markAsProcessing(monitorsToProcess);
+    /**
+     * Сколько ещё мониторов узел может взять в работу: не больше лимита in-flight и не больше,
+     * чем executor примет без CallerRunsPolicy (или без ожидания на семафоре виртуальных потоков)
+     */
+    public int availableCapacity() {
+        return Math.max(0, Math.min(inFlightLimit() - currentlyProcessing.get(), executorCapacity()));
+    }
 
-            // Обрабатываем асинхронно
-            processMonitorsBatch(monitorsToProcess);
+    /**
+     * В режиме REACTIVE лимит задаёт reactive.concurrency: с меньшим max-in-flight конвейер
+     * никогда не загружался бы полностью, с большим - захваченные мониторы ждали бы в буфере
+     */
+    private int inFlightLimit() {
+        return executionMode == PingExecutionMode.REACTIVE ? reactiveConcurrency : maxInFlight;
+    }
 
+    private int executorCapacity() {
+        if (executionMode == PingExecutionMode.REACTIVE) {
+            return Integer.MAX_VALUE;
+        }
+        if (executorService instanceof ThreadPoolExecutor pool) {
+            // Свободные и ещё не созданные потоки плюс место в очереди
+            return Math.max(0, pool.getMaximumPoolSize() - pool.getActiveCount())
+                    + pool.getQueue().remainingCapacity();
+        }
+        if (executorService instanceof BoundedVirtualThreadExecutor bounded) {
+            return bounded.getFreeSlots();
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Запустить пинг мониторов, срок которых наступил в колесе таймеров.
+     * Если конфигурации загрузить не удалось, мониторы перепланируются: колесо считает их
+     * выданными на пинг и без перепланирования больше не запустит.
+     */
+    public void dispatch(List<Long> monitorIds) {
+        if (monitorIds.isEmpty()) return;
+
+        try {
+            processMonitorsBatch(monitorIds);
         } catch (Exception e) {
-            log.error("Error in ping scheduler: {}", e.getMessage(), e);
+            log.error("Error dispatching {} monitors, retrying in {}s: {}",
+                    monitorIds.size(), DISPATCH_RETRY_SECONDS, e.getMessage(), e);
+            monitorIds.forEach(monitorId -> completionBuffer.reschedule(monitorId, DISPATCH_RETRY_SECONDS));
         }
     }
 
     /**
-     * Обработка батча мониторов
+     * Обработка батча мониторов: конфигурации грузятся одним MGET,
+     * результаты уходят в Redis пачками через PingCompletionBuffer
      */
     private void processMonitorsBatch(List<Long> monitorIds) {
-        currentlyProcessing.addAndGet(monitorIds.size());
-
-        // Создаем задачи для каждого монитора
-        List<CompletableFuture<Void>> futures = monitorIds.stream()
-                .map(this::processMonitorAsync)
-                .toList();
-
-        // Ожидаем завершения всех задач
-        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                .whenComplete((result, throwable) -> {
-                    // Снимаем пометку об обработке
-                    redisMonitorService.unmarkAsProcessing(monitorIds);
-                    currentlyProcessing.addAndGet(-monitorIds.size());
-
-                    if (throwable != null) {
-                        log.error("Error processing monitor batch: {}", throwable.getMessage());
-                    }
+        Map<Long, MonitorConfigDto> configs = redisMonitorService.getMonitorConfigs(monitorIds);
+
+        for (Long monitorId : monitorIds) {
+            MonitorConfigDto config = configs.get(monitorId);
+
+            if (config == null) {
+                log.warn("Monitor config not found for monitor {}, skipping", monitorId);
+                // Планируем повторную попытку через 5 минут
+                completionBuffer.reschedule(monitorId, 300);
+                continue;
+            }
+
+            // Origin уже занят проверками на пределе: откладываем, не занимая слот узла
+            String origin = OriginConcurrencyLimiter.originOf(config.getUrl());
+            if (!originLimiter.tryAcquire(origin)) {
+                originDeferredCounter.increment();
+                log.debug("Origin {} is at its concurrency limit, deferring monitor {}", origin, monitorId);
+                completionBuffer.reschedule(monitorId, originBusyRetrySeconds);
+                continue;
+            }
+
+            currentlyProcessing.incrementAndGet();
+            if (executionMode == PingExecutionMode.REACTIVE) {
+                emitToReactivePipeline(config, origin);
+                continue;
+            }
+
+            CompletableFuture<Void> task;
+            try {
+                task = processMonitorAsync(config);
+            } catch (RejectedExecutionException e) {
+                // Executor остановлен или переполнен: задача не запущена, и её не завершит никто другой
+                currentlyProcessing.decrementAndGet();
+                originLimiter.release(origin);
+                completionBuffer.reschedule(monitorId, DISPATCH_RETRY_SECONDS);
+                log.error("Ping executor rejected monitor {}, retrying in {}s: {}",
+                        monitorId, DISPATCH_RETRY_SECONDS, e.getMessage());
+                continue;
+            }
+
+            // Ёмкость освобождается по мере завершения каждой задачи
+            task.whenComplete((result, throwable) -> {
+                currentlyProcessing.decrementAndGet();
+                originLimiter.release(origin);
+
+                if (throwable != null) {
+                    log.error("Error processing monitor {}: {}", monitorId, throwable.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Передача монитора в реактивный конвейер
+     */
+    private void emitToReactivePipeline(MonitorConfigDto config, String origin) {
+        Sinks.EmitResult result = reactiveQueue.tryEmitNext(config);
+
+        if (result.isFailure()) {
+            currentlyProcessing.decrementAndGet();
+            originLimiter.release(origin);
+            // Снимаем аренду, чтобы монитор сразу стал доступен для захвата
+            completionBuffer.reschedule(config.getMonitorId(), 0);
+            log.error("Failed to emit monitor {} to reactive pipeline: {}", config.getMonitorId(), result);
+        }
+    }
+
+    /**
+     * Неблокирующая обработка одного монитора: пинг на event loop, запись результата в буферы
+     */
+    private Mono<Void> processMonitorReactive(MonitorConfigDto config) {
+        return pingService.pingMonitorReactive(config)
+                .flatMap(pingResult -> {
+                    recordPingResult(config, pingResult);
+                    notifyIfFailedAsync(config, pingResult);
+
+                    // Сохраняем в очередь записи ClickHouse без блокировки event loop
+                    return pingHistoryService.addToBatchReactive(pingResult);
+                })
+                .onErrorResume(e -> {
+                    log.error("Error processing monitor {}: {}", config.getMonitorId(), e.getMessage());
+
+                    // Планируем повторный пинг через минуту в случае ошибки
+                    completionBuffer.reschedule(config.getMonitorId(), 60);
+                    return Mono.empty();
+                })
+                .then()
+                .doFinally(signal -> {
+                    currentlyProcessing.decrementAndGet();
+                    originLimiter.release(OriginConcurrencyLimiter.originOf(config.getUrl()));
                 });
     }
 
+    /**
+     * Учесть результат пинга: статус и следующий пинг.
+     * Уведомление и запись в историю - отдельно, с учётом режима исполнения.
+     */
+    private void recordPingResult(MonitorConfigDto config, PingResultDto pingResult) {
+        recordLatency(pingResult);
+
+        // Статус и следующий пинг в Redis (пакетно)
+        completionBuffer.complete(pingResult, config.getIntervalSeconds());
+
+        totalProcessed.incrementAndGet();
+
+        log.debug("Successfully processed monitor {} with status {}",
+                config.getMonitorId(), pingResult.getStatus());
+    }
+
+    /**
+     * Если пинг был неуспешен - отправляем об этом уведомление (блокирующе, на потоке executor)
+     */
+    private void notifyIfFailed(MonitorConfigDto config, PingResultDto pingResult) {
+        if (!isPingSuccessful(pingResult)) {
+            notificationSender.sendNotification(config.getOwnerId(), config.getName(), pingResult);
+        }
+    }
+
+    /**
+     * Уведомление из реактивного режима: KafkaTemplate.send может ждать метаданные или место
+     * в буфере до max.block.ms, поэтому отправка уходит с event loop на boundedElastic
+     */
+    private void notifyIfFailedAsync(MonitorConfigDto config, PingResultDto pingResult) {
+        if (isPingSuccessful(pingResult)) return;
+
+        Mono.fromRunnable(() -> notificationSender.sendNotification(config.getOwnerId(), config.getName(), pingResult))
+                .subscribeOn(Schedulers.boundedElastic())
+                .subscribe(null, e -> log.error("Error sending notification for monitor {}: {}",
+                        config.getMonitorId(), e.getMessage()));
+    }
+
+    private void recordLatency(PingResultDto pingResult) {
+        if (pingResult.getResponseTimeMs() != null) {
+            batchSizer.recordLatency(pingResult.getResponseTimeMs());
+        }
+    }
+
     private boolean isPingSuccessful(PingResultDto pingResultDto) {
         return pingResultDto.getErrorMessage() == null &&
                 (200 <= pingResultDto.getResponseCode() && pingResultDto.getResponseCode() <= 399);
@@ -99,56 +394,24 @@ public class PingSchedulerService {
     /**
      * Асинхронная обработка одного монитора
      */
-    private CompletableFuture<Void> processMonitorAsync(Long monitorId) {
+    private CompletableFuture<Void> processMonitorAsync(MonitorConfigDto config) {
         return CompletableFuture.runAsync(() -> {
             try {
-                // 1. Получаем конфигурацию монитора
-                Optional<MonitorConfigDto> configOpt = redisMonitorService.getMonitorConfig(monitorId);
-
-                if (configOpt.isEmpty()) {
-                    log.warn("Monitor config not found for monitor {}, skipping", monitorId);
-                    // Планируем повторную попытку через 5 минут
-                    redisMonitorService.scheduleNextPing(monitorId, 300);
-                    return;
-                }
-
-                MonitorConfigDto config = configOpt.get();
-                log.info("{}, {}, {}", config.getMonitorId(), config.getUrl(), config.getOwnerId());
+                log.debug("{}, {}, {}", config.getMonitorId(), config.getUrl(), config.getOwnerId());
                 // todo: check if monitor is active
 
-                // 2. Выполняем пинг
                 var pingResult = pingService.pingMonitor(config);
+                recordPingResult(config, pingResult);
+                notifyIfFailed(config, pingResult);
 
-                // 3. Сохраняем результат в Redis
-                redisMonitorService.updateMonitorStatus(
-                        monitorId,
-                        pingResult.getStatus(),
-                        pingResult.getResponseTimeMs(),
-                        pingResult.getResponseCode(),
-                        pingResult.getErrorMessage()
-                );
-
-                // 4. Сохраняем в батч для ClickHouse
+                // Сохраняем в очередь записи ClickHouse; при заполненной очереди поток ждёт
                 pingHistoryService.addToBatch(pingResult);
 
-                // 5. Планируем следующий пинг
-                redisMonitorService.scheduleNextPing(monitorId, config.getIntervalSeconds());
-
-                totalProcessed.incrementAndGet();
-
-                log.debug("Successfully processed monitor {} with status {}",
-                        monitorId, pingResult.getStatus());
-
-                // 6. Если пинг был неуспешен - отправляем об этом уведомление
-                if (!isPingSuccessful(pingResult)) {
-                    notificationSender.sendNotification(config.getOwnerId(), config.getName(), pingResult);
-                }
-
             } catch (Exception e) {
-                log.error("Error processing monitor {}: {}", monitorId, e.getMessage());
+                log.error("Error processing monitor {}: {}", config.getMonitorId(), e.getMessage());
 
                 // Планируем повторный пинг через минуту в случае ошибки
-                redisMonitorService.scheduleNextPing(monitorId, 60);
+                completionBuffer.reschedule(config.getMonitorId(), 60);
             }
         }, executorService);
     }
@@ -181,11 +444,15 @@ public class PingSchedulerService {
             Map<String, Object> queueStats = redisMonitorService.getQueueStats();
             int batchQueueSize = pingHistoryService.getBatchSize();
 
-            log.info("Ping Scheduler Stats: processed={}, processing={}, queue={}, overdue={}, batch={}",
+            log.info("Ping Scheduler Stats: processed={}, processing={}, queue={}, overdue={}, lag={}s, " +
+                            "claimBatch={}, latencyEwma={}ms, batch={}",
                     totalProcessed.get(),
                     currentlyProcessing.get(),
                     queueStats.get("totalInQueue"),
                     queueStats.get("overdueCount"),
+                    backlogLagSeconds.get(),
+                    batchSizer.getCurrentBatchSize(),
+                    Math.round(batchSizer.getLatencyEwmaMs()),
                     batchQueueSize
             );
         } catch (Exception e) {
@@ -198,6 +465,10 @@ public class PingSchedulerService {
         log.info("Shutting down ping scheduler service...");
 
         try {
+            reactiveQueue.tryEmitComplete();
+            if (reactivePipeline != null) {
+                reactivePipeline.dispose();
+            }
             executorService.shutdown();
             log.info("Ping scheduler service shutdown completed");
         } catch (Exception e) {
@@ -2,16 +2,30 @@ package team.kaleni.ping.tower.backend.ping_service.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Service;
+import team.kaleni.ping.tower.backend.ping_service.codec.MonitorRecordCodec;
 import team.kaleni.ping.tower.backend.ping_service.dto.MonitorConfigDto;
 import team.kaleni.ping.tower.backend.ping_service.dto.MonitorStatusDto;
+import team.kaleni.ping.tower.backend.ping_service.dto.PingCompletionDto;
+import team.kaleni.ping.tower.backend.ping_service.dto.QueueBacklogDto;
 import team.kaleni.ping.tower.backend.ping_service.enums.HttpMethod;
 import team.kaleni.ping.tower.backend.ping_service.enums.PingStatus;
+import team.kaleni.ping.tower.backend.ping_service.schedule.PingSchedulePolicy;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,32 +34,135 @@ import java.util.stream.Collectors;
 public class RedisMonitorService {
 
     private final RedisTemplate<String, Object> redisTemplate;
+    // Значения monitor:config / monitor:status в компактном бинарном формате
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
+    private final MonitorConfigCache configCache;
 
     private static final String PING_QUEUE_KEY = "ping:queue";
     private static final String STATUS_KEY_PREFIX = "monitor:status:";
     private static final String CONFIG_KEY_PREFIX = "monitor:config:";
-    private static final String PROCESSING_SET_KEY = "ping:processing";
+    // Мониторы, взятые в работу: score = момент истечения аренды (epoch seconds)
+    private static final String INFLIGHT_KEY = "ping:inflight";
 
     /**
-     * Получить мониторы готовые к пингу из sorted set
+     * Атомарный захват: сначала возвращает в очередь мониторы с истёкшей арендой
+     * (узел упал посреди батча), затем переносит готовые к пингу мониторы из очереди
+     * в ping:inflight со сроком аренды. Один монитор достаётся ровно одной реплике.
      */
-    public List<Long> getMonitorsReadyForPing(int batchSize) {
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local limit = tonumber(ARGV[2])
+            local leaseUntil = tonumber(ARGV[3])
+
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', now, 'LIMIT', 0, limit)
+            for _, member in ipairs(expired) do
+                redis.call('ZREM', KEYS[2], member)
+                redis.call('ZADD', KEYS[1], 'NX', now, member)
+            end
+
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', now, 'LIMIT', 0, limit)
+            for _, member in ipairs(due) do
+                redis.call('ZREM', KEYS[1], member)
+                redis.call('ZADD', KEYS[2], leaseUntil, member)
+            end
+            return due
+            """, List.class);
+
+    /**
+     * Завершение аренды: монитор возвращается в очередь со временем следующего пинга,
+     * только если аренда ещё принадлежит нам. Если монитор удалён/выключен в URL Service
+     * или аренда истекла и перехвачена другой репликой, повторно он не планируется.
+     */
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[2], ARGV[1]) == 1 then
+                redis.call('ZADD', KEYS[1], ARGV[2], ARGV[1])
+                return 1
+            end
+            return 0
+            """, Long.class);
+
+    /**
+     * Пакетное завершение за один round trip: для каждого монитора записывает статус
+     * (если передан) и снимает аренду с перепланированием, как RELEASE_SCRIPT.
+     * KEYS: очередь, inflight, затем ключ статуса на каждый монитор.
+     * ARGV: TTL статуса, затем тройки (монитор, время следующего пинга, статус).
+     */
+    private static final RedisScript<Long> COMPLETE_BATCH_SCRIPT = new DefaultRedisScript<>("""
+            local ttl = tonumber(ARGV[1])
+            local released = 0
+            for i = 3, #KEYS do
+                local base = 2 + (i - 3) * 3
+                local member = ARGV[base]
+                local status = ARGV[base + 2]
+                if status ~= '' then
+                    redis.call('SET', KEYS[i], status, 'EX', ttl)
+                end
+                if redis.call('ZREM', KEYS[2], member) == 1 then
+                    redis.call('ZADD', KEYS[1], ARGV[base + 1], member)
+                    released = released + 1
+                end
+            end
+            return released
+            """, Long.class);
+
+    /**
+     * Ленивая запись расписания из колеса таймеров (ping.scheduler.mode=WHEEL): аренды нет,
+     * поэтому время следующего пинга пишется, только если монитор ещё в очереди
+     * (или остался в ping:inflight после режима опроса). Удалённый или выключенный
+     * в URL Service монитор не возвращается. KEYS и ARGV - как у COMPLETE_BATCH_SCRIPT.
+     */
+    private static final RedisScript<Long> WRITE_BACK_BATCH_SCRIPT = new DefaultRedisScript<>("""
+            local ttl = tonumber(ARGV[1])
+            local written = 0
+            for i = 3, #KEYS do
+                local base = 2 + (i - 3) * 3
+                local member = ARGV[base]
+                local status = ARGV[base + 2]
+                if status ~= '' then
+                    redis.call('SET', KEYS[i], status, 'EX', ttl)
+                end
+                if redis.call('ZSCORE', KEYS[1], member) or redis.call('ZREM', KEYS[2], member) == 1 then
+                    redis.call('ZADD', KEYS[1], ARGV[base + 1], member)
+                    written = written + 1
+                end
+            end
+            return written
+            """, Long.class);
+
+    private static final long STATUS_TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    @Value("${ping.lease.seconds:180}")
+    private long leaseSeconds;
+
+    /**
+     * Атомарно захватить мониторы, готовые к пингу, под аренду текущего узла
+     */
+    public List<Long> claimMonitorsReadyForPing(int batchSize) {
         long currentTime = Instant.now().getEpochSecond();
 
-        // Получаем мониторы с score <= текущего времени
-        Set<Object> rawMonitorIds = redisTemplate.opsForZSet()
-                .rangeByScore(PING_QUEUE_KEY, 0, currentTime, 0, batchSize);
+        try {
+            List<?> rawMonitorIds = redisTemplate.execute(
+                    CLAIM_SCRIPT,
+                    List.of(PING_QUEUE_KEY, INFLIGHT_KEY),
+                    currentTime, batchSize, currentTime + leaseSeconds
+            );
+
+            if (rawMonitorIds == null || rawMonitorIds.isEmpty()) {
+                return Collections.emptyList();
+            }
 
-        if (rawMonitorIds == null || rawMonitorIds.isEmpty()) {
-            return Collections.emptyList();
-        }
+            List<Long> monitorIds = rawMonitorIds.stream()
+                    .map(obj -> Long.valueOf(obj.toString()))
+                    .collect(Collectors.toList());
 
-        List<Long> monitorIds = rawMonitorIds.stream()
-                .map(obj -> Long.valueOf(obj.toString()))
-                .collect(Collectors.toList());
+            log.debug("Claimed {} monitors ready for ping", monitorIds.size());
+            return monitorIds;
 
-        log.debug("Found {} monitors ready for ping", monitorIds.size());
-        return monitorIds;
+        } catch (Exception e) {
+            log.error("Error claiming monitors from ping queue: {}", e.getMessage());
+            return Collections.emptyList();
+        }
     }
 
     /**
@@ -53,30 +170,43 @@ public class RedisMonitorService {
      * Если конфигурации нет в Redis, пипяу
      */
     public Optional<MonitorConfigDto> getMonitorConfig(Long monitorId) {
-        String configKey = CONFIG_KEY_PREFIX + monitorId;
+        return Optional.ofNullable(getMonitorConfigs(List.of(monitorId)).get(monitorId));
+    }
+
+    /**
+     * Получить конфигурации батча мониторов: из локального кэша,
+     * промахи догружаются из Redis одним MGET.
+     * Мониторы без конфигурации в результат не попадают.
+     */
+    public Map<Long, MonitorConfigDto> getMonitorConfigs(List<Long> monitorIds) {
+        if (monitorIds.isEmpty()) return Collections.emptyMap();
 
         try {
-            Object rawConfig = redisTemplate.opsForValue().get(configKey);
+            return configCache.getAll(monitorIds, this::loadMonitorConfigs);
+        } catch (Exception e) {
+            log.error("Error getting configs for {} monitors: {}", monitorIds.size(), e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
 
-            if (rawConfig == null) {
-                log.warn("Monitor config not found in Redis for monitor {}", monitorId);
-                return Optional.empty();
-            }
+    private Map<Long, MonitorConfigDto> loadMonitorConfigs(Set<? extends Long> monitorIds) {
+        List<Long> ids = new ArrayList<>(monitorIds);
+        List<String> configKeys = ids.stream()
+                .map(id -> CONFIG_KEY_PREFIX + id)
+                .toList();
+        List<byte[]> rawConfigs = binaryRedisTemplate.opsForValue().multiGet(configKeys);
 
-            if (rawConfig instanceof MonitorConfigDto) {
-                return Optional.of((MonitorConfigDto) rawConfig);
-            } else if (rawConfig instanceof Map) {
-                MonitorConfigDto config = mapToMonitorConfig((Map<String, Object>) rawConfig, monitorId);
-                return Optional.of(config);
-            } else {
-                log.warn("Unexpected config format for monitor {}: {}", monitorId, rawConfig.getClass());
-                return Optional.empty();
-            }
+        Map<Long, MonitorConfigDto> configs = new HashMap<>();
+        if (rawConfigs == null) return configs;
 
-        } catch (Exception e) {
-            log.error("Error getting config for monitor {}: {}", monitorId, e.getMessage());
-            return Optional.empty();
+        for (int i = 0; i < ids.size(); i++) {
+            Long monitorId = ids.get(i);
+            toMonitorConfig(rawConfigs.get(i), monitorId)
+                    .ifPresent(config -> configs.put(monitorId, config));
         }
+
+        log.debug("Loaded {} of {} monitor configs from Redis", configs.size(), ids.size());
+        return configs;
     }
 
     /**
@@ -86,17 +216,10 @@ public class RedisMonitorService {
                                     Integer responseCode, String errorMessage) {
 
         String statusKey = STATUS_KEY_PREFIX + monitorId;
-
-        // 🔥 Сохраняем как простой Map вместо DTO
-        Map<String, Object> statusData = new HashMap<>();
-        statusData.put("status", status.name()); // Сохраняем как строку!
-        statusData.put("lastCheckedAt", Instant.now().toString()); // Как строку!
-        statusData.put("responseTimeMs", responseTimeMs);
-        statusData.put("responseCode", responseCode);
-        statusData.put("errorMessage", errorMessage);
+        byte[] statusData = toStatusData(status, responseTimeMs, responseCode, errorMessage, Instant.now());
 
         try {
-            redisTemplate.opsForValue().set(statusKey, statusData, 7, TimeUnit.DAYS);
+            binaryRedisTemplate.opsForValue().set(statusKey, statusData, STATUS_TTL_SECONDS, TimeUnit.SECONDS);
             log.debug("Updated status for monitor {}: {}", monitorId, status);
         } catch (Exception e) {
             log.error("Error updating status for monitor {}: {}", monitorId, e.getMessage());
@@ -104,59 +227,119 @@ public class RedisMonitorService {
     }
 
     /**
-     * Запланировать следующий пинг монитора
+     * Запланировать следующий пинг монитора и снять аренду
      */
     public void scheduleNextPing(Long monitorId, int intervalSeconds) {
-        long nextPingTime = Instant.now().plusSeconds(intervalSeconds).getEpochSecond();
+        long nextPingMillis = PingSchedulePolicy.nextRun(monitorId, intervalSeconds, System.currentTimeMillis());
+        double nextPingTime = PingSchedulePolicy.toScore(nextPingMillis);
 
         try {
-            redisTemplate.opsForZSet().add(PING_QUEUE_KEY, monitorId.toString(), nextPingTime);
-            log.debug("Scheduled next ping for monitor {} at epoch {}", monitorId, nextPingTime);
+            Long released = redisTemplate.execute(
+                    RELEASE_SCRIPT,
+                    List.of(PING_QUEUE_KEY, INFLIGHT_KEY),
+                    monitorId.toString(), nextPingTime
+            );
+            logReschedule(monitorId, nextPingTime, released);
         } catch (Exception e) {
             log.error("Error scheduling next ping for monitor {}: {}", monitorId, e.getMessage());
         }
     }
 
     /**
-     * Удалить монитор из очереди пингов
+     * Записать статусы и перепланировать батч обработанных мониторов одним Lua-вызовом
      */
-    public void removeFromPingQueue(Long monitorId) {
+    public void completePings(List<PingCompletionDto> completions) {
+        if (completions.isEmpty()) return;
+
         try {
-            redisTemplate.opsForZSet().remove(PING_QUEUE_KEY, monitorId.toString());
-            log.debug("Removed monitor {} from ping queue", monitorId);
+            Long released = executeCompletionScript(COMPLETE_BATCH_SCRIPT, completions);
+            log.debug("Completed {} pings in one round trip, rescheduled {}", completions.size(), released);
         } catch (Exception e) {
-            log.error("Error removing monitor {} from ping queue: {}", monitorId, e.getMessage());
+            log.error("Error completing batch of {} pings: {}", completions.size(), e.getMessage());
         }
     }
 
     /**
-     * Пометить мониторы как обрабатываемые (для предотвращения дублирования)
+     * Записать статусы и расписание из колеса таймеров одним Lua-вызовом (без аренды)
      */
-    public void markAsProcessing(List<Long> monitorIds) {
-        if (monitorIds.isEmpty()) return;
+    public void writeBackPings(List<PingCompletionDto> completions) {
+        if (completions.isEmpty()) return;
 
         try {
-            String[] ids = monitorIds.stream().map(String::valueOf).toArray(String[]::new);
-            redisTemplate.opsForSet().add(PROCESSING_SET_KEY, (Object[]) ids);
-            redisTemplate.expire(PROCESSING_SET_KEY, 5, TimeUnit.MINUTES);
-            log.debug("Marked {} monitors as processing", monitorIds.size());
+            Long written = executeCompletionScript(WRITE_BACK_BATCH_SCRIPT, completions);
+            log.debug("Wrote back {} pings in one round trip, rescheduled {}", completions.size(), written);
         } catch (Exception e) {
-            log.error("Error marking monitors as processing: {}", e.getMessage());
+            log.error("Error writing back batch of {} pings: {}", completions.size(), e.getMessage());
         }
     }
 
     /**
-     * Убрать пометку об обработке
+     * Прочитать всё расписание: ID монитора -> время следующего пинга (epoch millis).
+     * Мониторы, оставшиеся в ping:inflight, считаются готовыми к пингу сейчас.
      */
-    public void unmarkAsProcessing(List<Long> monitorIds) {
-        if (monitorIds.isEmpty()) return;
+    public Map<Long, Long> loadSchedule() {
+        Map<Long, Long> schedule = new HashMap<>();
+        long now = System.currentTimeMillis();
+
+        scanZSet(PING_QUEUE_KEY, (monitorId, score) -> schedule.put(monitorId, (long) (score * 1000)));
+        scanZSet(INFLIGHT_KEY, (monitorId, score) -> schedule.putIfAbsent(monitorId, now));
+
+        log.debug("Loaded schedule of {} monitors from Redis", schedule.size());
+        return schedule;
+    }
+
+    /**
+     * Время следующего пинга одного монитора (epoch millis); пусто, если монитора нет в очереди
+     */
+    public Optional<Long> getScheduledPingMillis(Long monitorId) {
+        Double score = redisTemplate.opsForZSet().score(PING_QUEUE_KEY, monitorId.toString());
+        if (score != null) {
+            return Optional.of((long) (score * 1000));
+        }
+        Double leased = redisTemplate.opsForZSet().score(INFLIGHT_KEY, monitorId.toString());
+        return leased != null ? Optional.of(System.currentTimeMillis()) : Optional.empty();
+    }
+
+    /**
+     * Удалить монитор из очереди пингов
+     */
+    public void removeFromPingQueue(Long monitorId) {
+        try {
+            redisTemplate.opsForZSet().remove(PING_QUEUE_KEY, monitorId.toString());
+            redisTemplate.opsForZSet().remove(INFLIGHT_KEY, monitorId.toString());
+            log.debug("Removed monitor {} from ping queue", monitorId);
+        } catch (Exception e) {
+            log.error("Error removing monitor {} from ping queue: {}", monitorId, e.getMessage());
+        }
+    }
+
+    /**
+     * Отставание очереди: число просроченных мониторов и возраст самого старого из них
+     */
+    public QueueBacklogDto getBacklog() {
+        long now = Instant.now().getEpochSecond();
 
         try {
-            String[] ids = monitorIds.stream().map(String::valueOf).toArray(String[]::new);
-            redisTemplate.opsForSet().remove(PROCESSING_SET_KEY, (Object[]) ids);
-            log.debug("Unmarked {} monitors as processing", monitorIds.size());
+            Long overdue = redisTemplate.opsForZSet().count(PING_QUEUE_KEY, 0, now);
+            Set<ZSetOperations.TypedTuple<Object>> oldest =
+                    redisTemplate.opsForZSet().rangeWithScores(PING_QUEUE_KEY, 0, 0);
+
+            long lagSeconds = 0;
+            if (oldest != null && !oldest.isEmpty()) {
+                Double oldestScore = oldest.iterator().next().getScore();
+                if (oldestScore != null) {
+                    lagSeconds = Math.max(0, now - oldestScore.longValue());
+                }
+            }
+
+            return QueueBacklogDto.builder()
+                    .overdueCount(overdue != null ? overdue : 0)
+                    .lagSeconds(lagSeconds)
+                    .build();
+
         } catch (Exception e) {
-            log.error("Error unmarking monitors as processing: {}", e.getMessage());
+            log.error("Error getting queue backlog: {}", e.getMessage());
+            return QueueBacklogDto.builder().build();
         }
     }
 
@@ -169,7 +352,7 @@ public class RedisMonitorService {
         try {
             Long totalInQueue = redisTemplate.opsForZSet().zCard(PING_QUEUE_KEY);
             Long overdue = redisTemplate.opsForZSet().count(PING_QUEUE_KEY, 0, Instant.now().getEpochSecond());
-            Long processing = redisTemplate.opsForSet().size(PROCESSING_SET_KEY);
+            Long processing = redisTemplate.opsForZSet().zCard(INFLIGHT_KEY);
 
             stats.put("totalInQueue", totalInQueue);
             stats.put("overdueCount", overdue);
@@ -186,53 +369,105 @@ public class RedisMonitorService {
 
     // Helper methods
 
-    private MonitorConfigDto mapToMonitorConfig(Map<String, Object> map, Long monitorId) {
-        return MonitorConfigDto.builder()
-                .monitorId(monitorId)
-                .ownerId(Long.valueOf(parseInteger(map.get("ownerId"), 228)))
-                .url(parseString(map.get("url")))
-                .method(parseHttpMethod(map.get("method")))
-                .name(parseString(map.get("name")))
-                .headers(parseHeaders(map.get("headers")))
-                .requestBody(parseString(map.get("requestBody")))
-                .contentType(parseString(map.get("contentType")))
-                .timeoutMs(parseInteger(map.get("timeoutMs"), 10000))
-                .intervalSeconds(parseInteger(map.get("intervalSeconds"), 300))
-                .build();
+    /**
+     * Выполнить скрипт завершения: KEYS - очередь, inflight и ключи статусов,
+     * ARGV - TTL статуса и тройки (монитор, время следующего пинга, статус)
+     */
+    @SuppressWarnings("unchecked")
+    private Long executeCompletionScript(RedisScript<Long> script, List<PingCompletionDto> completions) {
+        List<String> keys = new ArrayList<>(completions.size() + 2);
+        keys.add(PING_QUEUE_KEY);
+        keys.add(INFLIGHT_KEY);
+
+        // Аргументы сериализуем сами: члены ZSET - тем же JSON-сериализатором, что и в очереди,
+        // статус - бинарным кодеком
+        RedisSerializer<Object> memberSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        Object[] args = new Object[1 + completions.size() * 3];
+        args[0] = asciiBytes(STATUS_TTL_SECONDS);
+
+        int argIndex = 1;
+        for (PingCompletionDto completion : completions) {
+            keys.add(STATUS_KEY_PREFIX + completion.getMonitorId());
+            args[argIndex++] = memberSerializer.serialize(completion.getMonitorId().toString());
+            args[argIndex++] = PingSchedulePolicy.toScoreString(completion.getNextPingEpochMilli())
+                    .getBytes(StandardCharsets.US_ASCII);
+            // Пустое значение - статус не обновляется
+            args[argIndex++] = completion.getStatus() != null
+                    ? toStatusData(completion.getStatus(), completion.getResponseTimeMs(),
+                    completion.getResponseCode(), completion.getErrorMessage(), completion.getCheckedAt())
+                    : new byte[0];
+        }
+
+        return redisTemplate.execute(script, RedisSerializer.byteArray(),
+                new GenericToStringSerializer<>(Long.class), keys, args);
     }
 
-    private String parseString(Object obj) {
-        return obj != null ? obj.toString() : null;
+    private void scanZSet(String key, BiConsumer<Long, Double> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().count(1000).build();
+        try (Cursor<ZSetOperations.TypedTuple<Object>> cursor = redisTemplate.opsForZSet().scan(key, options)) {
+            while (cursor.hasNext()) {
+                ZSetOperations.TypedTuple<Object> tuple = cursor.next();
+                if (tuple.getValue() == null || tuple.getScore() == null) continue;
+                try {
+                    consumer.accept(Long.valueOf(tuple.getValue().toString()), tuple.getScore());
+                } catch (NumberFormatException e) {
+                    log.warn("Skipping unexpected member {} in {}", tuple.getValue(), key);
+                }
+            }
+        }
     }
 
-    private HttpMethod parseHttpMethod(Object obj) {
-        if (obj == null) return HttpMethod.GET;
-        try {
-            return HttpMethod.valueOf(obj.toString().toUpperCase());
-        } catch (Exception e) {
-            return HttpMethod.GET;
+    private void logReschedule(Long monitorId, double nextPingTime, Long released) {
+        if (released != null && released == 1L) {
+            log.debug("Scheduled next ping for monitor {} at epoch {}", monitorId, nextPingTime);
+        } else {
+            log.debug("Lease for monitor {} is no longer held, skipping reschedule", monitorId);
         }
     }
 
-    private Integer parseInteger(Object obj, int defaultValue) {
-        if (obj == null) return defaultValue;
-        if (obj instanceof Integer) return (Integer) obj;
+    private Optional<MonitorConfigDto> toMonitorConfig(byte[] rawConfig, Long monitorId) {
+        if (rawConfig == null) {
+            log.warn("Monitor config not found in Redis for monitor {}", monitorId);
+            return Optional.empty();
+        }
+
         try {
-            return Integer.parseInt(obj.toString());
+            MonitorRecordCodec.ConfigRecord record = MonitorRecordCodec.decodeConfig(rawConfig, monitorId);
+            return Optional.of(MonitorConfigDto.builder()
+                    .monitorId(monitorId)
+                    .ownerId(record.ownerId())
+                    .url(record.url())
+                    .method(parseHttpMethod(record.method()))
+                    .name(record.name())
+                    .headers(record.headers())
+                    .requestBody(record.requestBody())
+                    .contentType(record.contentType())
+                    .timeoutMs(record.timeoutMs())
+                    .intervalSeconds(record.intervalSeconds())
+                    .build());
         } catch (Exception e) {
-            return defaultValue;
+            log.warn("Unexpected config format for monitor {}: {}", monitorId, e.getMessage());
+            return Optional.empty();
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private Map<String, String> parseHeaders(Object obj) {
-        if (obj instanceof Map) {
-            Map<String, String> headers = new HashMap<>();
-            ((Map<String, Object>) obj).forEach((key, value) ->
-                    headers.put(key, value != null ? value.toString() : null));
-            return headers;
-        }
-        return null;
+    private byte[] toStatusData(PingStatus status, Integer responseTimeMs,
+                                Integer responseCode, String errorMessage, Instant checkedAt) {
+        return MonitorRecordCodec.encodeStatus(new MonitorRecordCodec.StatusRecord(
+                status.name(), checkedAt, responseTimeMs, responseCode, errorMessage));
+    }
+
+    private byte[] asciiBytes(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private HttpMethod parseHttpMethod(String method) {
+        if (method == null) return HttpMethod.GET;
+        try {
+            return HttpMethod.valueOf(method.toUpperCase());
+        } catch (Exception e) {
+            return HttpMethod.GET;
+        }
     }
 }
 
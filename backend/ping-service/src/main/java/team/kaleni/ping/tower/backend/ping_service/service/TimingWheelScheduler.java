@@ -0,0 +1,429 @@
+package team.kaleni.ping.tower.backend.ping_service.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import team.kaleni.ping.tower.backend.ping_service.cluster.MonitorOwnership;
+import team.kaleni.ping.tower.backend.ping_service.concurrent.HierarchicalTimingWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Планировщик на иерархическом колесе таймеров (ping.scheduler.mode=WHEEL).
+ * Узел держит в памяти расписание своих мониторов (MonitorOwnership) и запускает пинг
+ * в момент срока с точностью до ping.wheel.tick-ms, без опроса ping:queue.
+ * Поток колеса только поворачивает его и складывает сработавшие мониторы в очередь готовых;
+ * выдачу на пинг (MGET конфигураций, передача в executor) делает отдельный поток-диспетчер,
+ * поэтому медленный Redis или занятый пул не останавливают тики колеса.
+ * Redis остаётся источником истины: расписание загружается при старте и периодической
+ * сверке, новое время пинга записывается лениво через PingCompletionBuffer,
+ * изменения мониторов приходят по каналу инвалидации конфигураций.
+ * При смене владельцев узел сразу перестаёт запускать отданные мониторы, а полученные
+ * загружает через ping.cluster.handoff-delay-ms - после того как прежний владелец
+ * допишет в Redis их расписание. Полученный монитор со сроком раньше смены владельцев
+ * прежний владелец ещё пингует, поэтому он ждёт записи нового срока
+ * (не дольше ping.cluster.handoff-max-wait-ms), а не запускается второй раз.
+ */
+@Service
+@ConditionalOnProperty(name = "ping.scheduler.mode", havingValue = "WHEEL")
+@RequiredArgsConstructor
+@Slf4j
+public class TimingWheelScheduler implements MessageListener {
+
+    // Отметка в schedule: монитор выдан на пинг и вернётся в колесо после завершения
+    private static final long IN_FLIGHT = -1L;
+
+    private final RedisMonitorService redisMonitorService;
+    private final PingSchedulerService pingSchedulerService;
+    private final PingCompletionBuffer completionBuffer;
+    private final MonitorOwnership ownership;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ping.wheel.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${ping.wheel.size:512}")
+    private int wheelSize;
+
+    @Value("${ping.wheel.dispatch-batch:500}")
+    private int dispatchBatch;
+
+    @Value("${ping.wheel.reconcile-delay-ms:1000}")
+    private long reconcileDelayMs;
+
+    @Value("${ping.wheel.resync-interval-ms:300000}")
+    private long resyncIntervalMs;
+
+    @Value("${ping.wheel.resync-retry-ms:5000}")
+    private long resyncRetryMs;
+
+    @Value("${ping.cluster.handoff-delay-ms:3000}")
+    private long handoffDelayMs;
+
+    @Value("${ping.cluster.handoff-max-wait-ms:60000}")
+    private long handoffMaxWaitMs;
+
+    @Value("${ping.wheel.in-flight-timeout-ms:120000}")
+    private long inFlightTimeoutMs;
+
+    // Мониторы узла: ID -> срок в колесе (epoch millis) или IN_FLIGHT
+    private final Map<Long, Long> schedule = new ConcurrentHashMap<>();
+    // Выданные на пинг мониторы: ID -> момент выдачи (epoch millis)
+    private final Map<Long, Long> dispatchedAt = new ConcurrentHashMap<>();
+    // Сработавшие мониторы, ждущие свободной ёмкости: пишет поток колеса, читает диспетчер
+    private final LinkedBlockingDeque<HierarchicalTimingWheel.Entry<Long>> ready = new LinkedBlockingDeque<>();
+
+    private HierarchicalTimingWheel<Long> wheel;
+    private Counter firedCounter;
+    private Thread wheelThread;
+    private Thread dispatchThread;
+    private volatile boolean running;
+    private volatile long nextResyncAt;
+    // Момент последней смены владельцев (epoch millis)
+    private volatile long handoffAt;
+
+    @PostConstruct
+    public void init() {
+        wheel = new HierarchicalTimingWheel<>(tickMs, wheelSize, System.currentTimeMillis());
+
+        Gauge.builder("ping.wheel.monitors", schedule, Map::size)
+                .description("Monitors scheduled by this node's timing wheel")
+                .register(meterRegistry);
+        Gauge.builder("ping.wheel.ready", ready, LinkedBlockingDeque::size)
+                .description("Due monitors waiting for free ping capacity")
+                .register(meterRegistry);
+        Gauge.builder("ping.wheel.lag", this, TimingWheelScheduler::getReadyLagMs)
+                .description("How late the oldest waiting monitor is")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        firedCounter = Counter.builder("ping.wheel.fired")
+                .description("Monitors handed to the ping pipeline by the timing wheel")
+                .register(meterRegistry);
+
+        completionBuffer.addRescheduleListener(this::onRescheduled);
+        ownership.addChangeListener(this::onOwnershipChanged);
+        listenerContainer.addMessageListener(this, new ChannelTopic(MonitorConfigCache.INVALIDATION_CHANNEL));
+
+        running = true;
+        wheelThread = new Thread(this::runWheel, "ping-wheel");
+        wheelThread.setDaemon(true);
+        wheelThread.start();
+
+        dispatchThread = new Thread(this::runDispatcher, "ping-wheel-dispatch");
+        dispatchThread.setDaemon(true);
+        dispatchThread.start();
+
+        log.info("Timing wheel scheduler started: tick={}ms, size={}", tickMs, wheelSize);
+    }
+
+    /**
+     * Сверка с ping:queue: при старте, после неудачной попытки и раз в ping.wheel.resync-interval-ms.
+     * Добавляет мониторы узла, которых нет в колесе, и убирает удалённые из очереди или чужие.
+     */
+    @Scheduled(fixedDelayString = "${ping.wheel.resync-check-ms:1000}")
+    public void resyncIfDue() {
+        if (System.currentTimeMillis() < nextResyncAt) {
+            return;
+        }
+
+        try {
+            int deferred = resync();
+            // Отложенные при передаче мониторы проверяются снова, пока прежний владелец не запишет их срок
+            nextResyncAt = System.currentTimeMillis() + (deferred > 0 ? handoffDelayMs : resyncIntervalMs);
+        } catch (Exception e) {
+            log.error("Error loading ping schedule from Redis, retrying in {}ms: {}", resyncRetryMs, e.getMessage());
+            nextResyncAt = System.currentTimeMillis() + resyncRetryMs;
+        }
+    }
+
+    /**
+     * Запросить внеочередную сверку (например, после смены владельцев мониторов)
+     */
+    public void requestResync() {
+        nextResyncAt = 0;
+    }
+
+    /**
+     * Состав узлов изменился: отданные мониторы убираются сразу (выданные на пинг
+     * уйдут после завершения), полученные подгружаются сверкой после паузы передачи
+     */
+    private void onOwnershipChanged() {
+        int released = 0;
+        for (Map.Entry<Long, Long> entry : schedule.entrySet()) {
+            if (entry.getValue() != IN_FLIGHT && !ownership.owns(entry.getKey())
+                    && schedule.remove(entry.getKey(), entry.getValue())) {
+                released++;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        handoffAt = now;
+        nextResyncAt = Math.min(nextResyncAt, now + handoffDelayMs);
+        log.info("Ownership changed: released {} monitors, loading new ones in {}ms", released, handoffDelayMs);
+    }
+
+    /**
+     * @return число полученных мониторов, отложенных до записи срока прежним владельцем
+     */
+    private int resync() {
+        Map<Long, Long> stored = redisMonitorService.loadSchedule();
+        long now = System.currentTimeMillis();
+        int added = 0;
+        int removed = 0;
+        int deferred = 0;
+        int reclaimed = 0;
+
+        for (Map.Entry<Long, Long> entry : stored.entrySet()) {
+            Long monitorId = entry.getKey();
+            if (!ownership.owns(monitorId) || schedule.containsKey(monitorId)) continue;
+
+            if (awaitsPreviousOwner(entry.getValue(), now)) {
+                deferred++;
+            } else if (schedule.putIfAbsent(monitorId, entry.getValue()) == null) {
+                wheel.schedule(monitorId, entry.getValue());
+                added++;
+            }
+        }
+
+        // Время уже известных мониторов не трогаем: запись в Redis ленивая и может отставать от колеса
+        for (Long monitorId : schedule.keySet()) {
+            if (ownership.owns(monitorId) && stored.containsKey(monitorId)) {
+                if (reclaimStuck(monitorId, stored.get(monitorId), now)) {
+                    reclaimed++;
+                }
+                continue;
+            }
+
+            Long current = schedule.get(monitorId);
+            if (current != null && (current != IN_FLIGHT || isStuck(monitorId, now))
+                    && schedule.remove(monitorId, current)) {
+                dispatchedAt.remove(monitorId);
+                removed++;
+            }
+        }
+
+        log.info("Timing wheel resync: {} monitors in queue, {} owned, added {}, removed {}, reclaimed {}, " +
+                        "awaiting handoff {}",
+                stored.size(), schedule.size(), added, removed, reclaimed, deferred);
+        return deferred;
+    }
+
+    /**
+     * Монитор выдан на пинг дольше ping.wheel.in-flight-timeout-ms назад и так и не перепланирован
+     * (задача потеряна): вернуть его в колесо к сроку из Redis. Запоздавшее завершение
+     * такого пинга будет проигнорировано в onRescheduled.
+     */
+    private boolean reclaimStuck(Long monitorId, long storedDue, long now) {
+        if (!isStuck(monitorId, now)) {
+            return false;
+        }
+
+        long due = Math.max(storedDue, now);
+        if (schedule.replace(monitorId, IN_FLIGHT, due)) {
+            dispatchedAt.remove(monitorId);
+            wheel.schedule(monitorId, due);
+            log.warn("Monitor {} was in flight longer than {}ms, returned to timing wheel", monitorId, inFlightTimeoutMs);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isStuck(Long monitorId, long now) {
+        Long since = dispatchedAt.get(monitorId);
+        return since != null && now - since >= inFlightTimeoutMs;
+    }
+
+    /**
+     * Срок монитора, которого нет в колесе, наступил до смены владельцев: колесо прежнего владельца
+     * уже выдало его на пинг, а новый срок будет записан в Redis только после завершения.
+     * Такой монитор не загружается, пока срок в Redis не обновится или не истечёт
+     * ping.cluster.handoff-max-wait-ms (прежний владелец мог упасть, не записав его).
+     */
+    private boolean awaitsPreviousOwner(long dueMillis, long now) {
+        long lastHandoff = handoffAt;
+        return dueMillis < lastHandoff && now < lastHandoff + handoffMaxWaitMs;
+    }
+
+    /**
+     * Сообщение из канала инвалидации: монитор создан, изменён или удалён.
+     * Сверка откладывается на ping.wheel.reconcile-delay-ms - URL Service публикует
+     * сообщение до того, как обновляет ping:queue.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object payload = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (payload == null) return;
+
+            Long monitorId = Long.valueOf(payload.toString());
+            if (!ownership.owns(monitorId)) return;
+
+            CompletableFuture.delayedExecutor(reconcileDelayMs, TimeUnit.MILLISECONDS)
+                    .execute(() -> reconcile(monitorId));
+
+        } catch (Exception e) {
+            log.error("Error handling schedule invalidation message: {}", e.getMessage());
+        }
+    }
+
+    private void reconcile(Long monitorId) {
+        try {
+            Optional<Long> stored = redisMonitorService.getScheduledPingMillis(monitorId);
+            Long current = schedule.get(monitorId);
+
+            if (stored.isEmpty()) {
+                // Монитор удалён или выключен; выданный на пинг не вернётся в Redis при записи
+                if (current != null && current != IN_FLIGHT && schedule.remove(monitorId, current)) {
+                    log.debug("Monitor {} left the ping queue, removed from timing wheel", monitorId);
+                }
+                return;
+            }
+
+            long due = stored.get();
+            if (current == null) {
+                if (awaitsPreviousOwner(due, System.currentTimeMillis())) {
+                    log.debug("Monitor {} is still pinged by its previous owner, loading it on resync", monitorId);
+                } else if (schedule.putIfAbsent(monitorId, due) == null) {
+                    wheel.schedule(monitorId, due);
+                    log.debug("Monitor {} added to timing wheel at {}", monitorId, due);
+                }
+            } else if (current != IN_FLIGHT && Math.abs(current - due) >= 1000
+                    && schedule.replace(monitorId, current, due)) {
+                // Прежняя задача в колесе станет устаревшей и будет пропущена при срабатывании
+                wheel.schedule(monitorId, due);
+                log.debug("Monitor {} rescheduled in timing wheel to {}", monitorId, due);
+            }
+
+        } catch (Exception e) {
+            log.error("Error reconciling schedule of monitor {}: {}", monitorId, e.getMessage());
+        }
+    }
+
+    /**
+     * Пинг завершён или отложен: вернуть монитор в колесо к следующему сроку
+     */
+    private void onRescheduled(Long monitorId, long nextPingMillis) {
+        dispatchedAt.remove(monitorId);
+        if (!ownership.owns(monitorId)) {
+            schedule.remove(monitorId);
+            return;
+        }
+        if (schedule.replace(monitorId, IN_FLIGHT, nextPingMillis)) {
+            wheel.schedule(monitorId, nextPingMillis);
+        }
+    }
+
+    private void runWheel() {
+        while (running) {
+            try {
+                long now = System.currentTimeMillis();
+                wheel.advance(now, this::onExpired);
+            } catch (Exception e) {
+                log.error("Unexpected error in timing wheel: {}", e.getMessage(), e);
+            }
+
+            long sleepMs = wheel.getClock() + tickMs - System.currentTimeMillis();
+            if (sleepMs > 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(sleepMs));
+            }
+        }
+        log.info("Timing wheel stopped with {} monitors scheduled", schedule.size());
+    }
+
+    /**
+     * Срок наступил: монитор выдаётся на пинг, только если задача не устарела
+     */
+    private void onExpired(HierarchicalTimingWheel.Entry<Long> entry) {
+        if (!ownership.owns(entry.item())) {
+            schedule.remove(entry.item(), entry.deadlineMillis());
+            return;
+        }
+        if (schedule.replace(entry.item(), entry.deadlineMillis(), IN_FLIGHT)) {
+            ready.add(entry);
+        }
+    }
+
+    /**
+     * Поток-диспетчер: выдаёт сработавшие мониторы пачками в пределах свободной ёмкости узла.
+     * Ёмкость уже ограничена свободным местом в executor, поэтому передача не выполняет пинги
+     * на этом потоке и не ждёт семафор; без ёмкости диспетчер ждёт тик и пробует снова.
+     */
+    private void runDispatcher() {
+        while (running) {
+            try {
+                HierarchicalTimingWheel.Entry<Long> first = ready.poll(tickMs, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+
+                int capacity = pingSchedulerService.availableCapacity();
+                if (capacity <= 0) {
+                    ready.offerFirst(first);
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(tickMs));
+                    continue;
+                }
+
+                List<Long> batch = new ArrayList<>(Math.min(capacity, dispatchBatch));
+                batch.add(first.item());
+                List<HierarchicalTimingWheel.Entry<Long>> rest = new ArrayList<>();
+                ready.drainTo(rest, Math.min(capacity, dispatchBatch) - 1);
+                rest.forEach(entry -> batch.add(entry.item()));
+
+                // Ожидание в очереди готовых не считается: таймаут выдачи отсчитывается отсюда
+                long dispatchedNow = System.currentTimeMillis();
+                batch.forEach(monitorId -> dispatchedAt.put(monitorId, dispatchedNow));
+
+                pingSchedulerService.dispatch(batch);
+                firedCounter.increment(batch.size());
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Unexpected error in timing wheel dispatcher: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Насколько опаздывает самый старый монитор, ждущий выдачи
+     */
+    private long getReadyLagMs() {
+        HierarchicalTimingWheel.Entry<Long> oldest = ready.peekFirst();
+        return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest.deadlineMillis());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(wheelThread);
+        dispatchThread.interrupt();
+        try {
+            wheelThread.join(TimeUnit.SECONDS.toMillis(5));
+            dispatchThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package team.kaleni.ping.tower.backend.ping_service.timing;
+
+/**
+ * Замеры одной попытки проверки по System.nanoTime.
+ * Передаётся в Reactor Netty через контекст подписки (CONTEXT_KEY) и заполняется хуками HttpClient.
+ * Фазы DNS/connect/TLS есть только у попытки, открывшей новое соединение;
+ * при переиспользовании keep-alive соединения они пустые.
+ */
+public class CheckTiming {
+
+    public static final String CONTEXT_KEY = CheckTiming.class.getName();
+
+    private final long startNanos = System.nanoTime();
+
+    // Суммы по всем новым соединениям попытки (редирект на другой хост открывает ещё одно)
+    private volatile long dnsNanos = -1;
+    private volatile long connectNanos = -1;
+    private volatile long tlsNanos = -1;
+
+    // 0 - событие не наступило
+    private volatile long requestSentNanos;
+    private volatile long firstByteNanos;
+    private volatile long completedNanos;
+
+    synchronized void addConnectionPhases(ConnectionTiming connection) {
+        dnsNanos = add(dnsNanos, connection.dnsNanos());
+        connectNanos = add(connectNanos, connection.connectNanos());
+        tlsNanos = add(tlsNanos, connection.tlsNanos());
+    }
+
+    void markRequestSent() {
+        requestSentNanos = System.nanoTime();
+    }
+
+    void markFirstByte() {
+        firstByteNanos = System.nanoTime();
+    }
+
+    void markCompleted() {
+        completedNanos = System.nanoTime();
+    }
+
+    public Double getDnsMs() {
+        return dnsNanos >= 0 ? toMillis(dnsNanos) : null;
+    }
+
+    public Double getConnectMs() {
+        return connectNanos >= 0 ? toMillis(connectNanos) : null;
+    }
+
+    public Double getTlsMs() {
+        return tlsNanos >= 0 ? toMillis(tlsNanos) : null;
+    }
+
+    /**
+     * От отправки запроса до заголовков ответа
+     */
+    public Double getTtfbMs() {
+        return requestSentNanos > 0 && firstByteNanos >= requestSentNanos
+                ? toMillis(firstByteNanos - requestSentNanos) : null;
+    }
+
+    /**
+     * От заголовков ответа до конца тела
+     */
+    public Double getDownloadMs() {
+        return firstByteNanos > 0 && completedNanos >= firstByteNanos
+                ? toMillis(completedNanos - firstByteNanos) : null;
+    }
+
+    /**
+     * Полное время попытки: ожидание соединения из пула, DNS, connect, TLS, запрос и ответ
+     */
+    public double getTotalMs() {
+        long end = completedNanos > 0 ? completedNanos : System.nanoTime();
+        return toMillis(end - startNanos);
+    }
+
+    private static long add(long total, long phase) {
+        if (phase < 0) return total;
+        return total < 0 ? phase : total + phase;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
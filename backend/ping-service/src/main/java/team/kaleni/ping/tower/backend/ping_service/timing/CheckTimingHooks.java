@@ -0,0 +1,83 @@
+package team.kaleni.ping.tower.backend.ping_service.timing;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.ssl.SslHandler;
+import reactor.netty.Connection;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientInfos;
+
+import java.util.Optional;
+
+/**
+ * Хуки Reactor Netty, раскладывающие время проверки по фазам.
+ * Установка соединения (DNS, TCP connect, TLS) замеряется на канале и передаётся
+ * в CheckTiming первого запроса по нему; запрос и ответ (TTFB, загрузка тела) -
+ * прямо в CheckTiming из контекста подписки. HttpClient и пул соединений остаются общими.
+ */
+public final class CheckTimingHooks {
+
+    private static final String HANDLER_NAME = "ping.timing";
+
+    private CheckTimingHooks() {
+    }
+
+    public static HttpClient instrument(HttpClient httpClient) {
+        return httpClient
+                .doOnChannelInit((observer, channel, remoteAddress) -> {
+                    channel.attr(ConnectionTiming.ATTRIBUTE).set(new ConnectionTiming());
+                    channel.pipeline().addFirst(HANDLER_NAME, ChannelActiveRecorder.INSTANCE);
+                })
+                .doOnResolve(connection -> connectionTiming(connection).ifPresent(ConnectionTiming::markResolveStart))
+                .doAfterResolve((connection, address) ->
+                        connectionTiming(connection).ifPresent(ConnectionTiming::markResolveEnd))
+                .doOnConnected(connection -> connectionTiming(connection).ifPresent(timing ->
+                        timing.markReady(connection.channel().pipeline().get(SslHandler.class) != null)))
+                .doOnRequest((request, connection) -> {
+                    CheckTiming timing = checkTiming(request);
+                    if (timing == null) return;
+                    connectionTiming(connection)
+                            .filter(ConnectionTiming::claim)
+                            .ifPresent(timing::addConnectionPhases);
+                })
+                .doAfterRequest((request, connection) -> {
+                    CheckTiming timing = checkTiming(request);
+                    if (timing != null) timing.markRequestSent();
+                })
+                .doOnResponse((response, connection) -> {
+                    CheckTiming timing = checkTiming(response);
+                    if (timing != null) timing.markFirstByte();
+                })
+                .doAfterResponseSuccess((response, connection) -> {
+                    CheckTiming timing = checkTiming(response);
+                    if (timing != null) timing.markCompleted();
+                });
+    }
+
+    private static CheckTiming checkTiming(HttpClientInfos infos) {
+        return infos.currentContextView().getOrDefault(CheckTiming.CONTEXT_KEY, null);
+    }
+
+    private static Optional<ConnectionTiming> connectionTiming(Connection connection) {
+        return Optional.ofNullable(connection.channel().attr(ConnectionTiming.ATTRIBUTE).get());
+    }
+
+    /**
+     * Первый обработчик конвейера: отмечает завершение TCP connect
+     */
+    @ChannelHandler.Sharable
+    private static final class ChannelActiveRecorder extends ChannelInboundHandlerAdapter {
+
+        private static final ChannelActiveRecorder INSTANCE = new ChannelActiveRecorder();
+
+        @Override
+        public void channelActive(ChannelHandlerContext ctx) throws Exception {
+            ConnectionTiming timing = ctx.channel().attr(ConnectionTiming.ATTRIBUTE).get();
+            if (timing != null) {
+                timing.markActive();
+            }
+            super.channelActive(ctx);
+        }
+    }
+}
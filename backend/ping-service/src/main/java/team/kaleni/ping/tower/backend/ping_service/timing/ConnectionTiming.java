@@ -0,0 +1,67 @@
+package team.kaleni.ping.tower.backend.ping_service.timing;
+
+import io.netty.util.AttributeKey;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Замеры установки одного соединения, хранятся в атрибуте канала.
+ * Забираются первой попыткой, отправившей запрос по этому соединению.
+ */
+class ConnectionTiming {
+
+    static final AttributeKey<ConnectionTiming> ATTRIBUTE = AttributeKey.valueOf("ping.connection-timing");
+
+    private final long initNanos = System.nanoTime();
+    private volatile long resolveStartNanos;
+    private volatile long resolveEndNanos;
+    private volatile long activeNanos;
+    private volatile long readyNanos;
+    private volatile boolean secure;
+    private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+    void markResolveStart() {
+        resolveStartNanos = System.nanoTime();
+    }
+
+    void markResolveEnd() {
+        resolveEndNanos = System.nanoTime();
+    }
+
+    void markActive() {
+        activeNanos = System.nanoTime();
+    }
+
+    void markReady(boolean secure) {
+        this.readyNanos = System.nanoTime();
+        this.secure = secure;
+    }
+
+    /**
+     * true только для первого запроса по соединению
+     */
+    boolean claim() {
+        return claimed.compareAndSet(false, true);
+    }
+
+    long dnsNanos() {
+        return resolveStartNanos > 0 && resolveEndNanos >= resolveStartNanos
+                ? resolveEndNanos - resolveStartNanos : -1;
+    }
+
+    /**
+     * TCP connect: от конца разрешения имени (или создания канала для IP-адреса) до channelActive
+     */
+    long connectNanos() {
+        if (activeNanos == 0) return -1;
+        long from = resolveEndNanos > 0 ? resolveEndNanos : initNanos;
+        return Math.max(0, activeNanos - from);
+    }
+
+    /**
+     * TLS: от channelActive до готовности соединения; для HTTP без TLS - пусто
+     */
+    long tlsNanos() {
+        return secure && activeNanos > 0 && readyNanos >= activeNanos ? readyNanos - activeNanos : -1;
+    }
+}
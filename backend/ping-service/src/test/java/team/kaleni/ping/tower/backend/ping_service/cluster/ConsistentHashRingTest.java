@@ -0,0 +1,116 @@
+package team.kaleni.ping.tower.backend.ping_service.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final int VIRTUAL_NODES = 128;
+    private static final int MONITORS = 100_000;
+
+    @Test
+    void emptyRingHasNoOwner() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), VIRTUAL_NODES);
+
+        assertNull(ring.ownerOf(1));
+        assertTrue(ring.shares().isEmpty());
+    }
+
+    @Test
+    void singleNodeOwnsEverything() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a"), 1);
+
+        for (long id = 0; id < 1_000; id++) {
+            assertEquals("node-a", ring.ownerOf(id));
+        }
+        assertEquals(1.0, ring.shares().get("node-a"), 1e-12);
+    }
+
+    @Test
+    void sharesSumToOneAndMatchOwnership() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), VIRTUAL_NODES);
+        Map<String, Double> shares = ring.shares();
+
+        assertEquals(1.0, shares.values().stream().mapToDouble(Double::doubleValue).sum(), 1e-9);
+
+        Map<String, Integer> owned = ownedCounts(ring);
+        shares.forEach((node, share) -> {
+            double fraction = owned.getOrDefault(node, 0) / (double) MONITORS;
+            assertEquals(share, fraction, 0.01, "share of " + node);
+            // Виртуальные узлы выравнивают доли около 1/N
+            assertEquals(1.0 / 3, share, 0.1, "balance of " + node);
+        });
+    }
+
+    @Test
+    void ownershipDoesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), VIRTUAL_NODES);
+        ConsistentHashRing shuffled = new ConsistentHashRing(List.of("node-c", "node-a", "node-b", "node-a"), VIRTUAL_NODES);
+
+        assertEquals(ring.getNodes(), shuffled.getNodes());
+        for (long id = 0; id < MONITORS; id++) {
+            assertEquals(ring.ownerOf(id), shuffled.ownerOf(id));
+        }
+    }
+
+    @Test
+    void joiningNodeTakesMonitorsOnlyForItself() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("node-a", "node-b", "node-c", "node-d"), VIRTUAL_NODES);
+
+        int moved = 0;
+        for (long id = 0; id < MONITORS; id++) {
+            String previous = before.ownerOf(id);
+            String current = after.ownerOf(id);
+            if (!previous.equals(current)) {
+                assertEquals("node-d", current, "monitor " + id + " moved between old nodes");
+                moved++;
+            }
+        }
+
+        // Переезжает около 1/N мониторов, а не всё распределение
+        double movedFraction = moved / (double) MONITORS;
+        assertEquals(after.shares().get("node-d"), movedFraction, 0.01);
+        assertTrue(movedFraction > 0.15 && movedFraction < 0.35, "moved " + movedFraction);
+    }
+
+    @Test
+    void leavingNodeHandsOverOnlyItsMonitors() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("node-a", "node-b", "node-c"), VIRTUAL_NODES);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("node-a", "node-c"), VIRTUAL_NODES);
+
+        for (long id = 0; id < MONITORS; id++) {
+            String previous = before.ownerOf(id);
+            if (!previous.equals("node-b")) {
+                assertEquals(previous, after.ownerOf(id), "monitor " + id + " moved off a surviving node");
+            }
+        }
+    }
+
+    @Test
+    void mixSpreadsSequentialIds() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("node-a", "node-b"), VIRTUAL_NODES);
+        Map<String, Integer> owned = new HashMap<>();
+        for (long id = 1; id <= 1_000; id++) {
+            owned.merge(ring.ownerOf(id), 1, Integer::sum);
+        }
+
+        // Подряд идущие ID не должны скапливаться на одном узле
+        owned.values().forEach(count -> assertTrue(count > 350, "owned " + owned));
+    }
+
+    private Map<String, Integer> ownedCounts(ConsistentHashRing ring) {
+        Map<String, Integer> owned = new HashMap<>();
+        for (long id = 0; id < MONITORS; id++) {
+            owned.merge(ring.ownerOf(id), 1, Integer::sum);
+        }
+        return owned;
+    }
+}
@@ -0,0 +1,166 @@
+package team.kaleni.ping.tower.backend.ping_service.codec;
+
+import org.junit.jupiter.api.Test;
+import team.kaleni.ping.tower.backend.ping_service.codec.MonitorRecordCodec.ConfigRecord;
+import team.kaleni.ping.tower.backend.ping_service.codec.MonitorRecordCodec.StatusRecord;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Эталонные байты одинаковы в тестах URL Service и Ping Service: расхождение копий кодека ломает один из них
+ */
+class MonitorRecordCodecTest {
+
+    private static final ConfigRecord FULL_CONFIG = new ConfigRecord(42, 7, "Example",
+            "https://example.com/health", "POST", Map.of("X-Token", "abc"), "{}", "application/json",
+            5000, 60, true);
+
+    private static final byte[] FULL_CONFIG_BYTES = hex(
+            "01 0f"                                                   // версия, флаги: заголовки, тело, тип, enabled
+            + " 00 00 00 00 00 00 00 2a 00 00 00 00 00 00 00 07"      // monitorId, ownerId
+            + " 00 00 00 07 45 78 61 6d 70 6c 65"                     // name
+            + " 00 00 00 1a 68 74 74 70 73 3a 2f 2f 65 78 61 6d 70 6c 65 2e 63 6f 6d 2f 68 65 61 6c 74 68"
+            + " 00 00 00 04 50 4f 53 54"                              // method
+            + " 00 00 13 88 00 00 00 3c"                              // timeoutMs, intervalSeconds
+            + " 00 01 00 00 00 07 58 2d 54 6f 6b 65 6e 00 00 00 03 61 62 63"
+            + " 00 00 00 02 7b 7d"                                    // requestBody
+            + " 00 00 00 10 61 70 70 6c 69 63 61 74 69 6f 6e 2f 6a 73 6f 6e");
+
+    private static final ConfigRecord BARE_CONFIG = new ConfigRecord(43, 7, "Bare", "https://example.com", "GET",
+            null, null, null, 10000, 300, false);
+
+    private static final byte[] BARE_CONFIG_BYTES = hex(
+            "01 00"
+            + " 00 00 00 00 00 00 00 2b 00 00 00 00 00 00 00 07"
+            + " 00 00 00 04 42 61 72 65"
+            + " 00 00 00 13 68 74 74 70 73 3a 2f 2f 65 78 61 6d 70 6c 65 2e 63 6f 6d"
+            + " 00 00 00 03 47 45 54"
+            + " 00 00 27 10 00 00 01 2c");
+
+    private static final StatusRecord FULL_STATUS = new StatusRecord("DOWN",
+            Instant.parse("2025-10-01T12:00:00.250Z"), 1234, 503, "HTTP 503");
+
+    private static final byte[] FULL_STATUS_BYTES = hex(
+            "01 0f"
+            + " 00 00 00 04 44 4f 57 4e"                              // status
+            + " 00 00 01 99 9f a4 c6 fa"                              // lastCheckedAt, мс
+            + " 00 00 04 d2 01 f7"                                    // responseTimeMs, responseCode
+            + " 00 00 00 08 48 54 54 50 20 35 30 33");                // errorMessage
+
+    private static final StatusRecord BARE_STATUS = new StatusRecord("UNKNOWN", null, null, null, null);
+
+    private static final byte[] BARE_STATUS_BYTES = hex("01 00 00 00 00 07 55 4e 4b 4e 4f 57 4e");
+
+    @Test
+    void encodesConfigToGoldenBytes() {
+        assertArrayEquals(FULL_CONFIG_BYTES, MonitorRecordCodec.encodeConfig(FULL_CONFIG));
+        assertArrayEquals(BARE_CONFIG_BYTES, MonitorRecordCodec.encodeConfig(BARE_CONFIG));
+    }
+
+    @Test
+    void decodesConfigFromGoldenBytes() {
+        assertEquals(FULL_CONFIG, MonitorRecordCodec.decodeConfig(FULL_CONFIG_BYTES, 42L));
+        assertEquals(BARE_CONFIG, MonitorRecordCodec.decodeConfig(BARE_CONFIG_BYTES, 43L));
+    }
+
+    @Test
+    void encodesStatusToGoldenBytes() {
+        assertArrayEquals(FULL_STATUS_BYTES, MonitorRecordCodec.encodeStatus(FULL_STATUS));
+        assertArrayEquals(BARE_STATUS_BYTES, MonitorRecordCodec.encodeStatus(BARE_STATUS));
+    }
+
+    @Test
+    void decodesStatusFromGoldenBytes() {
+        assertEquals(FULL_STATUS, MonitorRecordCodec.decodeStatus(FULL_STATUS_BYTES));
+        assertEquals(BARE_STATUS, MonitorRecordCodec.decodeStatus(BARE_STATUS_BYTES));
+    }
+
+    @Test
+    void truncatesLongErrorMessage() {
+        StatusRecord status = new StatusRecord("ERROR", null, null, null, "x".repeat(5000));
+
+        StatusRecord decoded = MonitorRecordCodec.decodeStatus(MonitorRecordCodec.encodeStatus(status));
+
+        assertEquals(1024, decoded.errorMessage().length());
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] value = BARE_STATUS_BYTES.clone();
+        value[0] = 0x02;
+
+        assertThrows(IllegalArgumentException.class, () -> MonitorRecordCodec.decodeStatus(value));
+        assertThrows(IllegalArgumentException.class, () -> MonitorRecordCodec.decodeConfig(value, 1L));
+    }
+
+    @Test
+    void returnsNullForMissingValue() {
+        assertNull(MonitorRecordCodec.decodeConfig(null, 1L));
+        assertNull(MonitorRecordCodec.decodeStatus(new byte[0]));
+    }
+
+    @Test
+    void decodesLegacyJsonConfig() {
+        String json = """
+                {"ownerId":7,"name":"Example","url":"https://example.com/health","method":"POST",
+                 "headers":{"X-Token":"abc"},"requestBody":"{}","contentType":"application/json",
+                 "timeoutMs":"5000","intervalSeconds":60}""";
+
+        // Идентификатор в старом JSON не хранился и берётся из ключа; enabled по умолчанию - true
+        assertEquals(FULL_CONFIG, MonitorRecordCodec.decodeConfig(json.getBytes(StandardCharsets.UTF_8), 42L));
+    }
+
+    @Test
+    void decodesLegacyJsonConfigWithDefaults() {
+        ConfigRecord config = MonitorRecordCodec.decodeConfig(
+                "{\"url\":\"https://example.com\",\"enabled\":false}".getBytes(StandardCharsets.UTF_8), 5L);
+
+        assertEquals(5L, config.monitorId());
+        assertEquals(0L, config.ownerId());
+        assertEquals(10000, config.timeoutMs());
+        assertEquals(300, config.intervalSeconds());
+        assertNull(config.headers());
+        assertFalse(config.enabled());
+    }
+
+    @Test
+    void decodesLegacyJsonStatusWithIsoTimestamp() {
+        // Так статус писал Ping Service
+        String json = """
+                {"status":"DOWN","lastCheckedAt":"2025-10-01T12:00:00.250Z","responseTimeMs":1234,
+                 "responseCode":503,"errorMessage":"HTTP 503"}""";
+
+        assertEquals(FULL_STATUS, MonitorRecordCodec.decodeStatus(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void decodesLegacyJsonStatusWithEpochSeconds() {
+        // Так статус писал URL Service: Instant через JavaTimeModule - секунды с дробной частью
+        String json = """
+                {"status":"DOWN","lastCheckedAt":1759320000.250000000,"responseTimeMs":1234,
+                 "responseCode":503,"errorMessage":"HTTP 503"}""";
+
+        assertEquals(FULL_STATUS, MonitorRecordCodec.decodeStatus(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void decodesLegacyJsonStatusWithoutOptionalFields() {
+        StatusRecord status = MonitorRecordCodec.decodeStatus(
+                "{\"status\":\"UNKNOWN\",\"lastCheckedAt\":null}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(BARE_STATUS, status);
+    }
+
+    private static byte[] hex(String bytes) {
+        return HexFormat.ofDelimiter(" ").parseHex(bytes);
+    }
+}
@@ -0,0 +1,137 @@
+package team.kaleni.ping.tower.backend.ping_service.concurrent;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HierarchicalTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    @Test
+    void rejectsInvalidGeometry() {
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<Long>(0, 8, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<Long>(10, 1, 0));
+    }
+
+    @Test
+    void alignsClockToTick() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 8, 1_234);
+
+        assertEquals(1_230, wheel.getClock());
+    }
+
+    @Test
+    void overdueEntryFiresOnNextAdvance() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 8, 1_000);
+        List<Long> fired = new ArrayList<>();
+
+        wheel.schedule(1L, 500);
+        assertEquals(1, wheel.size());
+
+        wheel.advance(1_000, entry -> fired.add(entry.item()));
+
+        assertEquals(List.of(1L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void entryFiresWithinItsTick() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 8, 0);
+        List<Long> firedAt = new ArrayList<>();
+
+        wheel.schedule(1L, 45);
+        for (long now = 0; now <= 100; now++) {
+            long current = now;
+            wheel.advance(now, entry -> firedAt.add(current));
+        }
+
+        // Срабатывание - при входе часов в слот срока: не раньше начала тика и не позже его конца
+        assertEquals(List.of(40L), firedAt);
+    }
+
+    @Test
+    void cascadesFarDeadlinesThroughUpperLevels() {
+        // Уровень 0 покрывает 40 мс, каждый следующий - в 4 раза больше: срок в 10 с требует нескольких уровней
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 4, 0);
+        Map<Long, Long> deadlines = new HashMap<>();
+        Random random = new Random(42);
+        for (long item = 0; item < 2_000; item++) {
+            long deadline = random.nextInt(10_000);
+            deadlines.put(item, deadline);
+            wheel.schedule(item, deadline);
+        }
+
+        Map<Long, Long> firedAt = new HashMap<>();
+        for (long now = 0; now <= 10_100; now += TICK_MS) {
+            long current = now;
+            wheel.advance(now, entry -> {
+                Long previous = firedAt.put(entry.item(), current);
+                assertNull(previous, "item " + entry.item() + " fired twice");
+                assertEquals((long) deadlines.get(entry.item()), entry.deadlineMillis());
+            });
+        }
+
+        assertEquals(deadlines.size(), firedAt.size());
+        assertEquals(0, wheel.size());
+        deadlines.forEach((item, deadline) -> {
+            long at = firedAt.get(item);
+            assertTrue(at > deadline - TICK_MS && at <= deadline,
+                    "item " + item + " due at " + deadline + " fired at " + at);
+        });
+    }
+
+    @Test
+    void entriesScheduledDuringAdvanceAreNotLost() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 8, 0);
+        List<Long> fired = new ArrayList<>();
+
+        wheel.schedule(1L, 20);
+        for (long now = 0; now <= 1_000; now += TICK_MS) {
+            wheel.advance(now, entry -> {
+                fired.add(entry.item());
+                // Повторная постановка из обработчика, как после завершения пинга
+                if (entry.item() < 5) {
+                    wheel.schedule(entry.item() + 1, entry.deadlineMillis() + 150);
+                }
+            });
+        }
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), fired);
+    }
+
+    @Test
+    void staleEntriesAreSkippedByDeadline() {
+        // Так TimingWheelScheduler отбрасывает устаревшие задачи после переноса срока:
+        // задача актуальна, только если её срок совпадает с записанным в расписании
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, 8, 0);
+        Map<Long, Long> schedule = new ConcurrentHashMap<>();
+        List<Long> dispatchedAt = new ArrayList<>();
+
+        schedule.put(7L, 100L);
+        wheel.schedule(7L, 100);
+        schedule.replace(7L, 100L, 300L);
+        wheel.schedule(7L, 300);
+
+        for (long now = 0; now <= 500; now += TICK_MS) {
+            long current = now;
+            wheel.advance(now, entry -> {
+                if (schedule.remove(entry.item(), entry.deadlineMillis())) {
+                    dispatchedAt.add(current);
+                }
+            });
+        }
+
+        assertEquals(List.of(300L), dispatchedAt);
+    }
+}
@@ -0,0 +1,295 @@
+package team.kaleni.ping.tower.backend.ping_service.journal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import team.kaleni.ping.tower.backend.ping_service.entity.PingResult;
+import team.kaleni.ping.tower.backend.ping_service.enums.PingStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PingResultJournalTest {
+
+    private static final Instant PINGED_AT = Instant.parse("2025-10-01T12:00:00Z");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysAppendedResultsInOrderAndDeletesSegment() throws IOException {
+        PingResultJournal journal = open(1);
+        journal.append(results(0, 5));
+
+        List<PingResult> replayed = replayAll(journal);
+
+        assertEquals(ids(0, 5), idsOf(replayed));
+        assertEquals(results(0, 5).get(3), replayed.get(3));
+        assertFalse(journal.hasPending());
+        assertEquals(0, listFiles().size());
+    }
+
+    @Test
+    void stopsAtRecordWithCrcMismatch() throws IOException {
+        PingResultJournal journal = open(1);
+        journal.append(results(0, 3));
+        journal.close();
+
+        // Портим байт данных третьей записи
+        Path segment = onlySegment();
+        int third = recordOffset(segment, 2);
+        byte[] bytes = Files.readAllBytes(segment);
+        bytes[third + 8] ^= 0x7F;
+        Files.write(segment, bytes);
+
+        assertEquals(ids(0, 2), idsOf(replayAll(open(1))));
+    }
+
+    @Test
+    void cutsOffTornTailRecord() throws IOException {
+        PingResultJournal journal = open(1);
+        journal.append(results(0, 3));
+        journal.close();
+
+        // Процесс упал посреди записи третьей строки: заголовок есть, данные оборваны
+        Path segment = onlySegment();
+        int third = recordOffset(segment, 2);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(third + 12);
+        }
+
+        assertEquals(ids(0, 2), idsOf(replayAll(open(1))));
+    }
+
+    @Test
+    void rotatesFullSegment() throws IOException {
+        PingResultJournal journal = open(1);
+        // ~10 КБ на запись - сегмент в 1 МБ заполняется примерно сотней записей
+        String url = "https://example.com/" + "a".repeat(10_000);
+        List<PingResult> written = results(0, 150);
+        written.forEach(result -> result.setUrl(url));
+
+        journal.append(written);
+
+        assertEquals(2, journal.getSegmentCount());
+        assertEquals(2, listFiles().size());
+
+        PingResultJournal.Segment first = journal.oldestSegment().orElseThrow();
+        List<PingResult> firstChunk = first.next(Integer.MAX_VALUE);
+        first.close();
+        assertTrue(firstChunk.size() > 0 && firstChunk.size() < 150);
+
+        // Пока первый сегмент не подтверждён, его выдают повторно
+        PingResultJournal.Segment again = journal.oldestSegment().orElseThrow();
+        assertEquals(first.getPath(), again.getPath());
+        again.close();
+
+        assertEquals(ids(0, 150), idsOf(replayAll(journal)));
+    }
+
+    @Test
+    void resumesFromCommittedOffsetAfterRestart() throws IOException {
+        PingResultJournal journal = open(1);
+        journal.append(results(0, 10));
+
+        try (PingResultJournal.Segment segment = journal.oldestSegment().orElseThrow()) {
+            assertEquals(ids(0, 4), idsOf(segment.next(4)));
+            journal.commit(segment);
+            // Порция прочитана, но не записана в ClickHouse - позиция не сохраняется
+            segment.next(3);
+        }
+        journal.close();
+
+        PingResultJournal restarted = open(1);
+        assertTrue(restarted.hasPending());
+        assertEquals(ids(4, 10), idsOf(replayAll(restarted)));
+        assertEquals(0, listFiles().size());
+    }
+
+    @Test
+    void ignoresMalformedOffsetFile() throws IOException {
+        PingResultJournal journal = open(1);
+        journal.append(results(0, 3));
+        journal.close();
+
+        Path segment = onlySegment();
+        String name = segment.getFileName().toString();
+        Files.write(segment.resolveSibling(name.replace(".log", ".offset")), new byte[] {1, 2, 3});
+
+        assertEquals(ids(0, 3), idsOf(replayAll(open(1))));
+    }
+
+    @Test
+    void decodesLegacyRecordsWithoutTimings() throws IOException {
+        // Сегмент, записанный до появления разбивки по фазам: запись заканчивается на created_at
+        ByteBuffer segment = ByteBuffer.allocate(4096);
+        appendRecord(segment, legacyPayload(1L, PingStatus.UP, 120, 200, null));
+        appendRecord(segment, legacyPayload(2L, PingStatus.TIMEOUT, null, null, "Read timed out"));
+        Files.write(dir.resolve("segment-00000000000000000001.log"), segment.array());
+
+        PingResultJournal journal = open(1);
+        List<PingResult> replayed = replayAll(journal);
+
+        assertEquals(2, replayed.size());
+        PingResult up = replayed.get(0);
+        assertEquals(1L, up.getMonitorId());
+        assertEquals(PINGED_AT, up.getPingTimestamp());
+        assertEquals(PingStatus.UP, up.getStatus());
+        assertEquals(120, up.getResponseTimeMs());
+        assertEquals(200, up.getResponseCode());
+        assertNull(up.getErrorMessage());
+        assertEquals("https://example.com/1", up.getUrl());
+        assertNull(up.getDnsMs());
+        assertNull(up.getDownloadMs());
+
+        PingResult timeout = replayed.get(1);
+        assertEquals(PingStatus.TIMEOUT, timeout.getStatus());
+        assertNull(timeout.getResponseTimeMs());
+        assertEquals("Read timed out", timeout.getErrorMessage());
+        assertNull(timeout.getTtfbMs());
+
+        // Новые сегменты нумеруются после найденных при старте
+        journal.append(results(0, 1));
+        journal.close();
+        assertTrue(Files.exists(dir.resolve("segment-00000000000000000002.log")));
+    }
+
+    // Helper methods
+
+    private PingResultJournal open(int segmentSizeMb) throws IOException {
+        PingResultJournal journal = new PingResultJournal(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(journal, "journalDir", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentSizeMb", segmentSizeMb);
+        journal.init();
+        return journal;
+    }
+
+    private List<PingResult> replayAll(PingResultJournal journal) throws IOException {
+        List<PingResult> replayed = new ArrayList<>();
+        Optional<PingResultJournal.Segment> oldest;
+        while ((oldest = journal.oldestSegment()).isPresent()) {
+            try (PingResultJournal.Segment segment = oldest.get()) {
+                List<PingResult> chunk;
+                while (!(chunk = segment.next(2)).isEmpty()) {
+                    replayed.addAll(chunk);
+                    journal.commit(segment);
+                }
+                journal.acknowledge(segment);
+            }
+        }
+        return replayed;
+    }
+
+    private List<PingResult> results(int fromId, int toId) {
+        return IntStream.range(fromId, toId)
+                .mapToObj(id -> PingResult.builder()
+                        .monitorId((long) id)
+                        .pingTimestamp(PINGED_AT.plusSeconds(id))
+                        .status(id % 2 == 0 ? PingStatus.UP : PingStatus.DOWN)
+                        .responseTimeMs(100 + id)
+                        .responseCode(id % 2 == 0 ? 200 : 503)
+                        .errorMessage(id % 2 == 0 ? null : "HTTP 503")
+                        .url("https://example.com/" + id)
+                        .createdAt(PINGED_AT.plusSeconds(id))
+                        .dnsMs(1.5)
+                        .connectMs(id % 2 == 0 ? 2.5 : null)
+                        .tlsMs(3.5)
+                        .ttfbMs(40.0)
+                        .downloadMs(5.25)
+                        .build())
+                .toList();
+    }
+
+    private List<Long> ids(int fromId, int toId) {
+        return IntStream.range(fromId, toId).mapToObj(id -> (long) id).toList();
+    }
+
+    private List<Long> idsOf(List<PingResult> results) {
+        return results.stream().map(PingResult::getMonitorId).toList();
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.toList();
+        }
+    }
+
+    private Path onlySegment() throws IOException {
+        List<Path> segments = listFiles().stream()
+                .filter(path -> path.getFileName().toString().endsWith(".log"))
+                .toList();
+        assertEquals(1, segments.size());
+        return segments.get(0);
+    }
+
+    /**
+     * Смещение index-й записи сегмента: записи идут подряд, каждая = длина + CRC32 + данные
+     */
+    private int recordOffset(Path segment, int index) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+        for (int i = 0; i < index; i++) {
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + 4 + length);
+        }
+        return buffer.position();
+    }
+
+    private void appendRecord(ByteBuffer segment, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        segment.putInt(payload.length);
+        segment.putInt((int) crc.getValue());
+        segment.put(payload);
+    }
+
+    private byte[] legacyPayload(long monitorId, PingStatus status, Integer responseTimeMs, Integer responseCode,
+                                 String errorMessage) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(monitorId);
+            out.writeLong(PINGED_AT.toEpochMilli());
+            writeString(out, status.name());
+            writeNullableInt(out, responseTimeMs);
+            writeNullableInt(out, responseCode);
+            writeString(out, errorMessage);
+            writeString(out, "https://example.com/" + monitorId);
+            out.writeLong(PINGED_AT.toEpochMilli());
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeNullableInt(DataOutputStream out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) out.writeInt(value);
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
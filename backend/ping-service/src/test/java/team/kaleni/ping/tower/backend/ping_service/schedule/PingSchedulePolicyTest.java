@@ -0,0 +1,88 @@
+package team.kaleni.ping.tower.backend.ping_service.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Политика - копия класса в URL Service и Ping Service; этот тест тоже одинаков в обоих сервисах
+ * и фиксирует одни и те же значения, поэтому расхождение копий ломает сборку одной из сторон
+ */
+class PingSchedulePolicyTest {
+
+    // monitorId, period (s), now (ms), phaseMillis, nextRun, initialRun
+    private static final long[][] GOLDEN = {
+            {1L, 30, 1700000000000L, 24988L, 1700000034988L, 1700000004988L},
+            {2L, 30, 1700000000000L, 21447L, 1700000031447L, 1700000001447L},
+            {42L, 60, 1700000012345L, 31724L, 1700000071724L, 1700000071724L},
+            {1000L, 300, 1700000000999L, 83105L, 1700000183105L, 1700000003105L},
+            {123456789L, 3600, 1750000000000L, 2415622L, 1750002015622L, 1750000035622L},
+            {7L, 5, 1700000000000L, 4789L, 1700000004789L, 1700000004789L},
+    };
+
+    @Test
+    void matchesGoldenValuesSharedByBothServices() {
+        for (long[] row : GOLDEN) {
+            long monitorId = row[0];
+            int period = (int) row[1];
+            long now = row[2];
+
+            assertEquals(row[3], PingSchedulePolicy.phaseMillis(monitorId, period), "phase of " + monitorId);
+            assertEquals(row[4], PingSchedulePolicy.nextRun(monitorId, period, now), "nextRun of " + monitorId);
+            assertEquals(row[5], PingSchedulePolicy.initialRun(monitorId, period, now), "initialRun of " + monitorId);
+        }
+    }
+
+    @Test
+    void nextRunStaysOnTheMonitorGrid() {
+        long now = 1_700_000_000_000L;
+        for (long monitorId = 1; monitorId <= 1_000; monitorId++) {
+            for (int period : new int[]{5, 30, 60, 300}) {
+                long periodMillis = period * 1000L;
+                long phase = PingSchedulePolicy.phaseMillis(monitorId, period);
+                long next = PingSchedulePolicy.nextRun(monitorId, period, now + monitorId);
+
+                assertEquals(phase, Math.floorMod(next, periodMillis), "grid of " + monitorId);
+                // Первый слот позже now + period/2: не раньше половины периода и не позже полутора
+                assertTrue(next > now + monitorId + periodMillis / 2, "too early for " + monitorId);
+                assertTrue(next <= now + monitorId + periodMillis * 3 / 2, "too late for " + monitorId);
+            }
+        }
+    }
+
+    @Test
+    void onTimePingKeepsTheSameSlotSpacing() {
+        long monitorId = 17;
+        int period = 60;
+        long slot = PingSchedulePolicy.nextSlotAfter(monitorId, period, 1_700_000_000_000L);
+
+        // Проверка, завершённая в пределах половины периода после слота, ставит ровно следующий слот
+        assertEquals(slot + 60_000, PingSchedulePolicy.nextRun(monitorId, period, slot));
+        assertEquals(slot + 60_000, PingSchedulePolicy.nextRun(monitorId, period, slot + 29_000));
+    }
+
+    @Test
+    void initialRunFallsInsideTheWindow() {
+        long notBefore = 1_700_000_000_000L;
+        for (long monitorId = 1; monitorId <= 1_000; monitorId++) {
+            long first = PingSchedulePolicy.initialRun(monitorId, 3600, notBefore);
+
+            assertTrue(first >= notBefore, "before notBefore for " + monitorId);
+            assertTrue(first < notBefore + PingSchedulePolicy.INITIAL_WINDOW_SECONDS * 1000L,
+                    "outside the window for " + monitorId);
+        }
+    }
+
+    @Test
+    void nonPositivePeriodRunsImmediately() {
+        assertEquals(1_000L, PingSchedulePolicy.nextRun(1, 0, 1_000));
+    }
+
+    @Test
+    void scoresKeepMilliseconds() {
+        assertEquals("1700000000.123", PingSchedulePolicy.toScoreString(1_700_000_000_123L));
+        assertEquals("1700000000.000", PingSchedulePolicy.toScoreString(1_700_000_000_000L));
+        assertEquals(1_700_000_000.123, PingSchedulePolicy.toScore(1_700_000_000_123L), 1e-6);
+    }
+}
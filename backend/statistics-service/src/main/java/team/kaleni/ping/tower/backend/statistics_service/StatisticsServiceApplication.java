@@ -2,8 +2,10 @@ package team.kaleni.ping.tower.backend.statistics_service;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class StatisticsServiceApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,305 @@
+package team.kaleni.ping.tower.backend.statistics_service.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Кэш закрытых бакетов статистики.
+ * Период делится на выровненные по эпохе чанки (например, сутки часовых бакетов); чанк, который целиком
+ * закончился раньше now - grace, больше не меняется и кэшируется, открытый хвост периода всегда читается заново.
+ * Первый уровень - Caffeine в процессе, второй (по желанию) - Redis, общий для реплик.
+ * Время бакетов трактуется как UTC, как и в запросах к ClickHouse.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ClosedBucketCache {
+
+    private static final String REDIS_KEY_PREFIX = "stats:chunk:";
+
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<StringRedisTemplate> redisTemplateProvider;
+
+    @Value("${statistics.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${statistics.cache.max-size:50000}")
+    private long maxSize;
+
+    // Поздние данные (воспроизведение журнала Ping Service) могут дописать уже закрытый бакет
+    @Value("${statistics.cache.expire-after-write:10m}")
+    private Duration expireAfterWrite;
+
+    // Сколько ждать после конца чанка, прежде чем считать его закрытым (задержка записи истории)
+    @Value("${statistics.cache.grace:5m}")
+    private Duration grace;
+
+    @Value("${statistics.cache.redis.enabled:false}")
+    private boolean redisEnabled;
+
+    private Cache<String, List<?>> cache;
+    private StringRedisTemplate redisTemplate;
+    private Counter redisHits;
+    private Counter redisMisses;
+
+    /**
+     * Загрузка бакетов одного монитора за период [start, end] из ClickHouse
+     */
+    @FunctionalInterface
+    public interface RangeLoader<T> {
+        List<T> load(LocalDateTime startTime, LocalDateTime endTime);
+    }
+
+    /**
+     * Загрузка бакетов нескольких мониторов за период одним запросом
+     */
+    @FunctionalInterface
+    public interface BatchRangeLoader<T> {
+        Map<Long, List<T>> load(Collection<Long> monitorIds, LocalDateTime startTime, LocalDateTime endTime);
+    }
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+
+        // cache.gets{result=hit|miss} даёт долю попаданий первого уровня
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "statistics-buckets");
+
+        if (redisEnabled) {
+            redisTemplate = redisTemplateProvider.getIfAvailable();
+            redisHits = Counter.builder("statistics.cache.redis")
+                    .tag("result", "hit")
+                    .description("Closed statistics chunks found in the shared Redis cache")
+                    .register(meterRegistry);
+            redisMisses = Counter.builder("statistics.cache.redis")
+                    .tag("result", "miss")
+                    .description("Closed statistics chunks missing in the shared Redis cache")
+                    .register(meterRegistry);
+        }
+
+        log.info("Statistics bucket cache initialized: enabled={}, maxSize={}, expireAfterWrite={}, grace={}, redis={}",
+                enabled, maxSize, expireAfterWrite, grace, redisTemplate != null);
+    }
+
+    /**
+     * Бакеты одного монитора за период, см. {@link #getRanges}
+     */
+    public <T> List<T> getRange(String kind, Long monitorId, LocalDateTime startTime, LocalDateTime endTime,
+                                long bucketSeconds, long chunkSeconds, Class<T> type,
+                                Function<T, LocalDateTime> bucketOf, RangeLoader<T> loader) {
+        return getRanges(kind, List.of(monitorId), startTime, endTime, bucketSeconds, chunkSeconds, type, bucketOf,
+                (ids, start, end) -> Map.of(monitorId, loader.load(start, end)))
+                .getOrDefault(monitorId, List.of());
+    }
+
+    /**
+     * Бакеты нескольких мониторов за период: закрытые чанки берутся из кэша, недостающие догружаются
+     * одним запросом на все мониторы, открытый хвост периода читается через loader без кэширования
+     *
+     * @param kind          вид данных и разрешение, часть ключа (например, "hourly" или "chart:HOUR")
+     * @param bucketSeconds шаг бакета; начало периода округляется вниз до бакета, как в запросах ClickHouse
+     * @param chunkSeconds  размер кэшируемого чанка, кратен bucketSeconds
+     * @param bucketOf      время начала бакета элемента
+     */
+    public <T> Map<Long, List<T>> getRanges(String kind, Collection<Long> monitorIds,
+                                            LocalDateTime startTime, LocalDateTime endTime,
+                                            long bucketSeconds, long chunkSeconds, Class<T> type,
+                                            Function<T, LocalDateTime> bucketOf, BatchRangeLoader<T> loader) {
+        if (!enabled || monitorIds.isEmpty()) {
+            return loader.load(monitorIds, startTime, endTime);
+        }
+
+        long from = floor(toEpoch(startTime), bucketSeconds);
+        long to = toEpoch(endTime);
+        long closedBefore = floor(Instant.now().minus(grace).getEpochSecond(), chunkSeconds);
+
+        // Закрытые чанки периода
+        List<Long> chunks = new ArrayList<>();
+        long chunk = floor(from, chunkSeconds);
+        for (; chunk <= to && chunk + chunkSeconds <= closedBefore; chunk += chunkSeconds) {
+            chunks.add(chunk);
+        }
+
+        Map<String, List<T>> cached = lookup(kind, monitorIds, chunks, type);
+        Map<Long, List<Long>> missing = new LinkedHashMap<>();
+        for (Long monitorId : monitorIds) {
+            for (Long c : chunks) {
+                if (!cached.containsKey(key(kind, monitorId, c))) {
+                    missing.computeIfAbsent(monitorId, id -> new ArrayList<>()).add(c);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            cached.putAll(loadChunks(kind, missing, chunkSeconds, bucketOf, loader));
+        }
+
+        Map<Long, List<T>> result = new LinkedHashMap<>();
+        for (Long monitorId : monitorIds) {
+            List<T> items = new ArrayList<>();
+            for (Long c : chunks) {
+                for (T item : cached.get(key(kind, monitorId, c))) {
+                    long bucket = toEpoch(bucketOf.apply(item));
+                    if (bucket >= from && bucket <= to) {
+                        items.add(item);
+                    }
+                }
+            }
+            result.put(monitorId, items);
+        }
+
+        // Открытый хвост периода не кэшируется
+        if (chunk <= to) {
+            loader.load(monitorIds, fromEpoch(Math.max(chunk, from)), endTime)
+                    .forEach((monitorId, items) -> result.computeIfAbsent(monitorId, id -> new ArrayList<>()).addAll(items));
+        }
+        return result;
+    }
+
+    // Helper methods
+
+    @SuppressWarnings("unchecked")
+    private <T> Map<String, List<T>> lookup(String kind, Collection<Long> monitorIds, List<Long> chunks, Class<T> type) {
+        Map<String, List<T>> found = new HashMap<>();
+        List<String> remoteLookup = new ArrayList<>();
+
+        for (Long monitorId : monitorIds) {
+            for (Long c : chunks) {
+                String key = key(kind, monitorId, c);
+                List<?> items = cache.getIfPresent(key);
+                if (items != null) {
+                    found.put(key, (List<T>) items);
+                } else {
+                    remoteLookup.add(key);
+                }
+            }
+        }
+
+        if (redisTemplate == null || remoteLookup.isEmpty()) {
+            return found;
+        }
+
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(
+                    remoteLookup.stream().map(key -> REDIS_KEY_PREFIX + key).toList());
+            JavaType listType = objectMapper.getTypeFactory().constructCollectionType(List.class, type);
+
+            for (int i = 0; i < remoteLookup.size(); i++) {
+                String value = values != null ? values.get(i) : null;
+                if (value == null) {
+                    redisMisses.increment();
+                    continue;
+                }
+                List<T> items = objectMapper.readValue(value, listType);
+                cache.put(remoteLookup.get(i), items);
+                found.put(remoteLookup.get(i), items);
+                redisHits.increment();
+            }
+        } catch (Exception e) {
+            log.warn("Shared statistics cache is unavailable, falling back to ClickHouse: {}", e.getMessage());
+        }
+        return found;
+    }
+
+    /**
+     * Догрузить недостающие чанки одним запросом (от первого до последнего недостающего чанка
+     * по всем мониторам) и разложить результат по чанкам. Чанки без данных тоже кэшируются пустым списком.
+     */
+    private <T> Map<String, List<T>> loadChunks(String kind, Map<Long, List<Long>> missing, long chunkSeconds,
+                                                Function<T, LocalDateTime> bucketOf, BatchRangeLoader<T> loader) {
+        long first = Long.MAX_VALUE;
+        long last = Long.MIN_VALUE;
+        Map<String, List<T>> loaded = new HashMap<>();
+        for (Map.Entry<Long, List<Long>> entry : missing.entrySet()) {
+            for (Long c : entry.getValue()) {
+                loaded.put(key(kind, entry.getKey(), c), new ArrayList<>());
+                first = Math.min(first, c);
+                last = Math.max(last, c);
+            }
+        }
+
+        loader.load(missing.keySet(), fromEpoch(first), fromEpoch(last + chunkSeconds - 1))
+                .forEach((monitorId, items) -> {
+                    for (T item : items) {
+                        List<T> chunkItems = loaded.get(key(kind, monitorId,
+                                floor(toEpoch(bucketOf.apply(item)), chunkSeconds)));
+                        // Чанки, которые уже есть в кэше, не перезаписываем
+                        if (chunkItems != null) {
+                            chunkItems.add(item);
+                        }
+                    }
+                });
+
+        cache.putAll(loaded);
+        if (redisTemplate != null) {
+            storeRemote(loaded);
+        }
+
+        log.debug("Loaded {} closed {} chunks for {} monitors", loaded.size(), kind, missing.size());
+        return loaded;
+    }
+
+    private <T> void storeRemote(Map<String, List<T>> chunks) {
+        try {
+            Map<byte[], byte[]> values = new HashMap<>();
+            for (Map.Entry<String, List<T>> entry : chunks.entrySet()) {
+                values.put((REDIS_KEY_PREFIX + entry.getKey()).getBytes(StandardCharsets.UTF_8),
+                        objectMapper.writeValueAsBytes(entry.getValue()));
+            }
+
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                values.forEach((key, value) ->
+                        connection.stringCommands().setEx(key, expireAfterWrite.getSeconds(), value));
+                return null;
+            });
+        } catch (Exception e) {
+            log.warn("Failed to store statistics chunks in shared cache: {}", e.getMessage());
+        }
+    }
+
+    private String key(String kind, Long monitorId, long chunkStart) {
+        return kind + ":" + monitorId + ":" + chunkStart;
+    }
+
+    private static long floor(long epochSeconds, long step) {
+        return Math.floorDiv(epochSeconds, step) * step;
+    }
+
+    private static long toEpoch(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static LocalDateTime fromEpoch(long epochSeconds) {
+        return LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC);
+    }
+}
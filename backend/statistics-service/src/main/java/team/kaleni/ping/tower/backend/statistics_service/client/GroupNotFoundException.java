@@ -0,0 +1,11 @@
+package team.kaleni.ping.tower.backend.statistics_service.client;
+
+/**
+ * Группы нет в URL Service или она принадлежит другому владельцу
+ */
+public class GroupNotFoundException extends RuntimeException {
+
+    public GroupNotFoundException(Long groupId, Integer ownerId) {
+        super("Group " + groupId + " not found for owner " + ownerId);
+    }
+}
@@ -0,0 +1,78 @@
+package team.kaleni.ping.tower.backend.statistics_service.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Клиент URL Service: состав групп мониторов для пакетной статистики
+ */
+@Component
+@Slf4j
+public class UrlServiceClient {
+
+    private WebClient webClient;
+
+    @Value("${url-service.base-url:http://localhost:8080}")
+    private String baseUrl;
+
+    @Value("${url-service.timeout-ms:3000}")
+    private long timeoutMs;
+
+    @PostConstruct
+    public void initializeWebClient() {
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .build();
+
+        log.info("URL service client initialized with base URL: {}", baseUrl);
+    }
+
+    /**
+     * Идентификаторы мониторов группы владельца; пустой список, если в группе нет мониторов.
+     * Отсутствующая или чужая группа - GroupNotFoundException, сбой URL Service - UrlServiceException.
+     */
+    public List<Long> getGroupMonitorIds(Long groupId, Integer ownerId) {
+        try {
+            JsonNode group = webClient.get()
+                    .uri("/api/groups/{id}", groupId)
+                    .header("X-Owner-Id", String.valueOf(ownerId))
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .block(Duration.ofMillis(timeoutMs));
+
+            List<Long> monitorIds = new ArrayList<>();
+            if (group != null) {
+                for (JsonNode monitor : group.path("monitors")) {
+                    if (monitor.hasNonNull("id")) {
+                        monitorIds.add(monitor.get("id").asLong());
+                    }
+                }
+            }
+            return monitorIds;
+
+        } catch (WebClientResponseException.NotFound | WebClientResponseException.BadRequest e) {
+            // URL Service отвечает 400 и на отсутствующую, и на чужую группу
+            log.warn("Group {} not found for owner {}", groupId, ownerId);
+            throw new GroupNotFoundException(groupId, ownerId);
+        } catch (WebClientResponseException e) {
+            log.error("URL service failed to return group {}: {}", groupId, e.getStatusCode());
+            throw new UrlServiceException(HttpStatus.BAD_GATEWAY,
+                    "URL service responded with " + e.getStatusCode(), e);
+        } catch (WebClientRequestException | IllegalStateException e) {
+            // Нет соединения или ответ не уложился в url-service.timeout-ms
+            log.error("URL service is unavailable while loading group {}: {}", groupId, e.getMessage());
+            throw new UrlServiceException(HttpStatus.SERVICE_UNAVAILABLE, "URL service is unavailable", e);
+        }
+    }
+}
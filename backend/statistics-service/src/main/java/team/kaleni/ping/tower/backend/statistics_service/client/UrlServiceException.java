@@ -0,0 +1,18 @@
+package team.kaleni.ping.tower.backend.statistics_service.client;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * URL Service недоступен или ответил ошибкой; status - код, который отдаётся клиенту (502 или 503)
+ */
+@Getter
+public class UrlServiceException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public UrlServiceException(HttpStatus status, String message, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+}
@@ -1,5 +1,9 @@
 package team.kaleni.ping.tower.backend.statistics_service.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -10,12 +14,23 @@ import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import team.kaleni.ping.tower.backend.statistics_service.client.GroupNotFoundException;
+import team.kaleni.ping.tower.backend.statistics_service.client.UrlServiceException;
 import team.kaleni.ping.tower.backend.statistics_service.dto.ChartDataPointDto;
 import team.kaleni.ping.tower.backend.statistics_service.dto.HourlyStatsDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.LatencyPercentilesDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.MonitorSummaryDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.TimingBreakdownDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.UptimeReportDto;
+import team.kaleni.ping.tower.backend.statistics_service.enums.ChartResolution;
 import team.kaleni.ping.tower.backend.statistics_service.service.StatisticsService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -26,7 +41,11 @@ import java.util.List;
 @Tag(name = "Статистика - Мониторинг", description = "API для получения статистики мониторинга серверов")
 public class StatisticsController {
 
+    // Через сколько строк потоковый ответ сбрасывается клиенту
+    private static final int STREAM_FLUSH_EVERY = 1000;
+
     private final StatisticsService statisticsService;
+    private final ObjectMapper objectMapper;
 
     @Operation(
             summary = "Получение почасовой статистики мониторинга за последние 24 часа",
@@ -106,6 +125,336 @@ public class StatisticsController {
         }
     }
 
+    @Operation(
+            summary = "Сводка по нескольким мониторам за последние 24 часа",
+            description = "Возвращает uptime, среднее время отклика и почасовой sparkline для списка мониторов " +
+                    "или для всех мониторов группы. Все мониторы считаются одним запросом к ClickHouse"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Сводка успешно получена",
+                    content = @Content(schema = @Schema(implementation = MonitorSummaryDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Не задан ни список мониторов, ни группа, или мониторов слишком много"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Группа не найдена или принадлежит другому владельцу"
+            ),
+            @ApiResponse(
+                    responseCode = "502",
+                    description = "URL Service ответил ошибкой (503 - недоступен)"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Внутренняя ошибка сервера"
+            )
+    })
+    @GetMapping("/monitors/summary/24h")
+    public ResponseEntity<List<MonitorSummaryDto>> getMonitorSummaries24h(
+            @Parameter(description = "Идентификаторы мониторов", example = "1,2,3")
+            @RequestParam(required = false) List<Long> monitorIds,
+            @Parameter(description = "Идентификатор группы в URL Service (вместо monitorIds)", example = "5")
+            @RequestParam(required = false) Long groupId,
+            @Parameter(description = "Владелец группы, обязателен вместе с groupId", example = "42")
+            @RequestHeader(value = "X-Owner-Id", required = false) Integer ownerId) {
+
+        log.info("Getting 24h summaries for monitors {} / group {}", monitorIds, groupId);
+
+        if (groupId != null && ownerId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (groupId == null && (monitorIds == null || monitorIds.isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            List<MonitorSummaryDto> summaries = groupId != null
+                    ? statisticsService.getGroupSummaries24h(groupId, ownerId)
+                    : statisticsService.getMonitorSummaries24h(monitorIds);
+            return ResponseEntity.ok(summaries);
+        } catch (GroupNotFoundException e) {
+            log.warn("Group {} not found: {}", groupId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (UrlServiceException e) {
+            log.error("URL service error for group {}: {}", groupId, e.getMessage());
+            return ResponseEntity.status(e.getStatus()).build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid summary request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error getting monitor summaries: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @Operation(
+            summary = "Перцентили времени отклика монитора за период",
+            description = "Возвращает p50/p90/p95/p99 времени отклика, слитые из почасовых t-digest скетчей"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Перцентили успешно получены",
+                    content = @Content(schema = @Schema(implementation = LatencyPercentilesDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректные параметры запроса"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Внутренняя ошибка сервера"
+            )
+    })
+    @GetMapping("/monitors/{monitorId}/latency")
+    public ResponseEntity<LatencyPercentilesDto> getLatencyPercentiles(
+            @Parameter(description = "Идентификатор монитора", example = "1")
+            @PathVariable Long monitorId,
+            @Parameter(description = "Начало периода", example = "2025-09-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime startTime,
+            @Parameter(description = "Конец периода", example = "2025-10-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime endTime) {
+
+        log.info("Getting latency percentiles for monitor {} from {} to {}", monitorId, startTime, endTime);
+
+        try {
+            return ResponseEntity.ok(statisticsService.getLatencyPercentiles(List.of(monitorId), startTime, endTime));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid latency request for monitor {}: {}", monitorId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error getting latency percentiles for monitor {}: {}", monitorId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @Operation(
+            summary = "Разбивка времени проверки монитора по фазам",
+            description = "Возвращает среднее время DNS, TCP connect, TLS, до первого байта и загрузки тела за период"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Разбивка успешно получена",
+                    content = @Content(schema = @Schema(implementation = TimingBreakdownDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректные параметры запроса"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Внутренняя ошибка сервера"
+            )
+    })
+    @GetMapping("/monitors/{monitorId}/timings")
+    public ResponseEntity<TimingBreakdownDto> getTimingBreakdown(
+            @Parameter(description = "Идентификатор монитора", example = "1")
+            @PathVariable Long monitorId,
+            @Parameter(description = "Начало периода", example = "2025-09-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime startTime,
+            @Parameter(description = "Конец периода", example = "2025-10-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime endTime) {
+
+        log.info("Getting timing breakdown for monitor {} from {} to {}", monitorId, startTime, endTime);
+
+        try {
+            return ResponseEntity.ok(statisticsService.getTimingBreakdown(monitorId, startTime, endTime));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid timing request for monitor {}: {}", monitorId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error getting timing breakdown for monitor {}: {}", monitorId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @Operation(
+            summary = "Перцентили времени отклика по нескольким мониторам",
+            description = "Возвращает p50/p90/p95/p99 по всем пингам списка мониторов или группы за период. " +
+                    "Скетчи мониторов сливаются в один"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Перцентили успешно получены",
+                    content = @Content(schema = @Schema(implementation = LatencyPercentilesDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Не задан ни список мониторов, ни группа, или некорректный период"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Группа не найдена или принадлежит другому владельцу"
+            ),
+            @ApiResponse(
+                    responseCode = "502",
+                    description = "URL Service ответил ошибкой (503 - недоступен)"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Внутренняя ошибка сервера"
+            )
+    })
+    @GetMapping("/monitors/latency")
+    public ResponseEntity<LatencyPercentilesDto> getCombinedLatencyPercentiles(
+            @Parameter(description = "Идентификаторы мониторов", example = "1,2,3")
+            @RequestParam(required = false) List<Long> monitorIds,
+            @Parameter(description = "Идентификатор группы в URL Service (вместо monitorIds)", example = "5")
+            @RequestParam(required = false) Long groupId,
+            @Parameter(description = "Владелец группы, обязателен вместе с groupId", example = "42")
+            @RequestHeader(value = "X-Owner-Id", required = false) Integer ownerId,
+            @Parameter(description = "Начало периода", example = "2025-09-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime startTime,
+            @Parameter(description = "Конец периода", example = "2025-10-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime endTime) {
+
+        log.info("Getting latency percentiles for monitors {} / group {} from {} to {}",
+                monitorIds, groupId, startTime, endTime);
+
+        if (groupId != null && ownerId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (groupId == null && (monitorIds == null || monitorIds.isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            LatencyPercentilesDto percentiles = groupId != null
+                    ? statisticsService.getGroupLatencyPercentiles(groupId, ownerId, startTime, endTime)
+                    : statisticsService.getLatencyPercentiles(monitorIds, startTime, endTime);
+            return ResponseEntity.ok(percentiles);
+        } catch (GroupNotFoundException e) {
+            log.warn("Group {} not found: {}", groupId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (UrlServiceException e) {
+            log.error("URL service error for group {}: {}", groupId, e.getMessage());
+            return ResponseEntity.status(e.getStatus()).build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid latency request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error getting latency percentiles: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @Operation(
+            summary = "Отчёт о доступности монитора за период",
+            description = "Возвращает инциденты (серии неуспешных пингов), SLA в процентах, суммарный простой, MTTR и MTBF"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Отчёт успешно построен",
+                    content = @Content(schema = @Schema(implementation = UptimeReportDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректные параметры запроса"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Внутренняя ошибка сервера"
+            )
+    })
+    @GetMapping("/monitors/{monitorId}/uptime-report")
+    public ResponseEntity<UptimeReportDto> getUptimeReport(
+            @Parameter(description = "Идентификатор монитора", example = "1")
+            @PathVariable Long monitorId,
+            @Parameter(description = "Начало периода", example = "2025-09-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime startTime,
+            @Parameter(description = "Конец периода", example = "2025-10-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime endTime) {
+
+        log.info("Building uptime report for monitor {} from {} to {}", monitorId, startTime, endTime);
+
+        try {
+            return ResponseEntity.ok(statisticsService.getUptimeReports(List.of(monitorId), startTime, endTime).get(0));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid uptime report request for monitor {}: {}", monitorId, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error building uptime report for monitor {}: {}", monitorId, e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @Operation(
+            summary = "Отчёты о доступности по нескольким мониторам",
+            description = "Возвращает отчёт о доступности для списка мониторов или для всех мониторов группы"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Отчёты успешно построены",
+                    content = @Content(schema = @Schema(implementation = UptimeReportDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Не задан ни список мониторов, ни группа, или некорректный период"
+            ),
+            @ApiResponse(
+                    responseCode = "404",
+                    description = "Группа не найдена или принадлежит другому владельцу"
+            ),
+            @ApiResponse(
+                    responseCode = "502",
+                    description = "URL Service ответил ошибкой (503 - недоступен)"
+            ),
+            @ApiResponse(
+                    responseCode = "500",
+                    description = "Внутренняя ошибка сервера"
+            )
+    })
+    @GetMapping("/monitors/uptime-report")
+    public ResponseEntity<List<UptimeReportDto>> getUptimeReports(
+            @Parameter(description = "Идентификаторы мониторов", example = "1,2,3")
+            @RequestParam(required = false) List<Long> monitorIds,
+            @Parameter(description = "Идентификатор группы в URL Service (вместо monitorIds)", example = "5")
+            @RequestParam(required = false) Long groupId,
+            @Parameter(description = "Владелец группы, обязателен вместе с groupId", example = "42")
+            @RequestHeader(value = "X-Owner-Id", required = false) Integer ownerId,
+            @Parameter(description = "Начало периода", example = "2025-09-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime startTime,
+            @Parameter(description = "Конец периода", example = "2025-10-01T00:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime endTime) {
+
+        log.info("Building uptime reports for monitors {} / group {} from {} to {}",
+                monitorIds, groupId, startTime, endTime);
+
+        if (groupId != null && ownerId == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (groupId == null && (monitorIds == null || monitorIds.isEmpty())) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            List<UptimeReportDto> reports = groupId != null
+                    ? statisticsService.getGroupUptimeReports(groupId, ownerId, startTime, endTime)
+                    : statisticsService.getUptimeReports(monitorIds, startTime, endTime);
+            return ResponseEntity.ok(reports);
+        } catch (GroupNotFoundException e) {
+            log.warn("Group {} not found: {}", groupId, e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (UrlServiceException e) {
+            log.error("URL service error for group {}: {}", groupId, e.getMessage());
+            return ResponseEntity.status(e.getStatus()).build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid uptime report request: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Error building uptime reports: {}", e.getMessage(), e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @Operation(
             summary = "Получение данных для построения графика за последние 24 часа",
             description = "Возвращает детальные данные всех пингов за последние 24 часа для построения графиков"
@@ -143,7 +492,8 @@ public class StatisticsController {
 
     @Operation(
             summary = "Получение данных для построения графика за указанный период",
-            description = "Возвращает детальные данные всех пингов за произвольный временной период для построения графиков"
+            description = "Возвращает данные за произвольный временной период для построения графиков. " +
+                    "На длинных периодах точки агрегируются по минутам, часам или суткам"
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -171,16 +521,98 @@ public class StatisticsController {
             @Parameter(description = "Начало периода", example = "2025-09-20T07:00:00")
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime startTime,
             @Parameter(description = "Конец периода", example = "2025-09-21T07:00:00")
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime endTime) {
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime endTime,
+            @Parameter(description = "Разрешение: AUTO выбирает по длине периода, RAW - все пинги, " +
+                    "MINUTE/HOUR/DAY - бакеты из rollup", example = "AUTO")
+            @RequestParam(defaultValue = "AUTO") ChartResolution resolution,
+            @Parameter(description = "Максимум точек в ответе; если задан, период делится на равные слоты " +
+                    "с min/max/avg времени отклика, resolution при этом не учитывается", example = "500")
+            @RequestParam(required = false) Integer maxPoints) {
 
-        log.info("Getting chart data for monitor {} from {} to {}", monitorId, startTime, endTime);
+        log.info("Getting chart data for monitor {} from {} to {} ({}, maxPoints={})",
+                monitorId, startTime, endTime, resolution, maxPoints);
 
         try {
-            List<ChartDataPointDto> data = statisticsService.getChartData(monitorId, startTime, endTime);
+            List<ChartDataPointDto> data = maxPoints != null
+                    ? statisticsService.getDownsampledChartData(monitorId, startTime, endTime, maxPoints)
+                    : statisticsService.getChartData(monitorId, startTime, endTime, resolution);
             return ResponseEntity.ok(data);
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid chart request for monitor {}: {}", monitorId, e.getMessage());
+            return ResponseEntity.badRequest().build();
         } catch (Exception e) {
             log.error("Error getting chart data for monitor {}: {}", monitorId, e.getMessage(), e);
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    @Operation(
+            summary = "Потоковая выгрузка всех пингов за период",
+            description = "Отдаёт все пинги за период в формате NDJSON (один JSON-объект на строку) по мере чтения " +
+                    "из ClickHouse. Память сервиса не зависит от длины периода, подходит для выгрузки за месяцы"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Поток точек графика",
+                    content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE,
+                            schema = @Schema(implementation = ChartDataPointDto.class))
+            ),
+            @ApiResponse(
+                    responseCode = "400",
+                    description = "Некорректные параметры запроса"
+            )
+    })
+    @GetMapping(value = "/monitors/{monitorId}/chart/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamChartData(
+            @Parameter(description = "Идентификатор монитора", example = "1")
+            @PathVariable Long monitorId,
+            @Parameter(description = "Начало периода", example = "2025-09-20T07:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime startTime,
+            @Parameter(description = "Конец периода", example = "2025-09-21T07:00:00")
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm:ss") LocalDateTime endTime) {
+
+        log.info("Streaming chart data for monitor {} from {} to {}", monitorId, startTime, endTime);
+
+        if (!endTime.isAfter(startTime)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Без сброса после каждого значения: иначе на каждую строку уходит отдельный чанк
+        ObjectWriter writer = objectMapper.writerFor(ChartDataPointDto.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+        StreamingResponseBody body = outputStream -> {
+            // Генератор не закрывает поток ответа и пишет в него через свой небольшой буфер;
+            // строки разделяются только '\n', без пробела-разделителя корневых значений
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null)) {
+                long[] written = {0};
+
+                long total = statisticsService.streamChartData(monitorId, startTime, endTime, point -> {
+                    try {
+                        writer.writeValue(generator, point);
+                        generator.writeRaw('\n');
+                        // Периодически отдаём накопленное клиенту, чтобы ответ шёл чанками
+                        if (++written[0] % STREAM_FLUSH_EVERY == 0) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+
+                generator.flush();
+                log.info("Streamed {} chart points for monitor {}", total, monitorId);
+            } catch (UncheckedIOException e) {
+                // Клиент закрыл соединение - запрос к ClickHouse прерван вместе с обходом ответа
+                log.warn("Chart stream for monitor {} aborted: {}", monitorId, e.getMessage());
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
 }
@@ -16,7 +16,7 @@ import java.time.LocalDateTime;
 @Schema(name = "Точка данных графика", description = "Отдельная точка данных для построения графиков мониторинга")
 public class ChartDataPointDto {
 
-    @Schema(description = "Время выполнения пинга", example = "2025-09-21 08:15:30", format = "yyyy-MM-dd HH:mm:ss")
+    @Schema(description = "Время выполнения пинга или начало бакета", example = "2025-09-21 08:15:30", format = "yyyy-MM-dd HH:mm:ss")
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime pingTimestamp;
 
@@ -28,4 +28,19 @@ public class ChartDataPointDto {
 
     @Schema(description = "HTTP код ответа", example = "200", nullable = true)
     private Integer responseCode;
+
+    @Schema(description = "Количество пингов в бакете (только для агрегированных точек)", example = "6", nullable = true)
+    private Long totalPings;
+
+    @Schema(description = "Количество неудачных пингов в бакете (только для агрегированных точек)", example = "0", nullable = true)
+    private Long failedPings;
+
+    @Schema(description = "Минимальное время отклика в бакете (только для агрегированных точек)", example = "95", nullable = true)
+    private Integer minResponseTimeMs;
+
+    @Schema(description = "Максимальное время отклика в бакете (только для агрегированных точек)", example = "1240", nullable = true)
+    private Integer maxResponseTimeMs;
+
+    @Schema(description = "95-й перцентиль времени отклика в бакете (минутные и суточные точки)", example = "210", nullable = true)
+    private Integer p95ResponseTimeMs;
 }
@@ -0,0 +1,45 @@
+package team.kaleni.ping.tower.backend.statistics_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(name = "Перцентили времени отклика", description = "Перцентили по всем успешным пингам мониторов за период")
+public class LatencyPercentilesDto {
+
+    @Schema(description = "Мониторы, по которым посчитаны перцентили", example = "[1, 2]")
+    private List<Long> monitorIds;
+
+    @Schema(description = "Начало периода", example = "2025-09-01 00:00:00", format = "yyyy-MM-dd HH:mm:ss")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime startTime;
+
+    @Schema(description = "Конец периода", example = "2025-10-01 00:00:00", format = "yyyy-MM-dd HH:mm:ss")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime endTime;
+
+    @Schema(description = "Число измерений времени отклика", example = "43200")
+    private Long sampleCount;
+
+    @Schema(description = "Медиана времени отклика в миллисекундах", example = "120.0", nullable = true)
+    private Double p50ResponseTimeMs;
+
+    @Schema(description = "90-й перцентиль времени отклика в миллисекундах", example = "210.0", nullable = true)
+    private Double p90ResponseTimeMs;
+
+    @Schema(description = "95-й перцентиль времени отклика в миллисекундах", example = "280.0", nullable = true)
+    private Double p95ResponseTimeMs;
+
+    @Schema(description = "99-й перцентиль времени отклика в миллисекундах", example = "950.0", nullable = true)
+    private Double p99ResponseTimeMs;
+}
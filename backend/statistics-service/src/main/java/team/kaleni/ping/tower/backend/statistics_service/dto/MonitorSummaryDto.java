@@ -0,0 +1,38 @@
+package team.kaleni.ping.tower.backend.statistics_service.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(name = "Сводка по монитору", description = "Uptime, среднее время отклика и почасовой ряд за период")
+public class MonitorSummaryDto {
+
+    @Schema(description = "Идентификатор монитора", example = "1")
+    private Long monitorId;
+
+    @Schema(description = "Общее количество пингов за период", example = "1440")
+    private Long totalPings;
+
+    @Schema(description = "Количество успешных пингов", example = "1436")
+    private Long successfulPings;
+
+    @Schema(description = "Количество неудачных пингов", example = "4")
+    private Long failedPings;
+
+    @Schema(description = "Процент времени работы (uptime) в процентах", example = "99.72", minimum = "0", maximum = "100")
+    private Double uptimePercentage;
+
+    @Schema(description = "Среднее время отклика в миллисекундах", example = "150.5", nullable = true)
+    private Double averageResponseTime;
+
+    @Schema(description = "Почасовой ряд для sparkline, по возрастанию времени")
+    private List<HourlyStatsDto> sparkline;
+}
@@ -19,6 +19,11 @@ public class PingResultDto {
     private Integer responseCode;
     private String errorMessage;
     private String url;
+    private Double dnsMs;
+    private Double connectMs;
+    private Double tlsMs;
+    private Double ttfbMs;
+    private Double downloadMs;
 
     @Override
     public String toString() {
@@ -30,6 +35,11 @@ public class PingResultDto {
                 ", responseCode=" + responseCode +
                 ", errorMessage='" + errorMessage + '\'' +
                 ", url='" + url + '\'' +
+                ", dnsMs=" + dnsMs +
+                ", connectMs=" + connectMs +
+                ", tlsMs=" + tlsMs +
+                ", ttfbMs=" + ttfbMs +
+                ", downloadMs=" + downloadMs +
                 '}';
     }
 }
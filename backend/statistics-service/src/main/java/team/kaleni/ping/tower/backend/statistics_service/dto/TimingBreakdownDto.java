@@ -0,0 +1,51 @@
+package team.kaleni.ping.tower.backend.statistics_service.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(name = "Разбивка времени проверки", description = "Среднее время фаз проверки (DNS, connect, TLS, TTFB, загрузка) за период")
+public class TimingBreakdownDto {
+
+    @Schema(description = "Мониторы, по которым посчитана разбивка", example = "[1]")
+    private List<Long> monitorIds;
+
+    @Schema(description = "Начало периода", example = "2025-09-01 00:00:00", format = "yyyy-MM-dd HH:mm:ss")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime startTime;
+
+    @Schema(description = "Конец периода", example = "2025-10-01 00:00:00", format = "yyyy-MM-dd HH:mm:ss")
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime endTime;
+
+    @Schema(description = "Число проверок, дошедших до ответа сервера", example = "43200")
+    private Long sampleCount;
+
+    @Schema(description = "Число проверок, открывших новое соединение (остальные взяли его из пула)", example = "720")
+    private Long newConnectionCount;
+
+    @Schema(description = "Среднее время DNS-резолва в миллисекундах, по новым соединениям", example = "4.2", nullable = true)
+    private Double avgDnsMs;
+
+    @Schema(description = "Среднее время TCP connect в миллисекундах, по новым соединениям", example = "18.5", nullable = true)
+    private Double avgConnectMs;
+
+    @Schema(description = "Среднее время TLS handshake в миллисекундах, по новым HTTPS-соединениям", example = "35.1", nullable = true)
+    private Double avgTlsMs;
+
+    @Schema(description = "Среднее время до первого байта ответа в миллисекундах", example = "95.0", nullable = true)
+    private Double avgTtfbMs;
+
+    @Schema(description = "Среднее время загрузки тела ответа в миллисекундах", example = "3.4", nullable = true)
+    private Double avgDownloadMs;
+}
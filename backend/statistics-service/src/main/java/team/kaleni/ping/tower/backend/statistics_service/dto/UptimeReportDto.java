@@ -25,6 +25,9 @@ public class UptimeReportDto {
 
     private Double overallUptimePercentage;
     private Long totalDowntime; // в секундах
+    private Integer incidentCount;
+    private Long mttrSeconds; // среднее время восстановления по инцидентам, закрывшимся в периоде
+    private Long mtbfSeconds; // среднее время работы между началами инцидентов
     private List<HourlyStatsDto> hourlyStats;
     private List<OutageDto> outages;
 
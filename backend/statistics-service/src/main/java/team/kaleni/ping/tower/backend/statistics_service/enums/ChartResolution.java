@@ -0,0 +1,30 @@
+package team.kaleni.ping.tower.backend.statistics_service.enums;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Разрешение данных графика: сырые пинги или бакеты одного из rollup
+ */
+@Getter
+@RequiredArgsConstructor
+public enum ChartResolution {
+    AUTO(0, 0),
+    RAW(0, 365),
+    MINUTE(60, 90),
+    HOUR(3600, 365),
+    DAY(86400, 0);
+
+    private final long bucketSeconds;
+    // TTL источника в ClickHouse; 0 - хранится без ограничения
+    private final int retentionDays;
+
+    /**
+     * Есть ли в источнике данные, начиная с момента start
+     */
+    public boolean retains(LocalDateTime start, LocalDateTime now) {
+        return retentionDays == 0 || !start.isBefore(now.minusDays(retentionDays));
+    }
+}
@@ -0,0 +1,34 @@
+package team.kaleni.ping.tower.backend.statistics_service.incident;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Инцидент монитора: непрерывная серия неуспешных пингов.
+ * Начинается с первого неуспешного пинга и заканчивается первым UP после него; endedAt == null - инцидент идёт.
+ * Время - UTC, как в ClickHouse.
+ */
+public record Incident(Long monitorId, LocalDateTime startedAt, LocalDateTime endedAt, String reason) {
+
+    public boolean isOpen() {
+        return endedAt == null;
+    }
+
+    public Incident closedAt(LocalDateTime recoveredAt) {
+        return new Incident(monitorId, startedAt, recoveredAt, reason);
+    }
+
+    /**
+     * Длительность пересечения инцидента с периодом; открытый инцидент длится до openUntil
+     */
+    public long overlapSeconds(LocalDateTime from, LocalDateTime to, LocalDateTime openUntil) {
+        LocalDateTime end = endedAt != null ? endedAt : openUntil;
+        LocalDateTime clippedStart = startedAt.isAfter(from) ? startedAt : from;
+        LocalDateTime clippedEnd = end.isBefore(to) ? end : to;
+        return clippedEnd.isAfter(clippedStart) ? Duration.between(clippedStart, clippedEnd).getSeconds() : 0;
+    }
+
+    public boolean isOpenAt(LocalDateTime instant) {
+        return !startedAt.isAfter(instant) && (endedAt == null || endedAt.isAfter(instant));
+    }
+}
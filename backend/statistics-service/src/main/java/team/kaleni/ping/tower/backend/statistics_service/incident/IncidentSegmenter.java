@@ -0,0 +1,64 @@
+package team.kaleni.ping.tower.backend.statistics_service.incident;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Разбиение потока пингов на инциденты.
+ * Пинги каждого монитора подаются по возрастанию времени - при чтении в порядке первичного ключа
+ * ping_results (monitor_id, ping_timestamp) сами пинги не накапливаются, в памяти только инциденты.
+ */
+public class IncidentSegmenter {
+
+    // Статусы, которые открывают или продолжают инцидент; UNKNOWN не меняет состояние
+    private static final Set<String> FAILURE_STATUSES = Set.of("DOWN", "ERROR", "TIMEOUT");
+    private static final String UP = "UP";
+
+    private final Map<Long, Incident> openIncidents;
+    private final List<Incident> changed = new ArrayList<>();
+
+    /**
+     * @param openIncidents инциденты, открытые к началу потока, по монитору
+     */
+    public IncidentSegmenter(Map<Long, Incident> openIncidents) {
+        this.openIncidents = new HashMap<>(openIncidents);
+    }
+
+    public void accept(Long monitorId, LocalDateTime pingTimestamp, String status, String errorMessage) {
+        Incident open = openIncidents.get(monitorId);
+
+        if (UP.equals(status)) {
+            if (open != null) {
+                changed.add(open.closedAt(pingTimestamp));
+                openIncidents.remove(monitorId);
+            }
+        } else if (FAILURE_STATUSES.contains(status) && open == null) {
+            Incident started = new Incident(monitorId, pingTimestamp, null,
+                    errorMessage != null && !errorMessage.isBlank() ? errorMessage : status);
+            openIncidents.put(monitorId, started);
+        }
+    }
+
+    /**
+     * Инциденты, которые закрылись или открылись за время потока (открытые - с endedAt == null)
+     *
+     * @param seeded инциденты, переданные в конструктор: если они так и не закрылись, повторно не возвращаются
+     */
+    public List<Incident> changedIncidents(Map<Long, Incident> seeded) {
+        List<Incident> result = new ArrayList<>(changed);
+        openIncidents.forEach((monitorId, incident) -> {
+            if (!incident.equals(seeded.get(monitorId))) {
+                result.add(incident);
+            }
+        });
+        return result;
+    }
+
+    public Map<Long, Incident> getOpenIncidents() {
+        return openIncidents;
+    }
+}
@@ -1,19 +1,31 @@
 package team.kaleni.ping.tower.backend.statistics_service.service;
 
 import com.clickhouse.client.ClickHouseClient;
+import com.clickhouse.client.ClickHouseException;
 import com.clickhouse.client.ClickHouseNode;
 import com.clickhouse.client.ClickHouseResponse;
+import com.clickhouse.data.ClickHouseFormat;
 import com.clickhouse.data.ClickHouseRecord;
+import com.clickhouse.data.ClickHouseValue;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import team.kaleni.ping.tower.backend.statistics_service.dto.ChartDataPointDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.HourlyStatsDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.LatencyPercentilesDto;
 import team.kaleni.ping.tower.backend.statistics_service.dto.PingResultDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.TimingBreakdownDto;
+import team.kaleni.ping.tower.backend.statistics_service.enums.ChartResolution;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -25,6 +37,10 @@ public class ClickHouseStatisticsService {
 
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
+    // Все rollup хранят один набор перцентилей (p50, p90, p95, p99), поэтому индексы одинаковы для любой таблицы
+    private static final String MERGE_QUANTILES = "quantilesTDigestIfMerge(0.5, 0.9, 0.95, 0.99)(response_time_quantiles)";
+    private static final String MERGE_P95 = MERGE_QUANTILES + "[3]";
+
     /**
      * Получить все данные пинга за период для конкретного монитора
      */
@@ -42,13 +58,17 @@ public class ClickHouseStatisticsService {
                     response_time_ms,
                     response_code,
                     error_message,
-                    url
+                    url,
+                    dns_ms,
+                    connect_ms,
+                    tls_ms,
+                    ttfb_ms,
+                    download_ms
                 FROM ping_history.ping_results
                 WHERE monitor_id = %d
                   AND ping_timestamp >= '%s'
                   AND ping_timestamp <= '%s'
                 ORDER BY ping_timestamp
-                FORMAT TabSeparated
                 """, monitorId, startTimeStr, endTimeStr);
 
         List<PingResultDto> results = new ArrayList<>();
@@ -58,34 +78,26 @@ public class ClickHouseStatisticsService {
 
             try (ClickHouseResponse response = clickHouseClient
                     .read(clickHouseNode)
+                    .format(ClickHouseFormat.RowBinaryWithNamesAndTypes)
                     .query(query)
                     .executeAndWait()) {
 
-                // Парсим TabSeparated построчно
+                // Бинарный формат с типами: значения читаются сразу в примитивы, без разбора строк
                 for (ClickHouseRecord record : response.records()) {
-                    String fullRow = record.getValue(0).asString();
-                    if (fullRow.length() < 2) {
-                        continue;
-                    }
-                    log.debug("Raw row: {}", fullRow);
-
-                    // Разбиваем строку по табам
-                    String[] parts = fullRow.split("\\t");
-
-                    if (parts.length >= 7) {
-                        PingResultDto dto = PingResultDto.builder()
-                                .monitorId(Long.parseLong(parts[0]))
-                                .pingTimestamp(LocalDateTime.parse(parts[1], DateTimeFormatter.ofPattern("yyyy-MM-dd " +
-                                        "HH:mm:ss.SSS")))
-                                .status(parts[2])
-                                // Правильная обработка NULL значений
-                                .responseTimeMs(isNullValue(parts[3]) ? null : Integer.parseInt(parts[3]))
-                                .responseCode(isNullValue(parts[4]) ? null : Integer.parseInt(parts[4]))
-                                .errorMessage(isNullValue(parts[5]) ? null : parts[5])
-                                .url(parts[6])
-                                .build();
-                        results.add(dto);
-                    }
+                    results.add(PingResultDto.builder()
+                            .monitorId(record.getValue(0).asLong())
+                            .pingTimestamp(record.getValue(1).asDateTime())
+                            .status(record.getValue(2).asString())
+                            .responseTimeMs(nullableInteger(record.getValue(3)))
+                            .responseCode(nullableInteger(record.getValue(4)))
+                            .errorMessage(record.getValue(5).isNullOrEmpty() ? null : record.getValue(5).asString())
+                            .url(record.getValue(6).asString())
+                            .dnsMs(nullableDouble(record.getValue(7)))
+                            .connectMs(nullableDouble(record.getValue(8)))
+                            .tlsMs(nullableDouble(record.getValue(9)))
+                            .ttfbMs(nullableDouble(record.getValue(10)))
+                            .downloadMs(nullableDouble(record.getValue(11)))
+                            .build());
                 }
 
                 log.info("Retrieved {} ping results for monitor {}", results.size(), monitorId);
@@ -99,12 +111,199 @@ public class ClickHouseStatisticsService {
     }
 
 
+    /**
+     * Почасовая статистика для нескольких мониторов одним запросом (monitor_id IN (...)).
+     * Состояния ping_stats_hourly_agg сливаются через -Merge; текущий час попадает в rollup сразу при вставке.
+     * В результате есть только мониторы, по которым были пинги; ряды упорядочены по времени.
+     * Ошибки пробрасываются, чтобы пустой результат не попал в кэш закрытых бакетов.
+     */
+    public Map<Long, List<HourlyStatsDto>> getHourlyStats(Collection<Long> monitorIds,
+                                                          LocalDateTime startTime, LocalDateTime endTime) {
+        Map<Long, List<HourlyStatsDto>> results = new LinkedHashMap<>();
+        if (monitorIds.isEmpty()) return results;
+
+        String startTimeStr = startTime.format(FORMATTER);
+        String endTimeStr = endTime.format(FORMATTER);
+        String idList = monitorIds.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        String query = String.format("""
+                SELECT
+                    hour_timestamp AS hour,
+                    countMerge(total_pings) AS total,
+                    countIfMerge(successful_pings) AS successful,
+                    countIfMerge(failed_pings) AS failed,
+                    countIfMerge(response_time_count) AS rt_count,
+                    if(rt_count = 0, NULL, avgIfMerge(avg_response_time)) AS rt_avg,
+                    if(rt_count = 0, NULL, minIfMerge(min_response_time)) AS rt_min,
+                    if(rt_count = 0, NULL, maxIfMerge(max_response_time)) AS rt_max,
+                    monitor_id
+                FROM ping_history.ping_stats_hourly_agg
+                WHERE monitor_id IN (%s)
+                  AND hour_timestamp >= toStartOfHour(toDateTime('%s', 'UTC'))
+                  AND hour_timestamp <= toDateTime('%s', 'UTC')
+                GROUP BY monitor_id, hour
+                ORDER BY monitor_id, hour
+                """, idList, startTimeStr, endTimeStr);
+
+        log.debug("Executing hourly stats query for {} monitors: {}", monitorIds.size(), query);
+
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                Long monitorId = record.getValue(8).asLong();
+                results.computeIfAbsent(monitorId, id -> new ArrayList<>())
+                        .add(toHourlyStats(monitorId, record));
+            }
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Hourly stats query failed for monitors " + monitorIds, e);
+        }
+
+        return results;
+    }
+
+    /**
+     * Перцентили времени отклика по мониторам за период: почасовые t-digest скетчи из ping_stats_hourly_agg
+     * сливаются в ClickHouse в один, сырые пинги не читаются
+     */
+    public LatencyPercentilesDto getLatencyPercentiles(Collection<Long> monitorIds,
+                                                       LocalDateTime startTime, LocalDateTime endTime) {
+        String idList = monitorIds.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        String query = String.format("""
+                SELECT
+                    samples,
+                    if(samples = 0, NULL, q[1]) AS p50,
+                    if(samples = 0, NULL, q[2]) AS p90,
+                    if(samples = 0, NULL, q[3]) AS p95,
+                    if(samples = 0, NULL, q[4]) AS p99
+                FROM (
+                    SELECT
+                        countIfMerge(response_time_count) AS samples,
+                        %s AS q
+                    FROM ping_history.ping_stats_hourly_agg
+                    WHERE monitor_id IN (%s)
+                      AND hour_timestamp >= toStartOfHour(toDateTime('%s', 'UTC'))
+                      AND hour_timestamp <= toDateTime('%s', 'UTC')
+                )
+                """, MERGE_QUANTILES, idList, startTime.format(FORMATTER), endTime.format(FORMATTER));
+
+        log.debug("Executing latency percentiles query for {} monitors: {}", monitorIds.size(), query);
+
+        LatencyPercentilesDto.LatencyPercentilesDtoBuilder result = LatencyPercentilesDto.builder()
+                .monitorIds(List.copyOf(monitorIds))
+                .startTime(startTime)
+                .endTime(endTime)
+                .sampleCount(0L);
+
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                result.sampleCount(record.getValue(0).asLong())
+                        .p50ResponseTimeMs(nullableDouble(record.getValue(1)))
+                        .p90ResponseTimeMs(nullableDouble(record.getValue(2)))
+                        .p95ResponseTimeMs(nullableDouble(record.getValue(3)))
+                        .p99ResponseTimeMs(nullableDouble(record.getValue(4)));
+            }
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Latency percentiles query failed for monitors " + monitorIds, e);
+        }
+
+        return result.build();
+    }
+
+    /**
+     * Средняя разбивка времени проверки по фазам за период. Фазы соединения усредняются только
+     * по проверкам, открывшим новое соединение; сырые пинги читаются лишь по колонкам фаз
+     */
+    public TimingBreakdownDto getTimingBreakdown(Collection<Long> monitorIds,
+                                                 LocalDateTime startTime, LocalDateTime endTime) {
+        String idList = monitorIds.stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        String query = String.format("""
+                SELECT
+                    countIf(ttfb_ms IS NOT NULL) AS samples,
+                    countIf(connect_ms IS NOT NULL) AS new_connections,
+                    avg(dns_ms),
+                    avg(connect_ms),
+                    avg(tls_ms),
+                    avg(ttfb_ms),
+                    avg(download_ms)
+                FROM ping_history.ping_results
+                WHERE monitor_id IN (%s)
+                  AND ping_timestamp >= '%s'
+                  AND ping_timestamp <= '%s'
+                """, idList, startTime.format(FORMATTER), endTime.format(FORMATTER));
+
+        log.debug("Executing timing breakdown query for {} monitors: {}", monitorIds.size(), query);
+
+        TimingBreakdownDto.TimingBreakdownDtoBuilder result = TimingBreakdownDto.builder()
+                .monitorIds(List.copyOf(monitorIds))
+                .startTime(startTime)
+                .endTime(endTime)
+                .sampleCount(0L)
+                .newConnectionCount(0L);
+
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .format(ClickHouseFormat.RowBinaryWithNamesAndTypes)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                result.sampleCount(record.getValue(0).asLong())
+                        .newConnectionCount(record.getValue(1).asLong())
+                        .avgDnsMs(nullableDouble(record.getValue(2)))
+                        .avgConnectMs(nullableDouble(record.getValue(3)))
+                        .avgTlsMs(nullableDouble(record.getValue(4)))
+                        .avgTtfbMs(nullableDouble(record.getValue(5)))
+                        .avgDownloadMs(nullableDouble(record.getValue(6)));
+            }
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Timing breakdown query failed for monitors " + monitorIds, e);
+        }
+
+        return result.build();
+    }
+
     /**
      * Получить данные для графика (только нужные поля)
      */
     public List<ChartDataPointDto> getChartData(Long monitorId, LocalDateTime startTime, LocalDateTime endTime) {
         log.info("Getting chart data for monitor {} from {} to {}", monitorId, startTime, endTime);
 
+        List<ChartDataPointDto> results = new ArrayList<>();
+
+        try {
+            streamChartData(monitorId, startTime, endTime, results::add);
+            log.info("Retrieved {} chart data points for monitor {}", results.size(), monitorId);
+
+        } catch (Exception e) {
+            log.error("Error getting chart data for monitor {}: {}", monitorId, e.getMessage(), e);
+        }
+
+        return results;
+    }
+
+    /**
+     * Передать точки графика получателю по мере чтения ответа ClickHouse, не собирая их в список.
+     * Память не зависит от длины периода; ошибки пробрасываются вызывающему.
+     *
+     * @return число переданных точек
+     */
+    public long streamChartData(Long monitorId, LocalDateTime startTime, LocalDateTime endTime,
+                                Consumer<ChartDataPointDto> consumer) {
         String startTimeStr = startTime.format(FORMATTER);
         String endTimeStr = endTime.format(FORMATTER);
 
@@ -119,13 +318,107 @@ public class ClickHouseStatisticsService {
         AND ping_timestamp >= '%s'
         AND ping_timestamp <= '%s'
         ORDER BY ping_timestamp
-        FORMAT TabSeparated
         """, monitorId, startTimeStr, endTimeStr);
 
+        log.debug("Executing chart data query: {}", query);
+
+        long count = 0;
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .format(ClickHouseFormat.RowBinaryWithNamesAndTypes)
+                .query(query)
+                .executeAndWait()) {
+
+            // records() читает ответ из сокета по мере обхода
+            for (ClickHouseRecord record : response.records()) {
+                consumer.accept(ChartDataPointDto.builder()
+                        .pingTimestamp(record.getValue(0).asDateTime())
+                        .status(record.getValue(1).asString())
+                        .responseTimeMs(nullableInteger(record.getValue(2)))
+                        .responseCode(nullableInteger(record.getValue(3)))
+                        .build());
+                count++;
+            }
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Chart data query failed for monitor " + monitorId, e);
+        }
+        return count;
+    }
+
+
+    /**
+     * Данные графика из rollup: одна точка на бакет выбранного разрешения.
+     * Все rollup хранят состояния AggregatingMergeTree и читаются через -Merge.
+     */
+    public List<ChartDataPointDto> getAggregatedChartData(Long monitorId, LocalDateTime startTime,
+                                                          LocalDateTime endTime, ChartResolution resolution) {
+        return getBucketedChartData(monitorId, startTime, endTime, resolution, resolution.getBucketSeconds());
+    }
+
+    /**
+     * Данные графика, сгруппированные в слоты по slotSeconds секунд.
+     * Источник - сырые пинги (RAW) или rollup; slotSeconds должен быть кратен шагу источника.
+     * В каждом слоте есть min/max времени отклика, поэтому пики не теряются при прореживании.
+     * Ошибки пробрасываются, чтобы пустой результат не попал в кэш закрытых бакетов.
+     */
+    public List<ChartDataPointDto> getBucketedChartData(Long monitorId, LocalDateTime startTime, LocalDateTime endTime,
+                                                        ChartResolution source, long slotSeconds) {
+        log.info("Getting chart data for monitor {} from {} to {}: {}s slots from {}",
+                monitorId, startTime, endTime, slotSeconds, source);
+
+        String startTimeStr = startTime.format(FORMATTER);
+        String endTimeStr = endTime.format(FORMATTER);
+
+        String query = switch (source) {
+            case RAW -> String.format("""
+                    SELECT
+                        toStartOfInterval(ping_timestamp, INTERVAL %1$d SECOND) AS slot,
+                        count() AS total,
+                        countIf(status = 'UP') AS successful,
+                        if(rt_count = 0, NULL,
+                           avgIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL)) AS rt_avg,
+                        countIf(status = 'UP' AND response_time_ms IS NOT NULL) AS rt_count,
+                        if(rt_count = 0, NULL,
+                           quantileTDigestIf(0.95)(assumeNotNull(response_time_ms),
+                               status = 'UP' AND response_time_ms IS NOT NULL)) AS rt_p95,
+                        minIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS rt_min,
+                        maxIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS rt_max
+                    FROM ping_history.ping_results
+                    WHERE monitor_id = %2$d
+                      AND ping_timestamp >= toDateTime('%3$s', 'UTC')
+                      AND ping_timestamp <= toDateTime('%4$s', 'UTC')
+                    GROUP BY slot
+                    ORDER BY slot
+                    """, slotSeconds, monitorId, startTimeStr, endTimeStr);
+            case MINUTE -> stateRollupChartQuery("ping_stats_minute", "toStartOfMinute",
+                    monitorId, startTimeStr, endTimeStr, slotSeconds);
+            case DAY -> stateRollupChartQuery("ping_stats_daily", "toStartOfDay",
+                    monitorId, startTimeStr, endTimeStr, slotSeconds);
+            case HOUR -> String.format("""
+                    SELECT
+                        toStartOfInterval(hour_timestamp, INTERVAL %1$d SECOND) AS slot,
+                        countMerge(total_pings) AS total,
+                        countIfMerge(successful_pings) AS successful,
+                        if(rt_count = 0, NULL, avgIfMerge(avg_response_time)) AS rt_avg,
+                        countIfMerge(response_time_count) AS rt_count,
+                        if(rt_count = 0, NULL,
+                           %5$s) AS rt_p95,
+                        if(rt_count = 0, NULL, minIfMerge(min_response_time)) AS rt_min,
+                        if(rt_count = 0, NULL, maxIfMerge(max_response_time)) AS rt_max
+                    FROM ping_history.ping_stats_hourly_agg
+                    WHERE monitor_id = %2$d
+                      AND hour_timestamp >= toStartOfHour(toDateTime('%3$s', 'UTC'))
+                      AND hour_timestamp <= toDateTime('%4$s', 'UTC')
+                    GROUP BY slot
+                    ORDER BY slot
+                    """, slotSeconds, monitorId, startTimeStr, endTimeStr, MERGE_P95);
+            default -> throw new IllegalArgumentException("Unsupported chart data source: " + source);
+        };
+
         List<ChartDataPointDto> results = new ArrayList<>();
 
         try {
-            log.debug("Executing chart data query: {}", query);
+            log.debug("Executing bucketed chart query: {}", query);
 
             try (ClickHouseResponse response = clickHouseClient
                     .read(clickHouseNode)
@@ -133,62 +426,84 @@ public class ClickHouseStatisticsService {
                     .executeAndWait()) {
 
                 for (ClickHouseRecord record : response.records()) {
-                    String fullRow = record.getValue(0).asString();
-                    if (fullRow.length() < 2) {
-                        continue;
-                    }
-
-                    log.debug("Raw chart row: {}", fullRow);
-
-                    String[] parts = fullRow.split("\\t");
-                    if (parts.length >= 4) {
-                        try {
-                            // Более надежная обработка пустых значений
-                            Integer responseTimeMs = null;
-                            if (parts.length > 2 && !isNullValue(parts[2])) {
-                                responseTimeMs = Integer.parseInt(parts[2]);
-                            }
-
-                            Integer responseCode = null;
-                            if (parts.length > 3 && !isNullValue(parts[3])) {
-                                responseCode = Integer.parseInt(parts[3]);
-                            }
-
-                            ChartDataPointDto dto = ChartDataPointDto.builder()
-                                    .pingTimestamp(LocalDateTime.parse(parts[0],
-                                            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS")))
-                                    .status(parts[1])
-                                    .responseTimeMs(responseTimeMs)
-                                    .responseCode(responseCode)
-                                    .build();
-
-                            results.add(dto);
-                            log.debug("Parsed chart data point: {}", dto);
-
-                        } catch (Exception e) {
-                            log.warn("Error parsing chart data row: {} - {}", fullRow, e.getMessage());
-                            continue;
-                        }
-                    }
+                    results.add(toAggregatedChartPoint(record));
                 }
             }
 
-            log.info("Retrieved {} chart data points for monitor {}", results.size(), monitorId);
+            log.info("Retrieved {} chart points for monitor {}", results.size(), monitorId);
 
-        } catch (Exception e) {
-            log.error("Error getting chart data for monitor {}: {}", monitorId, e.getMessage(), e);
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Bucketed chart query failed for monitor " + monitorId, e);
         }
 
         return results;
     }
 
+    private String stateRollupChartQuery(String table, String bucketFunction, Long monitorId,
+                                         String startTimeStr, String endTimeStr, long slotSeconds) {
+        return String.format("""
+                SELECT
+                    toStartOfInterval(bucket, INTERVAL %d SECOND) AS slot,
+                    countMerge(total_pings) AS total,
+                    countIfMerge(successful_pings) AS successful,
+                    if(rt_count = 0, NULL, sumIfMerge(response_time_sum) / rt_count) AS rt_avg,
+                    countIfMerge(response_time_count) AS rt_count,
+                    if(rt_count = 0, NULL, %s) AS rt_p95,
+                    min(min_response_time) AS rt_min,
+                    max(max_response_time) AS rt_max
+                FROM ping_history.%s
+                WHERE monitor_id = %d
+                  AND bucket >= %s(toDateTime('%s', 'UTC'))
+                  AND bucket <= toDateTime('%s', 'UTC')
+                GROUP BY slot
+                ORDER BY slot
+                """, slotSeconds, MERGE_P95, table, monitorId, bucketFunction, startTimeStr, endTimeStr);
+    }
+
+    private ChartDataPointDto toAggregatedChartPoint(ClickHouseRecord record) {
+        long total = record.getValue(1).asLong();
+        long successful = record.getValue(2).asLong();
+
+        return ChartDataPointDto.builder()
+                .pingTimestamp(record.getValue(0).asDateTime())
+                // Бакет считается UP, только если в нём не было ни одного неудачного пинга
+                .status(successful == total ? "UP" : "DOWN")
+                .responseTimeMs(record.getValue(3).isNullOrEmpty() ? null
+                        : (int) Math.round(record.getValue(3).asDouble()))
+                .totalPings(total)
+                .failedPings(total - successful)
+                .p95ResponseTimeMs(record.getValue(5).isNullOrEmpty() ? null
+                        : (int) Math.round(record.getValue(5).asDouble()))
+                .minResponseTimeMs(nullableInteger(record.getValue(6)))
+                .maxResponseTimeMs(nullableInteger(record.getValue(7)))
+                .build();
+    }
+
+    private HourlyStatsDto toHourlyStats(Long monitorId, ClickHouseRecord record) {
+        long totalPings = record.getValue(1).asLong();
+        long successfulPings = record.getValue(2).asLong();
+
+        return HourlyStatsDto.builder()
+                .monitorId(monitorId)
+                .hour(record.getValue(0).asDateTime())
+                .totalPings(totalPings)
+                .successfulPings(successfulPings)
+                // Всё, что не UP, считается неуспешным (DOWN, ERROR, TIMEOUT)
+                .failedPings(record.getValue(3).asLong())
+                .uptimePercentage(totalPings > 0 ? (successfulPings * 100.0) / totalPings : 0.0)
+                .averageResponseTime(nullableDouble(record.getValue(5)))
+                .minResponseTime(nullableInteger(record.getValue(6)))
+                .maxResponseTime(nullableInteger(record.getValue(7)))
+                .build();
+    }
 
     // Добавить метод для проверки NULL значений
-    private boolean isNullValue(String value) {
-        return value == null ||
-                "\\N".equals(value) ||
-                value.trim().isEmpty() ||
-                "NULL".equalsIgnoreCase(value.trim());
+    private Integer nullableInteger(ClickHouseValue value) {
+        return value.isNullOrEmpty() ? null : value.asInteger();
+    }
+
+    private Double nullableDouble(ClickHouseValue value) {
+        return value.isNullOrEmpty() ? null : value.asDouble();
     }
 
 
@@ -0,0 +1,471 @@
+package team.kaleni.ping.tower.backend.statistics_service.service;
+
+import com.clickhouse.client.ClickHouseClient;
+import com.clickhouse.client.ClickHouseException;
+import com.clickhouse.client.ClickHouseNode;
+import com.clickhouse.client.ClickHouseResponse;
+import com.clickhouse.data.ClickHouseFormat;
+import com.clickhouse.data.ClickHouseRecord;
+import com.clickhouse.data.format.BinaryStreamUtils;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import team.kaleni.ping.tower.backend.statistics_service.incident.Incident;
+import team.kaleni.ping.tower.backend.statistics_service.incident.IncidentSegmenter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Инциденты мониторов.
+ * Фоновая задача проходит ping_results по окнам (watermark, now - lag] в порядке первичного ключа,
+ * режет поток на инциденты и дописывает их в monitor_incidents; граница обработанного хранится
+ * в incident_watermark. Отчёты берут готовые инциденты до watermark и досчитывают хвост после неё по сырым пингам.
+ * Повторная обработка окна даёт те же строки (ключ - monitor_id, started_at), ReplacingMergeTree оставляет последнюю.
+ * Строки, вставленные после прохода по их ping_timestamp (воспроизведение журнала Ping Service после
+ * недоступности ClickHouse), находятся по inserted_at: только их мониторы режутся заново от самого раннего
+ * опоздавшего пинга, а инциденты, которых новая разметка не дала, перезаписываются удалёнными (deleted = 1).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IncidentService {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private static final String INSERT_INCIDENTS = """
+            INSERT INTO ping_history.monitor_incidents
+                (monitor_id, started_at, ended_at, reason, version, deleted)
+            """;
+
+    private static final String INSERT_WATERMARK = """
+            INSERT INTO ping_history.incident_watermark (id, processed_until, inserted_until, version)
+            """;
+
+    private final ClickHouseClient clickHouseClient;
+    private final ClickHouseNode clickHouseNode;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${statistics.incidents.enabled:true}")
+    private boolean enabled;
+
+    // Отставание от текущего времени, чтобы батчи Ping Service успели записаться
+    @Value("${statistics.incidents.lag:5m}")
+    private Duration lag;
+
+    // Максимальное окно за один проход: первый запуск догоняет историю по частям
+    @Value("${statistics.incidents.max-window:1d}")
+    private Duration maxWindow;
+
+    // Запас по времени вставки: строка видна в запросах только после завершения своей вставки
+    @Value("${statistics.incidents.insert-grace:1m}")
+    private Duration insertGrace;
+
+    private volatile LocalDateTime lastWatermark;
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("statistics.incidents.watermark.lag", this, IncidentService::getWatermarkLagSeconds)
+                .description("Seconds between now and the last ping processed into monitor_incidents")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Дописать инциденты за следующее окно после watermark и заново разметить мониторы с опоздавшими пингами
+     */
+    @Scheduled(fixedDelayString = "${statistics.incidents.refresh-interval-ms:60000}",
+            initialDelayString = "${statistics.incidents.initial-delay-ms:30000}")
+    public void materialize() {
+        if (!enabled) return;
+
+        try {
+            Optional<LocalDateTime> watermark = readWatermark().or(this::beforeFirstPing);
+            if (watermark.isEmpty()) {
+                log.debug("No ping results yet, nothing to segment into incidents");
+                return;
+            }
+
+            LocalDateTime from = watermark.get();
+            LocalDateTime horizon = nowUtc().minus(lag);
+            LocalDateTime until = from.plus(maxWindow).isBefore(horizon) ? from.plus(maxWindow) : horizon;
+            if (!until.isAfter(from)) return;
+
+            // Время вставки берётся по часам ClickHouse - ими же заполняется inserted_at
+            LocalDateTime insertedUntil = readSingleTimestamp("SELECT now64(3, 'UTC')").orElseThrow().minus(insertGrace);
+            Optional<LocalDateTime> insertedSince = readInsertedUntil();
+            Map<Long, LocalDateTime> late = insertedSince.isPresent()
+                    ? findLatePings(from, insertedSince.get(), insertedUntil)
+                    : Map.of();
+
+            List<Incident> changed = new ArrayList<>();
+            long pings = segmentForward(from, until, late.keySet(), changed);
+
+            List<Incident> deleted = new ArrayList<>();
+            if (!late.isEmpty()) {
+                pings += resegment(late, until, changed, deleted);
+            }
+
+            writeIncidents(changed, deleted);
+            writeWatermark(until, insertedUntil);
+            lastWatermark = until;
+
+            log.info("Segmented {} pings up to {} (watermark {}, {} monitors with late pings) " +
+                            "into {} new or updated and {} deleted incidents",
+                    pings, until, from, late.size(), changed.size(), deleted.size());
+
+        } catch (Exception e) {
+            log.error("Error materializing monitor incidents: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Окно (from, until] всех мониторов, кроме заново размечаемых, от инцидентов, открытых на from
+     */
+    private long segmentForward(LocalDateTime from, LocalDateTime until, Set<Long> excluded, List<Incident> changed) {
+        Map<Long, Incident> openAtFrom = new HashMap<>();
+        for (Incident incident : readIncidents(null, from, from)) {
+            if (incident.isOpenAt(from) && !excluded.contains(incident.monitorId())) {
+                openAtFrom.put(incident.monitorId(), incident);
+            }
+        }
+
+        IncidentSegmenter segmenter = new IncidentSegmenter(openAtFrom);
+        long pings = segment(monitorExclusion(excluded), from, until, segmenter);
+        changed.addAll(segmenter.changedIncidents(openAtFrom));
+        return pings;
+    }
+
+    /**
+     * Заново разметить мониторы с опоздавшими пингами: каждый - от пинга перед самым ранним опоздавшим
+     * до until. Сохранённые инциденты, начавшиеся в этом интервале и не полученные заново, удаляются.
+     *
+     * @param late монитор -> самый ранний опоздавший ping_timestamp
+     */
+    private long resegment(Map<Long, LocalDateTime> late, LocalDateTime until,
+                           List<Incident> changed, List<Incident> deleted) {
+        // Интервал (rescanFrom, until] включает сам опоздавший пинг
+        Map<Long, LocalDateTime> rescanFrom = new HashMap<>();
+        late.forEach((monitorId, first) -> rescanFrom.put(monitorId, first.minusNanos(1_000_000)));
+        LocalDateTime earliest = Collections.min(rescanFrom.values());
+
+        Map<Long, Incident> seeded = new HashMap<>();
+        List<Incident> stored = readIncidents(late.keySet(), earliest, until);
+        for (Incident incident : stored) {
+            if (incident.isOpenAt(rescanFrom.get(incident.monitorId()))) {
+                seeded.put(incident.monitorId(), incident);
+            }
+        }
+
+        IncidentSegmenter segmenter = new IncidentSegmenter(seeded);
+        long pings = segment(monitorFilter(late.keySet()), earliest, until,
+                (monitorId, pingTimestamp, status, errorMessage) -> {
+                    if (pingTimestamp.isAfter(rescanFrom.get(monitorId))) {
+                        segmenter.accept(monitorId, pingTimestamp, status, errorMessage);
+                    }
+                });
+
+        List<Incident> resegmented = segmenter.changedIncidents(seeded);
+        changed.addAll(resegmented);
+
+        // Инцидент, открытый на rescanFrom, сохраняет ключ, даже если не изменился
+        Set<String> kept = new HashSet<>();
+        seeded.values().forEach(incident -> kept.add(incidentKey(incident)));
+        resegmented.forEach(incident -> kept.add(incidentKey(incident)));
+        for (Incident incident : stored) {
+            if (incident.startedAt().isAfter(rescanFrom.get(incident.monitorId()))
+                    && !kept.contains(incidentKey(incident))) {
+                deleted.add(incident);
+            }
+        }
+        return pings;
+    }
+
+    /**
+     * Мониторы, у которых с прошлого прохода вставлены пинги не позже уже обработанной границы,
+     * и самый ранний такой пинг
+     */
+    private Map<Long, LocalDateTime> findLatePings(LocalDateTime processedUntil,
+                                                   LocalDateTime insertedSince, LocalDateTime insertedUntil) {
+        String query = String.format("""
+                SELECT monitor_id, min(ping_timestamp)
+                FROM ping_history.ping_results
+                WHERE inserted_at > toDateTime64('%s', 3, 'UTC')
+                  AND inserted_at <= toDateTime64('%s', 3, 'UTC')
+                  AND ping_timestamp <= toDateTime64('%s', 3, 'UTC')
+                GROUP BY monitor_id
+                """, insertedSince.format(FORMATTER), insertedUntil.format(FORMATTER), processedUntil.format(FORMATTER));
+
+        Map<Long, LocalDateTime> late = new HashMap<>();
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                late.put(record.getValue(0).asLong(), record.getValue(1).asDateTime());
+            }
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Late ping query failed", e);
+        }
+        return late;
+    }
+
+    /**
+     * Инциденты мониторов, пересекающиеся с периодом, по возрастанию начала.
+     * До watermark - из monitor_incidents, после - по сырым пингам с учётом инцидентов, открытых на границе.
+     */
+    public Map<Long, List<Incident>> getIncidents(Collection<Long> monitorIds, LocalDateTime from, LocalDateTime to) {
+        Map<Long, Map<LocalDateTime, Incident>> byMonitor = new LinkedHashMap<>();
+        monitorIds.forEach(id -> byMonitor.put(id, new HashMap<>()));
+
+        List<Incident> materialized = readIncidents(monitorIds, from, to);
+        materialized.forEach(incident -> byMonitor.get(incident.monitorId()).put(incident.startedAt(), incident));
+
+        LocalDateTime watermark = readWatermark().orElse(null);
+        if (watermark == null || watermark.isBefore(to)) {
+            LocalDateTime tailStart = watermark != null && watermark.isAfter(from) ? watermark : from;
+
+            Map<Long, Incident> openAtTailStart = new HashMap<>();
+            for (Incident incident : materialized) {
+                if (incident.isOpenAt(tailStart)) {
+                    openAtTailStart.put(incident.monitorId(), incident);
+                }
+            }
+
+            IncidentSegmenter segmenter = new IncidentSegmenter(openAtTailStart);
+            segment(monitorFilter(monitorIds), tailStart, to, segmenter::accept);
+            for (Incident incident : segmenter.changedIncidents(Map.of())) {
+                // Версия из хвоста точнее строки, записанной до сбоя между инцидентами и watermark
+                byMonitor.get(incident.monitorId()).put(incident.startedAt(), incident);
+            }
+        }
+
+        Map<Long, List<Incident>> result = new LinkedHashMap<>();
+        byMonitor.forEach((monitorId, incidents) -> result.put(monitorId, incidents.values().stream()
+                .filter(incident -> !incident.startedAt().isAfter(to)
+                        && (incident.isOpen() || !incident.endedAt().isBefore(from)))
+                .sorted(Comparator.comparing(Incident::startedAt))
+                .toList()));
+        return result;
+    }
+
+    // Helper methods
+
+    /**
+     * Прогнать пинги (from, to] в порядке первичного ключа, читая ответ ClickHouse потоком
+     *
+     * @param monitorCondition условие на monitor_id с завершающим AND или пустая строка
+     */
+    private long segment(String monitorCondition, LocalDateTime from, LocalDateTime to, PingConsumer consumer) {
+        String query = String.format("""
+                SELECT monitor_id, ping_timestamp, status, error_message
+                FROM ping_history.ping_results
+                WHERE %s ping_timestamp > toDateTime64('%s', 3, 'UTC')
+                  AND ping_timestamp <= toDateTime64('%s', 3, 'UTC')
+                ORDER BY monitor_id, ping_timestamp
+                """, monitorCondition, from.format(FORMATTER), to.format(FORMATTER));
+
+        long count = 0;
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .format(ClickHouseFormat.RowBinaryWithNamesAndTypes)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                consumer.accept(
+                        record.getValue(0).asLong(),
+                        record.getValue(1).asDateTime(),
+                        record.getValue(2).asString(),
+                        record.getValue(3).isNullOrEmpty() ? null : record.getValue(3).asString());
+                count++;
+            }
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Ping scan for incident segmentation failed", e);
+        }
+        return count;
+    }
+
+    /**
+     * Инциденты, пересекающиеся с [from, to]
+     *
+     * @param monitorIds null - все мониторы
+     */
+    private List<Incident> readIncidents(Collection<Long> monitorIds, LocalDateTime from, LocalDateTime to) {
+        String query = String.format("""
+                SELECT monitor_id, started_at, ended_at, reason
+                FROM ping_history.monitor_incidents FINAL
+                WHERE %s deleted = 0
+                  AND started_at <= toDateTime64('%s', 3, 'UTC')
+                  AND (ended_at IS NULL OR ended_at >= toDateTime64('%s', 3, 'UTC'))
+                ORDER BY monitor_id, started_at
+                """, monitorFilter(monitorIds), to.format(FORMATTER), from.format(FORMATTER));
+
+        List<Incident> incidents = new ArrayList<>();
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                incidents.add(new Incident(
+                        record.getValue(0).asLong(),
+                        record.getValue(1).asDateTime(),
+                        record.getValue(2).isNullOrEmpty() ? null : record.getValue(2).asDateTime(),
+                        record.getValue(3).isNullOrEmpty() ? null : record.getValue(3).asString()));
+            }
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Incident query failed", e);
+        }
+        return incidents;
+    }
+
+    private Optional<LocalDateTime> readWatermark() {
+        return readSingleTimestamp(
+                "SELECT processed_until FROM ping_history.incident_watermark FINAL WHERE id = 1");
+    }
+
+    private Optional<LocalDateTime> readInsertedUntil() {
+        return readSingleTimestamp(
+                "SELECT inserted_until FROM ping_history.incident_watermark FINAL WHERE id = 1");
+    }
+
+    // Watermark на 1 мс раньше первого пинга, чтобы он попал в окно (from, to]
+    private Optional<LocalDateTime> beforeFirstPing() {
+        return readSingleTimestamp("SELECT min(ping_timestamp) FROM ping_history.ping_results HAVING count() > 0")
+                .map(first -> first.minusNanos(1_000_000));
+    }
+
+    private Optional<LocalDateTime> readSingleTimestamp(String query) {
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                return Optional.of(record.getValue(0).asDateTime());
+            }
+            return Optional.empty();
+        } catch (ClickHouseException e) {
+            throw new IllegalStateException("Query failed: " + query, e);
+        }
+    }
+
+    private void writeIncidents(List<Incident> incidents, List<Incident> deleted) throws ClickHouseException {
+        if (incidents.isEmpty() && deleted.isEmpty()) return;
+
+        long version = System.currentTimeMillis();
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .write()
+                .format(ClickHouseFormat.RowBinary)
+                .query(INSERT_INCIDENTS)
+                .data(output -> {
+                    for (Incident incident : incidents) {
+                        writeIncident(output, incident, version, false);
+                    }
+                    for (Incident incident : deleted) {
+                        writeIncident(output, incident, version, true);
+                    }
+                })
+                .executeAndWait()) {
+
+            log.debug("Wrote {} incidents", response.getSummary().getWrittenRows());
+        }
+    }
+
+    private void writeIncident(OutputStream output, Incident incident, long version, boolean deleted)
+            throws IOException {
+        BinaryStreamUtils.writeUnsignedInt32(output, incident.monitorId());
+        BinaryStreamUtils.writeInt64(output, toEpochMilli(incident.startedAt()));
+        if (incident.endedAt() == null) {
+            BinaryStreamUtils.writeNull(output);
+        } else {
+            BinaryStreamUtils.writeNonNull(output);
+            BinaryStreamUtils.writeInt64(output, toEpochMilli(incident.endedAt()));
+        }
+        if (incident.reason() == null) {
+            BinaryStreamUtils.writeNull(output);
+        } else {
+            BinaryStreamUtils.writeNonNull(output);
+            BinaryStreamUtils.writeString(output, incident.reason());
+        }
+        BinaryStreamUtils.writeUnsignedInt64(output, version);
+        BinaryStreamUtils.writeUnsignedInt8(output, deleted ? 1 : 0);
+    }
+
+    private void writeWatermark(LocalDateTime processedUntil, LocalDateTime insertedUntil) throws ClickHouseException {
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .write()
+                .format(ClickHouseFormat.RowBinary)
+                .query(INSERT_WATERMARK)
+                .data(output -> {
+                    BinaryStreamUtils.writeUnsignedInt8(output, 1);
+                    BinaryStreamUtils.writeInt64(output, toEpochMilli(processedUntil));
+                    BinaryStreamUtils.writeInt64(output, toEpochMilli(insertedUntil));
+                    BinaryStreamUtils.writeUnsignedInt64(output, System.currentTimeMillis());
+                })
+                .executeAndWait()) {
+            log.debug("Incident watermark moved to {}", processedUntil);
+        }
+    }
+
+    private String monitorFilter(Collection<Long> monitorIds) {
+        if (monitorIds == null) return "";
+        return "monitor_id IN (" + joinIds(monitorIds) + ") AND";
+    }
+
+    private String monitorExclusion(Collection<Long> monitorIds) {
+        if (monitorIds.isEmpty()) return "";
+        return "monitor_id NOT IN (" + joinIds(monitorIds) + ") AND";
+    }
+
+    private String joinIds(Collection<Long> monitorIds) {
+        return monitorIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private static String incidentKey(Incident incident) {
+        return incident.monitorId() + "@" + incident.startedAt();
+    }
+
+    private double getWatermarkLagSeconds() {
+        LocalDateTime watermark = lastWatermark;
+        return watermark != null ? Duration.between(watermark, nowUtc()).getSeconds() : Double.NaN;
+    }
+
+    private static LocalDateTime nowUtc() {
+        return LocalDateTime.now(ZoneOffset.UTC);
+    }
+
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    @FunctionalInterface
+    private interface PingConsumer {
+        void accept(Long monitorId, LocalDateTime pingTimestamp, String status, String errorMessage);
+    }
+}
@@ -0,0 +1,281 @@
+package team.kaleni.ping.tower.backend.statistics_service.service;
+
+import com.clickhouse.client.ClickHouseClient;
+import com.clickhouse.client.ClickHouseException;
+import com.clickhouse.client.ClickHouseNode;
+import com.clickhouse.client.ClickHouseResponse;
+import com.clickhouse.data.ClickHouseRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Перестроение rollup из ping_results: почасового ping_stats_hourly_agg, поминутного ping_stats_minute
+ * и посуточного ping_stats_daily (все разбиты на партиции по месяцам).
+ * Закрытые месяцы пересчитываются по одному во вспомогательную таблицу и атомарно подменяют
+ * партицию через REPLACE PARTITION, поэтому читатели не видят пустых или наполовину заполненных бакетов.
+ * Вспомогательная таблица своя у каждого запуска: реплики, запущенные с перестроением одновременно,
+ * не очищают данные друг друга, и каждая подменяет партицию полностью пересчитанным месяцем.
+ * Текущий месяц не трогается: в него пишет материализованное представление.
+ * REPLACE PARTITION затирает всё, что представление успело записать в месяц после пересчёта
+ * (например, воспроизведение журнала Ping Service с пингами прошлого месяца). Поэтому месяц, в который
+ * вставлялись строки за последние statistics.rollup.rebuild.quiet-period, пропускается, а после пересчёта
+ * подмена отменяется, если в месяц что-то вставили во время него (по ping_results.inserted_at).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RollupRebuildService {
+
+    private static final String STAGING_INFIX = "_rebuild_";
+
+    private static final String REBUILD_HOURLY = """
+            INSERT INTO ping_history.%s
+            SELECT
+                monitor_id,
+                toStartOfHour(ping_timestamp) AS hour_timestamp,
+                countState() AS total_pings,
+                countIfState(status = 'UP') AS successful_pings,
+                countIfState(status != 'UP') AS failed_pings,
+                countIfState(status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_count,
+                avgIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS avg_response_time,
+                minIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS min_response_time,
+                maxIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS max_response_time,
+                quantilesTDigestIfState(0.5, 0.9, 0.95, 0.99)(assumeNotNull(response_time_ms),
+                    status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_quantiles
+            FROM ping_history.ping_results
+            WHERE toYYYYMM(ping_timestamp) = %s
+            GROUP BY monitor_id, hour_timestamp
+            """;
+
+    // Поминутный и посуточный rollup (03-ping-stats-rollups.sql) отличаются только началом бакета
+    private static final String REBUILD_BUCKETED = """
+            INSERT INTO ping_history.%%s
+            SELECT
+                monitor_id,
+                %s(ping_timestamp) AS bucket,
+                countState() AS total_pings,
+                countIfState(status = 'UP') AS successful_pings,
+                sumIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_sum,
+                countIfState(status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_count,
+                minIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS min_response_time,
+                maxIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS max_response_time,
+                quantilesTDigestIfState(0.5, 0.9, 0.95, 0.99)(assumeNotNull(response_time_ms),
+                    status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_quantiles
+            FROM ping_history.ping_results
+            WHERE toYYYYMM(ping_timestamp) = %%s
+            GROUP BY monitor_id, bucket
+            """;
+
+    /**
+     * Перестраиваемый rollup: таблица, запрос пересчёта месяца (таблица, месяц) и срок хранения
+     */
+    private enum Rollup {
+        HOURLY("ping_stats_hourly_agg", REBUILD_HOURLY, 365),
+        MINUTE("ping_stats_minute", String.format(REBUILD_BUCKETED, "toStartOfMinute"), 90),
+        DAILY("ping_stats_daily", String.format(REBUILD_BUCKETED, "toStartOfDay"), 0);
+
+        private final String table;
+        private final String rebuildMonth;
+        // 0 - без TTL
+        private final int retentionDays;
+
+        Rollup(String table, String rebuildMonth, int retentionDays) {
+            this.table = table;
+            this.rebuildMonth = rebuildMonth;
+            this.retentionDays = retentionDays;
+        }
+    }
+
+    private final ClickHouseClient clickHouseClient;
+    private final ClickHouseNode clickHouseNode;
+
+    @Value("${statistics.rollup.rebuild.enabled:false}")
+    private boolean rebuildOnStartup;
+
+    // Сколько последних закрытых месяцев перестраивать
+    @Value("${statistics.rollup.rebuild.months:12}")
+    private int monthsToRebuild;
+
+    // Месяц перестраивается, только если в него столько времени ничего не вставлялось
+    @Value("${statistics.rollup.rebuild.quiet-period:1h}")
+    private Duration quietPeriod;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (!rebuildOnStartup) return;
+
+        Thread rebuild = new Thread(this::rebuildClosedMonths, "rollup-rebuild");
+        rebuild.setDaemon(true);
+        rebuild.start();
+    }
+
+    /**
+     * Перестроить закрытые месяцы, по которым есть сырые пинги, от старых к новым, во всех rollup
+     */
+    public void rebuildClosedMonths() {
+        try {
+            dropStaleStagingTables();
+        } catch (Exception e) {
+            log.warn("Failed to drop stale rollup staging tables: {}", e.getMessage());
+        }
+
+        for (Rollup rollup : Rollup.values()) {
+            rebuild(rollup);
+        }
+    }
+
+    private void rebuild(Rollup rollup) {
+        String staging = rollup.table + STAGING_INFIX + UUID.randomUUID().toString().replace("-", "");
+        try {
+            execute(String.format("CREATE TABLE ping_history.%s AS ping_history.%s", staging, rollup.table));
+
+            List<String> months = closedMonthsWithData(rollup.retentionDays);
+            log.info("Rebuilding {} for {} closed months via {}: {}", rollup.table, months.size(), staging, months);
+
+            for (String month : months) {
+                if (hasInsertsSince(month, String.format("now64(3, 'UTC') - INTERVAL %d SECOND", quietPeriod.getSeconds()))) {
+                    log.info("Skipping {} rebuild for month {}: it received inserts within {}", rollup.table, month, quietPeriod);
+                    continue;
+                }
+                rebuildMonth(rollup, staging, month);
+            }
+
+            log.info("Rollup {} rebuild finished", rollup.table);
+        } catch (Exception e) {
+            log.error("Error rebuilding rollup {}: {}", rollup.table, e.getMessage(), e);
+        } finally {
+            try {
+                execute(String.format("DROP TABLE IF EXISTS ping_history.%s", staging));
+            } catch (Exception e) {
+                log.warn("Failed to drop rollup staging table {}: {}", staging, e.getMessage());
+            }
+        }
+    }
+
+    private void rebuildMonth(Rollup rollup, String staging, String month) throws ClickHouseException {
+        long start = System.currentTimeMillis();
+        String startedAt = clickHouseNow();
+
+        execute(String.format("TRUNCATE TABLE ping_history.%s", staging));
+        execute(String.format(rollup.rebuildMonth, staging, month));
+
+        // Строки, вставленные во время пересчёта, уже в rollup через представление, но не в staging
+        if (hasInsertsSince(month, String.format("toDateTime64('%s', 3, 'UTC')", startedAt))) {
+            log.warn("Month {} received inserts while {} was rebuilt, keeping the current partition", month, rollup.table);
+            return;
+        }
+        execute(String.format("ALTER TABLE ping_history.%s "
+                + "REPLACE PARTITION ID '%s' FROM ping_history.%s", rollup.table, month, staging));
+
+        log.info("Rebuilt {} for month {} in {} ms", rollup.table, month, System.currentTimeMillis() - start);
+    }
+
+    // Таблицы запусков, упавших до DROP; сутки заведомо больше любого перестроения
+    private void dropStaleStagingTables() throws ClickHouseException {
+        String query = String.format("""
+                SELECT name
+                FROM system.tables
+                WHERE database = 'ping_history'
+                  AND match(name, '^(%s)%s[0-9a-f]{32}$')
+                  AND metadata_modification_time < now() - INTERVAL 1 DAY
+                """, Arrays.stream(Rollup.values()).map(rollup -> rollup.table).collect(Collectors.joining("|")),
+                STAGING_INFIX);
+
+        List<String> stale = new ArrayList<>();
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                stale.add(record.getValue(0).asString());
+            }
+        }
+
+        for (String table : stale) {
+            log.info("Dropping stale rollup staging table {}", table);
+            execute(String.format("DROP TABLE IF EXISTS ping_history.%s", table));
+        }
+    }
+
+    /**
+     * Партиции ping_results - это месяцы (toYYYYMM), их список берётся из system.parts без чтения данных.
+     * Месяцы, целиком ушедшие за срок хранения rollup, не перестраиваются - их строки удалит TTL.
+     */
+    private List<String> closedMonthsWithData(int retentionDays) throws ClickHouseException {
+        String retention = retentionDays > 0
+                ? String.format("AND partition_id >= toString(toYYYYMM(now('UTC') - INTERVAL %d DAY))", retentionDays)
+                : "";
+        String query = String.format("""
+                SELECT DISTINCT partition_id
+                FROM system.parts
+                WHERE database = 'ping_history'
+                  AND table = 'ping_results'
+                  AND active
+                  AND partition_id < toString(toYYYYMM(now('UTC')))
+                  %s
+                ORDER BY partition_id DESC
+                LIMIT %d
+                """, retention, monthsToRebuild);
+
+        List<String> months = new ArrayList<>();
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(query)
+                .executeAndWait()) {
+
+            for (ClickHouseRecord record : response.records()) {
+                months.add(0, record.getValue(0).asString());
+            }
+        }
+        return months;
+    }
+
+    // Партиция ping_results отбирается по месяцу, гранулы - по minmax-индексу inserted_at
+    private boolean hasInsertsSince(String month, String sinceExpression) throws ClickHouseException {
+        String query = String.format("""
+                SELECT count() > 0
+                FROM ping_history.ping_results
+                WHERE toYYYYMM(ping_timestamp) = %s
+                  AND inserted_at >= %s
+                """, month, sinceExpression);
+
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(query)
+                .executeAndWait()) {
+            ClickHouseRecord record = response.firstRecord();
+            return record != null && record.getValue(0).asBoolean();
+        }
+    }
+
+    // Время по часам ClickHouse - ими же заполняется inserted_at
+    private String clickHouseNow() throws ClickHouseException {
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query("SELECT toString(now64(3, 'UTC'))")
+                .executeAndWait()) {
+            return response.firstRecord().getValue(0).asString();
+        }
+    }
+
+    private void execute(String statement) throws ClickHouseException {
+        try (ClickHouseResponse response = clickHouseClient
+                .read(clickHouseNode)
+                .query(statement)
+                .executeAndWait()) {
+            log.debug("Executed: {}", statement);
+        }
+    }
+}
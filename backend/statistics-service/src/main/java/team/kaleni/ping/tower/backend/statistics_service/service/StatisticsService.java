@@ -2,112 +2,199 @@ package team.kaleni.ping.tower.backend.statistics_service.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import team.kaleni.ping.tower.backend.statistics_service.cache.ClosedBucketCache;
+import team.kaleni.ping.tower.backend.statistics_service.client.UrlServiceClient;
 import team.kaleni.ping.tower.backend.statistics_service.dto.ChartDataPointDto;
 import team.kaleni.ping.tower.backend.statistics_service.dto.HourlyStatsDto;
-import team.kaleni.ping.tower.backend.statistics_service.dto.PingResultDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.LatencyPercentilesDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.MonitorSummaryDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.TimingBreakdownDto;
+import team.kaleni.ping.tower.backend.statistics_service.dto.UptimeReportDto;
+import team.kaleni.ping.tower.backend.statistics_service.enums.ChartResolution;
+import team.kaleni.ping.tower.backend.statistics_service.incident.Incident;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
-import java.util.*;
-import java.util.stream.Collectors;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class StatisticsService {
 
+    private static final long HOUR_SECONDS = 3600;
+    private static final long DAY_SECONDS = 86400;
+
     private final ClickHouseStatisticsService clickHouseService;
+    private final ClosedBucketCache bucketCache;
+    private final UrlServiceClient urlServiceClient;
+    private final IncidentService incidentService;
+
+    // Ограничение размера списка monitor_id IN (...) в одном пакетном запросе
+    @Value("${statistics.batch.max-monitors:1000}")
+    private int batchMaxMonitors;
+
+    // Минимум точек на графике при автоматическом выборе разрешения
+    @Value("${statistics.chart.min-points:200}")
+    private long chartMinPoints;
 
     /**
      * Получить почасовую статистику за последние 24 часа
      */
     public List<HourlyStatsDto> getHourlyStatistics24h(Long monitorId) {
-        LocalDateTime endTime = LocalDateTime.now();
+        LocalDateTime endTime = LocalDateTime.now(ZoneOffset.UTC);
         LocalDateTime startTime = endTime.minusHours(24);
         log.info("Now we have time {} at the server", endTime);
         return getHourlyStatistics(monitorId, startTime, endTime);
     }
 
     /**
-     * Получить почасовую статистику за период
+     * Получить почасовую статистику за период.
+     * Агрегация выполняется в ClickHouse по почасовому rollup, в Java приходит одна строка на час.
+     * Закрытые сутки берутся из кэша, запрос идёт только за недостающими и текущими часами.
      */
     public List<HourlyStatsDto> getHourlyStatistics(Long monitorId, LocalDateTime startTime, LocalDateTime endTime) {
         log.info("Calculating hourly statistics for monitor {} from {} to {}", monitorId, startTime, endTime);
 
-        // Получаем сырые данные из ClickHouse
-        List<PingResultDto> rawData = clickHouseService.getPingResults(monitorId, startTime, endTime);
+        List<HourlyStatsDto> hourlyStats = bucketCache.getRange("hourly", monitorId, startTime, endTime,
+                HOUR_SECONDS, DAY_SECONDS, HourlyStatsDto.class, HourlyStatsDto::getHour,
+                (start, end) -> clickHouseService.getHourlyStats(List.of(monitorId), start, end)
+                        .getOrDefault(monitorId, List.of()));
 
-        if (rawData.isEmpty()) {
+        if (hourlyStats.isEmpty()) {
             log.warn("No ping data found for monitor {} in period {} - {}", monitorId, startTime, endTime);
-            return new ArrayList<>();
         }
 
-        // Группируем по часам
-        Map<LocalDateTime, List<PingResultDto>> groupedByHour = rawData.stream()
-                .collect(Collectors.groupingBy(result ->
-                        result.getPingTimestamp().truncatedTo(ChronoUnit.HOURS)));
-
-        // Вычисляем статистику для каждого часа
-        List<HourlyStatsDto> hourlyStats = groupedByHour.entrySet().stream()
-                .map(entry -> calculateHourlyStats(monitorId, entry.getKey(), entry.getValue()))
-                .sorted(Comparator.comparing(HourlyStatsDto::getHour))
-                .collect(Collectors.toList());
-
         log.info("Calculated statistics for {} hours", hourlyStats.size());
         return hourlyStats;
     }
 
     /**
-     * Вычислить статистику для одного часа
+     * Сводка за последние 24 часа для нескольких мониторов: uptime, среднее время отклика и почасовой sparkline.
+     * Все мониторы считаются одним запросом к ClickHouse; мониторы без пингов возвращаются с нулями.
      */
-    private HourlyStatsDto calculateHourlyStats(Long monitorId, LocalDateTime hour, List<PingResultDto> pings) {
-        long totalPings = pings.size();
-        log.info(pings.getFirst().toString());
-        long successfulPings = pings.stream()
-                .mapToLong(ping -> "UP".equals(ping.getStatus()) ? 1L : 0L)
-                .sum();
-        long failedPings = totalPings - successfulPings;
-
-        double uptimePercentage = totalPings > 0 ? (successfulPings * 100.0) / totalPings : 0.0;
-
-        // Считаем статистику по времени ответа только для успешных пингов
-        List<Integer> responseTimes = pings.stream()
-                .filter(ping -> "UP".equals(ping.getStatus()) && ping.getResponseTimeMs() != null)
-                .map(PingResultDto::getResponseTimeMs)
-                .collect(Collectors.toList());
-
-        Double averageResponseTime = null;
-        Integer minResponseTime = null;
-        Integer maxResponseTime = null;
-
-        if (!responseTimes.isEmpty()) {
-            averageResponseTime = responseTimes.stream()
-                    .mapToInt(Integer::intValue)
-                    .average()
-                    .orElse(0.0);
-            minResponseTime = Collections.min(responseTimes);
-            maxResponseTime = Collections.max(responseTimes);
-        }
-
-        return HourlyStatsDto.builder()
-                .monitorId(monitorId)
-                .hour(hour)
-                .totalPings(totalPings)
-                .successfulPings(successfulPings)
-                .failedPings(failedPings)
-                .uptimePercentage(uptimePercentage)
-                .averageResponseTime(averageResponseTime)
-                .minResponseTime(minResponseTime)
-                .maxResponseTime(maxResponseTime)
-                .build();
+    public List<MonitorSummaryDto> getMonitorSummaries24h(List<Long> monitorIds) {
+        List<Long> ids = monitorIds.stream().distinct().toList();
+        if (ids.size() > batchMaxMonitors) {
+            throw new IllegalArgumentException("Too many monitors in one request: " + ids.size()
+                    + " (max " + batchMaxMonitors + ")");
+        }
+
+        LocalDateTime endTime = LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime startTime = endTime.minusHours(24);
+        log.info("Getting 24h summaries for {} monitors", ids.size());
+
+        Map<Long, List<HourlyStatsDto>> hourlyStats = bucketCache.getRanges("hourly", ids, startTime, endTime,
+                HOUR_SECONDS, DAY_SECONDS, HourlyStatsDto.class, HourlyStatsDto::getHour,
+                clickHouseService::getHourlyStats);
+
+        return ids.stream()
+                .map(id -> toSummary(id, hourlyStats.getOrDefault(id, List.of())))
+                .toList();
+    }
+
+    /**
+     * Сводка за последние 24 часа для всех мониторов группы из URL Service
+     */
+    public List<MonitorSummaryDto> getGroupSummaries24h(Long groupId, Integer ownerId) {
+        List<Long> monitorIds = urlServiceClient.getGroupMonitorIds(groupId, ownerId);
+        log.info("Group {} has {} monitors", groupId, monitorIds.size());
+        return getMonitorSummaries24h(monitorIds);
+    }
+
+    /**
+     * Перцентили времени отклика p50/p90/p95/p99 за период по одному или нескольким мониторам.
+     * Почасовые скетчи сливаются в ClickHouse, поэтому месячный p99 не требует чтения сырых пингов.
+     */
+    public LatencyPercentilesDto getLatencyPercentiles(List<Long> monitorIds, LocalDateTime startTime,
+                                                       LocalDateTime endTime) {
+        List<Long> ids = monitorIds.stream().distinct().toList();
+        if (ids.isEmpty() || ids.size() > batchMaxMonitors) {
+            throw new IllegalArgumentException("Expected 1.." + batchMaxMonitors + " monitors, got " + ids.size());
+        }
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("endTime must be after startTime");
+        }
+
+        log.info("Getting latency percentiles for {} monitors from {} to {}", ids.size(), startTime, endTime);
+        return clickHouseService.getLatencyPercentiles(ids, startTime, endTime);
+    }
+
+    /**
+     * Средняя разбивка времени проверки монитора по фазам (DNS, connect, TLS, TTFB, загрузка) за период
+     */
+    public TimingBreakdownDto getTimingBreakdown(Long monitorId, LocalDateTime startTime, LocalDateTime endTime) {
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("endTime must be after startTime");
+        }
+
+        log.info("Getting timing breakdown for monitor {} from {} to {}", monitorId, startTime, endTime);
+        return clickHouseService.getTimingBreakdown(List.of(monitorId), startTime, endTime);
+    }
+
+    /**
+     * Перцентили времени отклика по всем мониторам группы из URL Service
+     */
+    public LatencyPercentilesDto getGroupLatencyPercentiles(Long groupId, Integer ownerId,
+                                                            LocalDateTime startTime, LocalDateTime endTime) {
+        List<Long> monitorIds = urlServiceClient.getGroupMonitorIds(groupId, ownerId);
+        if (monitorIds.isEmpty()) {
+            // Пустая группа - пустой результат, а не ошибка валидации
+            return LatencyPercentilesDto.builder()
+                    .monitorIds(List.of())
+                    .startTime(startTime)
+                    .endTime(endTime)
+                    .sampleCount(0L)
+                    .build();
+        }
+        return getLatencyPercentiles(monitorIds, startTime, endTime);
+    }
+
+    /**
+     * Отчёт о доступности за период: инциденты, SLA, MTTR и MTBF по каждому монитору.
+     * Инциденты берутся из monitor_incidents, после watermark досчитываются по сырым пингам.
+     */
+    public List<UptimeReportDto> getUptimeReports(List<Long> monitorIds, LocalDateTime startTime,
+                                                  LocalDateTime endTime) {
+        List<Long> ids = monitorIds.stream().distinct().toList();
+        if (ids.isEmpty() || ids.size() > batchMaxMonitors) {
+            throw new IllegalArgumentException("Expected 1.." + batchMaxMonitors + " monitors, got " + ids.size());
+        }
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("endTime must be after startTime");
+        }
+
+        log.info("Building uptime reports for {} monitors from {} to {}", ids.size(), startTime, endTime);
+
+        Map<Long, List<Incident>> incidents = incidentService.getIncidents(ids, startTime, endTime);
+        return ids.stream()
+                .map(id -> toUptimeReport(id, startTime, endTime, incidents.getOrDefault(id, List.of())))
+                .toList();
+    }
+
+    /**
+     * Отчёт о доступности по всем мониторам группы из URL Service
+     */
+    public List<UptimeReportDto> getGroupUptimeReports(Long groupId, Integer ownerId,
+                                                       LocalDateTime startTime, LocalDateTime endTime) {
+        List<Long> monitorIds = urlServiceClient.getGroupMonitorIds(groupId, ownerId);
+        if (monitorIds.isEmpty()) {
+            return List.of();
+        }
+        return getUptimeReports(monitorIds, startTime, endTime);
     }
 
     /**
      * Получить данные для графика за последние 24 часа
      */
     public List<ChartDataPointDto> getChartData24h(Long monitorId) {
-        LocalDateTime endTime = LocalDateTime.now();
+        LocalDateTime endTime = LocalDateTime.now(ZoneOffset.UTC);
         LocalDateTime startTime = endTime.minusHours(24);
 
         log.info("Getting chart data for monitor {} for last 24h", monitorId);
@@ -118,9 +205,188 @@ public class StatisticsService {
      * Получить данные для графика за произвольный период
      */
     public List<ChartDataPointDto> getChartData(Long monitorId, LocalDateTime startTime, LocalDateTime endTime) {
-        log.info("Getting chart data for monitor {} from {} to {}", monitorId, startTime, endTime);
-        return clickHouseService.getChartData(monitorId, startTime, endTime);
+        return getChartData(monitorId, startTime, endTime, ChartResolution.AUTO);
     }
 
+    /**
+     * Получить данные для графика в заданном разрешении; AUTO выбирает самое грубое разрешение,
+     * которое ещё даёт не меньше statistics.chart.min-points точек на период
+     */
+    public List<ChartDataPointDto> getChartData(Long monitorId, LocalDateTime startTime, LocalDateTime endTime,
+                                                ChartResolution resolution) {
+        ChartResolution effective = resolution == ChartResolution.AUTO
+                ? selectResolution(startTime, endTime)
+                : resolution;
+
+        log.info("Getting chart data for monitor {} from {} to {} at {} resolution",
+                monitorId, startTime, endTime, effective);
 
+        if (effective == ChartResolution.RAW) {
+            return clickHouseService.getChartData(monitorId, startTime, endTime);
+        }
+        // Закрытые бакеты берутся из кэша, из ClickHouse читаются только недостающие и текущий
+        return bucketCache.getRange("chart:" + effective, monitorId, startTime, endTime,
+                effective.getBucketSeconds(), cacheChunkSeconds(effective),
+                ChartDataPointDto.class, ChartDataPointDto::getPingTimestamp,
+                (start, end) -> clickHouseService.getAggregatedChartData(monitorId, start, end, effective));
+    }
+
+    /**
+     * Передать все пинги за период получателю по одному, без накопления в памяти (выгрузка длинных периодов)
+     */
+    public long streamChartData(Long monitorId, LocalDateTime startTime, LocalDateTime endTime,
+                                Consumer<ChartDataPointDto> consumer) {
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("endTime must be after startTime");
+        }
+
+        log.info("Streaming chart data for monitor {} from {} to {}", monitorId, startTime, endTime);
+        return clickHouseService.streamChartData(monitorId, startTime, endTime, consumer);
+    }
+
+    /**
+     * Получить не больше maxPoints точек: период делится на равные слоты, в каждом слоте
+     * ClickHouse считает число пингов, среднее, min и max времени отклика.
+     * Слоты строятся из самого грубого источника, шаг которого не больше слота.
+     */
+    public List<ChartDataPointDto> getDownsampledChartData(Long monitorId, LocalDateTime startTime,
+                                                           LocalDateTime endTime, int maxPoints) {
+        if (maxPoints < 2) {
+            throw new IllegalArgumentException("maxPoints must be at least 2");
+        }
+        if (!endTime.isAfter(startTime)) {
+            throw new IllegalArgumentException("endTime must be after startTime");
+        }
+
+        long rangeSeconds = Duration.between(startTime, endTime).getSeconds();
+        long slotSeconds = Math.max(1, (rangeSeconds + maxPoints - 1) / maxPoints);
+
+        ChartResolution source = ChartResolution.RAW;
+        for (ChartResolution candidate : List.of(ChartResolution.DAY, ChartResolution.HOUR, ChartResolution.MINUTE)) {
+            if (candidate.getBucketSeconds() <= slotSeconds) {
+                source = retainedFrom(candidate, startTime);
+                break;
+            }
+        }
+
+        if (source != ChartResolution.RAW) {
+            // Слот должен состоять из целых бакетов источника; округление вверх только уменьшает число точек
+            long step = source.getBucketSeconds();
+            slotSeconds = (slotSeconds + step - 1) / step * step;
+        }
+
+        log.info("Downsampling chart for monitor {} to {} points: {}s slots from {}",
+                monitorId, maxPoints, slotSeconds, source);
+        return clickHouseService.getBucketedChartData(monitorId, startTime, endTime, source, slotSeconds);
+    }
+
+    private UptimeReportDto toUptimeReport(Long monitorId, LocalDateTime startTime, LocalDateTime endTime,
+                                           List<Incident> incidents) {
+        // Будущее в SLA не считаем: период обрезается текущим моментом
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        LocalDateTime effectiveEnd = endTime.isAfter(now) ? now : endTime;
+        long periodSeconds = Math.max(0, Duration.between(startTime, effectiveEnd).getSeconds());
+
+        long downtime = 0;
+        long recoveredCount = 0;
+        long recoverySeconds = 0;
+        int startedInPeriod = 0;
+        List<UptimeReportDto.OutageDto> outages = new ArrayList<>();
+
+        for (Incident incident : incidents) {
+            downtime += incident.overlapSeconds(startTime, effectiveEnd, now);
+            if (!incident.startedAt().isBefore(startTime)) {
+                startedInPeriod++;
+            }
+            if (!incident.isOpen() && !incident.endedAt().isAfter(effectiveEnd)) {
+                recoveredCount++;
+                recoverySeconds += Duration.between(incident.startedAt(), incident.endedAt()).getSeconds();
+            }
+
+            outages.add(UptimeReportDto.OutageDto.builder()
+                    .startTime(incident.startedAt())
+                    .endTime(incident.endedAt())
+                    .durationSeconds(Duration.between(incident.startedAt(),
+                            incident.isOpen() ? now : incident.endedAt()).getSeconds())
+                    .reason(incident.reason())
+                    .build());
+        }
+
+        long uptime = Math.max(0, periodSeconds - downtime);
+
+        return UptimeReportDto.builder()
+                .monitorId(monitorId)
+                .reportStart(startTime)
+                .reportEnd(endTime)
+                .overallUptimePercentage(periodSeconds > 0 ? uptime * 100.0 / periodSeconds : 100.0)
+                .totalDowntime(downtime)
+                .incidentCount(outages.size())
+                .mttrSeconds(recoveredCount > 0 ? recoverySeconds / recoveredCount : null)
+                .mtbfSeconds(startedInPeriod > 0 ? uptime / startedInPeriod : null)
+                .outages(outages)
+                .build();
+    }
+
+    private MonitorSummaryDto toSummary(Long monitorId, List<HourlyStatsDto> sparkline) {
+        long total = 0;
+        long successful = 0;
+        double responseTimeSum = 0;
+        long responseTimeWeight = 0;
+
+        for (HourlyStatsDto hour : sparkline) {
+            total += hour.getTotalPings();
+            successful += hour.getSuccessfulPings();
+            if (hour.getAverageResponseTime() != null) {
+                // Взвешиваем среднее часа числом успешных пингов, чтобы не переоценивать редкие часы
+                responseTimeSum += hour.getAverageResponseTime() * hour.getSuccessfulPings();
+                responseTimeWeight += hour.getSuccessfulPings();
+            }
+        }
+
+        return MonitorSummaryDto.builder()
+                .monitorId(monitorId)
+                .totalPings(total)
+                .successfulPings(successful)
+                .failedPings(total - successful)
+                .uptimePercentage(total > 0 ? (successful * 100.0) / total : 0.0)
+                .averageResponseTime(responseTimeWeight > 0 ? responseTimeSum / responseTimeWeight : null)
+                .sparkline(sparkline)
+                .build();
+    }
+
+    // Размер кэшируемого чанка: час минутных бакетов, сутки часовых, 30 суток суточных
+    private long cacheChunkSeconds(ChartResolution resolution) {
+        return switch (resolution) {
+            case MINUTE -> HOUR_SECONDS;
+            case HOUR -> DAY_SECONDS;
+            default -> 30 * DAY_SECONDS;
+        };
+    }
+
+    private ChartResolution selectResolution(LocalDateTime startTime, LocalDateTime endTime) {
+        long rangeSeconds = Duration.between(startTime, endTime).getSeconds();
+
+        for (ChartResolution candidate : List.of(ChartResolution.DAY, ChartResolution.HOUR, ChartResolution.MINUTE)) {
+            if (rangeSeconds / candidate.getBucketSeconds() >= chartMinPoints) {
+                return retainedFrom(candidate, startTime);
+            }
+        }
+        return ChartResolution.RAW;
+    }
+
+    /**
+     * Поминутный rollup хранится 90 дней: для более старого начала периода берётся часовой,
+     * иначе график молча оказался бы пустым при наличии часовых данных
+     */
+    private ChartResolution retainedFrom(ChartResolution candidate, LocalDateTime startTime) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        ChartResolution resolution = candidate;
+        if (resolution == ChartResolution.MINUTE && !resolution.retains(startTime, now)) {
+            resolution = ChartResolution.HOUR;
+        }
+        if (resolution == ChartResolution.HOUR && !resolution.retains(startTime, now)) {
+            resolution = ChartResolution.DAY;
+        }
+        return resolution;
+    }
 }
@@ -0,0 +1,168 @@
+package team.kaleni.ping.tower.backend.statistics_service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClosedBucketCacheTest {
+
+    private static final long HOUR = 3600;
+    private static final long DAY = 86400;
+
+    private record Bucket(Long monitorId, LocalDateTime hour, int load) {
+    }
+
+    private record Call(Set<Long> monitorIds, LocalDateTime startTime, LocalDateTime endTime) {
+    }
+
+    /**
+     * Загрузчик, отдающий по бакету на каждый час периода; load - номер вызова
+     */
+    private static class HourlyLoader implements ClosedBucketCache.BatchRangeLoader<Bucket> {
+
+        private final List<Call> calls = new ArrayList<>();
+
+        @Override
+        public Map<Long, List<Bucket>> load(Collection<Long> monitorIds, LocalDateTime startTime,
+                                            LocalDateTime endTime) {
+            calls.add(new Call(Set.copyOf(monitorIds), startTime, endTime));
+            Map<Long, List<Bucket>> result = new LinkedHashMap<>();
+            for (Long monitorId : monitorIds) {
+                List<Bucket> buckets = new ArrayList<>();
+                for (LocalDateTime hour = startTime.truncatedTo(ChronoUnit.HOURS); !hour.isAfter(endTime);
+                     hour = hour.plusHours(1)) {
+                    buckets.add(new Bucket(monitorId, hour, calls.size()));
+                }
+                result.put(monitorId, buckets);
+            }
+            return result;
+        }
+    }
+
+    private final HourlyLoader loader = new HourlyLoader();
+
+    @Test
+    void floorsStartToBucketAndServesRepeatFromCache() {
+        ClosedBucketCache cache = cache(Duration.ofMinutes(5));
+        LocalDateTime day = dayStart(-3);
+
+        List<Bucket> first = get(cache, List.of(1L), day.plusMinutes(90), day.plusDays(1).minusSeconds(1)).get(1L);
+
+        // 01:30 округляется до бакета 01:00; чанк загружается целиком
+        assertEquals(List.of(new Call(Set.of(1L), day, day.plusDays(1).minusSeconds(1))), loader.calls);
+        assertEquals(23, first.size());
+        assertEquals(day.plusHours(1), first.get(0).hour());
+
+        List<Bucket> second = get(cache, List.of(1L), day.plusHours(5), day.plusHours(10)).get(1L);
+
+        assertEquals(1, loader.calls.size());
+        assertEquals(hours(day.plusHours(5), day.plusHours(10)), hoursOf(second));
+    }
+
+    @Test
+    void doesNotCacheChunkWithinGracePeriod() {
+        // Чанк закончился меньше grace назад - он ещё открыт и читается заново при каждом запросе
+        ClosedBucketCache cache = cache(Duration.ofDays(3));
+        LocalDateTime day = dayStart(-3);
+
+        get(cache, List.of(1L), day, day.plusDays(1).minusSeconds(1));
+        get(cache, List.of(1L), day, day.plusDays(1).minusSeconds(1));
+
+        assertEquals(2, loader.calls.size());
+        assertEquals(new Call(Set.of(1L), day, day.plusDays(1).minusSeconds(1)), loader.calls.get(1));
+    }
+
+    @Test
+    void splitsCachedChunksFromOpenTail() {
+        ClosedBucketCache cache = cache(Duration.ZERO);
+        LocalDateTime from = dayStart(-2);
+        LocalDateTime today = dayStart(0);
+        LocalDateTime end = today.plusMinutes(30);
+
+        List<Bucket> first = get(cache, List.of(1L), from, end).get(1L);
+
+        assertEquals(List.of(
+                new Call(Set.of(1L), from, today.minusSeconds(1)),
+                new Call(Set.of(1L), today, end)), loader.calls);
+        // На границе чанков и хвоста бакеты не теряются и не дублируются
+        assertEquals(hours(from, end), hoursOf(first));
+
+        List<Bucket> second = get(cache, List.of(1L), from, end).get(1L);
+
+        // Повторно читается только открытый хвост
+        assertEquals(3, loader.calls.size());
+        assertEquals(new Call(Set.of(1L), today, end), loader.calls.get(2));
+        assertEquals(hours(from, end), hoursOf(second));
+    }
+
+    @Test
+    void loadsOnlyMissingChunksForMonitorBatch() {
+        ClosedBucketCache cache = cache(Duration.ofMinutes(5));
+        LocalDateTime from = dayStart(-3);
+        LocalDateTime end = dayStart(-1).minusSeconds(1);
+
+        get(cache, List.of(1L), from, from.plusDays(1).minusSeconds(1));
+        Map<Long, List<Bucket>> result = get(cache, List.of(1L, 2L), from, end);
+
+        // Один запрос на оба монитора - от первого до последнего недостающего чанка
+        assertEquals(2, loader.calls.size());
+        assertEquals(new Call(Set.of(1L, 2L), from, end), loader.calls.get(1));
+
+        assertEquals(hours(from, end), hoursOf(result.get(1L)));
+        assertEquals(hours(from, end), hoursOf(result.get(2L)));
+        // Закэшированный чанк монитора 1 не перезаписан данными второго запроса
+        assertEquals(1, result.get(1L).get(0).load());
+        assertEquals(2, result.get(1L).get(24).load());
+        assertEquals(2, result.get(2L).get(0).load());
+    }
+
+    // Helper methods
+
+    private ClosedBucketCache cache(Duration grace) {
+        // Redis выключен - провайдер шаблона не нужен
+        ClosedBucketCache cache = new ClosedBucketCache(new SimpleMeterRegistry(), new ObjectMapper(), null);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 1000L);
+        ReflectionTestUtils.setField(cache, "expireAfterWrite", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(cache, "grace", grace);
+        ReflectionTestUtils.setField(cache, "redisEnabled", false);
+        cache.init();
+        return cache;
+    }
+
+    private Map<Long, List<Bucket>> get(ClosedBucketCache cache, List<Long> monitorIds,
+                                        LocalDateTime startTime, LocalDateTime endTime) {
+        return cache.getRanges("hourly", monitorIds, startTime, endTime, HOUR, DAY, Bucket.class,
+                Bucket::hour, loader);
+    }
+
+    private static LocalDateTime dayStart(int days) {
+        return LocalDateTime.now(ZoneOffset.UTC).truncatedTo(ChronoUnit.DAYS).plusDays(days);
+    }
+
+    private static List<LocalDateTime> hours(LocalDateTime from, LocalDateTime to) {
+        List<LocalDateTime> hours = new ArrayList<>();
+        for (LocalDateTime hour = from.truncatedTo(ChronoUnit.HOURS); !hour.isAfter(to); hour = hour.plusHours(1)) {
+            hours.add(hour);
+        }
+        return hours;
+    }
+
+    private static List<LocalDateTime> hoursOf(List<Bucket> buckets) {
+        return buckets.stream().map(Bucket::hour).toList();
+    }
+}
@@ -0,0 +1,106 @@
+package team.kaleni.ping.tower.backend.statistics_service.incident;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncidentSegmenterTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 10, 1, 12, 0);
+
+    @Test
+    void opensOnFailureAndClosesOnUp() {
+        IncidentSegmenter segmenter = new IncidentSegmenter(Map.of());
+
+        segmenter.accept(1L, at(0), "UP", null);
+        segmenter.accept(1L, at(1), "DOWN", "HTTP 503");
+        segmenter.accept(1L, at(2), "TIMEOUT", "Read timed out");
+        segmenter.accept(1L, at(3), "UP", null);
+
+        // Причина - ошибка первого неуспешного пинга
+        assertEquals(List.of(new Incident(1L, at(1), at(3), "HTTP 503")), segmenter.changedIncidents(Map.of()));
+        assertTrue(segmenter.getOpenIncidents().isEmpty());
+    }
+
+    @Test
+    void usesStatusAsReasonWithoutErrorMessage() {
+        IncidentSegmenter segmenter = new IncidentSegmenter(Map.of());
+
+        segmenter.accept(1L, at(0), "ERROR", " ");
+
+        assertEquals(List.of(new Incident(1L, at(0), null, "ERROR")), segmenter.changedIncidents(Map.of()));
+    }
+
+    @Test
+    void unknownInsideIncidentNeitherClosesNorSplitsIt() {
+        IncidentSegmenter segmenter = new IncidentSegmenter(Map.of());
+
+        segmenter.accept(1L, at(0), "DOWN", "HTTP 500");
+        segmenter.accept(1L, at(1), "UNKNOWN", null);
+        segmenter.accept(1L, at(2), "DOWN", "HTTP 502");
+        segmenter.accept(1L, at(3), "UNKNOWN", null);
+        segmenter.accept(1L, at(4), "UP", null);
+
+        assertEquals(List.of(new Incident(1L, at(0), at(4), "HTTP 500")), segmenter.changedIncidents(Map.of()));
+    }
+
+    @Test
+    void unknownAloneDoesNotOpenIncident() {
+        IncidentSegmenter segmenter = new IncidentSegmenter(Map.of());
+
+        segmenter.accept(1L, at(0), "UNKNOWN", null);
+        segmenter.accept(1L, at(1), "UP", null);
+
+        assertTrue(segmenter.changedIncidents(Map.of()).isEmpty());
+    }
+
+    @Test
+    void seededIncidentThatNeverClosesIsNotReturnedAgain() {
+        Incident seeded = new Incident(1L, at(-30), null, "HTTP 503");
+        Map<Long, Incident> open = Map.of(1L, seeded);
+        IncidentSegmenter segmenter = new IncidentSegmenter(open);
+
+        segmenter.accept(1L, at(0), "DOWN", "Connection refused");
+        segmenter.accept(1L, at(1), "UNKNOWN", null);
+
+        assertTrue(segmenter.changedIncidents(open).isEmpty());
+        // Инцидент остаётся открытым с исходными началом и причиной
+        assertEquals(seeded, segmenter.getOpenIncidents().get(1L));
+    }
+
+    @Test
+    void seededIncidentClosesOnUp() {
+        Map<Long, Incident> open = Map.of(1L, new Incident(1L, at(-30), null, "HTTP 503"));
+        IncidentSegmenter segmenter = new IncidentSegmenter(open);
+
+        segmenter.accept(1L, at(0), "UP", null);
+
+        assertEquals(List.of(new Incident(1L, at(-30), at(0), "HTTP 503")), segmenter.changedIncidents(open));
+    }
+
+    @Test
+    void tracksMonitorsIndependently() {
+        IncidentSegmenter segmenter = new IncidentSegmenter(Map.of());
+
+        segmenter.accept(1L, at(0), "DOWN", "a");
+        segmenter.accept(1L, at(1), "UP", null);
+        segmenter.accept(1L, at(2), "DOWN", "b");
+        segmenter.accept(2L, at(0), "TIMEOUT", null);
+
+        List<Incident> changed = segmenter.changedIncidents(Map.of());
+
+        assertEquals(3, changed.size());
+        assertEquals(new Incident(1L, at(0), at(1), "a"), changed.get(0));
+        assertTrue(changed.contains(new Incident(1L, at(2), null, "b")));
+        assertTrue(changed.contains(new Incident(2L, at(0), null, "TIMEOUT")));
+    }
+
+    private static LocalDateTime at(int minutes) {
+        return T0.plusMinutes(minutes);
+    }
+}
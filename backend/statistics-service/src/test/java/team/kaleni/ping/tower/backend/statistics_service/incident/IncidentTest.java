@@ -0,0 +1,65 @@
+package team.kaleni.ping.tower.backend.statistics_service.incident;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncidentTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 10, 1, 0, 0);
+    private static final LocalDateTime TO = FROM.plusDays(1);
+
+    @Test
+    void countsIncidentInsideWindowFully() {
+        Incident incident = new Incident(1L, FROM.plusHours(1), FROM.plusHours(1).plusMinutes(5), "HTTP 503");
+
+        assertEquals(300L, incident.overlapSeconds(FROM, TO, TO));
+    }
+
+    @Test
+    void clipsIncidentToReportWindow() {
+        Incident startedBefore = new Incident(1L, FROM.minusHours(2), FROM.plusMinutes(10), "HTTP 503");
+        Incident endedAfter = new Incident(1L, TO.minusMinutes(20), TO.plusHours(3), "HTTP 503");
+        Incident spanning = new Incident(1L, FROM.minusDays(1), TO.plusDays(1), "HTTP 503");
+
+        assertEquals(600L, startedBefore.overlapSeconds(FROM, TO, TO));
+        assertEquals(1200L, endedAfter.overlapSeconds(FROM, TO, TO));
+        assertEquals(86400L, spanning.overlapSeconds(FROM, TO, TO));
+    }
+
+    @Test
+    void ignoresIncidentOutsideWindow() {
+        Incident before = new Incident(1L, FROM.minusHours(2), FROM.minusHours(1), "HTTP 503");
+        Incident after = new Incident(1L, TO, TO.plusHours(1), "HTTP 503");
+
+        assertEquals(0L, before.overlapSeconds(FROM, TO, TO));
+        assertEquals(0L, after.overlapSeconds(FROM, TO, TO));
+    }
+
+    @Test
+    void openIncidentLastsUntilNow() {
+        LocalDateTime now = FROM.plusHours(12);
+        Incident open = new Incident(1L, now.minusMinutes(30), null, "Connection refused");
+
+        assertEquals(1800L, open.overlapSeconds(FROM, TO, now));
+        // Отчёт за прошлый период обрезает открытый инцидент концом периода
+        assertEquals(600L, open.overlapSeconds(FROM, now.minusMinutes(20), now));
+    }
+
+    @Test
+    void isOpenAtIncludesStartAndExcludesEnd() {
+        Incident closed = new Incident(1L, FROM, FROM.plusMinutes(5), "HTTP 503");
+        Incident open = new Incident(1L, FROM, null, "HTTP 503");
+
+        assertFalse(closed.isOpenAt(FROM.minusSeconds(1)));
+        assertTrue(closed.isOpenAt(FROM));
+        assertFalse(closed.isOpenAt(FROM.plusMinutes(5)));
+        assertTrue(open.isOpenAt(TO.plusDays(30)));
+        assertTrue(open.isOpen());
+        assertFalse(closed.isOpen());
+    }
+}
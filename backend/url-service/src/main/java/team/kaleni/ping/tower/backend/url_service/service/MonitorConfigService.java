@@ -4,10 +4,9 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import team.kaleni.ping.tower.backend.url_service.codec.MonitorRecordCodec;
 import team.kaleni.ping.tower.backend.url_service.entity.Monitor;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 @Service
@@ -16,8 +15,11 @@ import java.util.concurrent.TimeUnit;
 public class MonitorConfigService {
 
     private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
 
     private static final String CONFIG_KEY_PREFIX = "monitor:config:";
+    // Ping Service держит локальный кэш конфигураций и сбрасывает запись по этому каналу
+    private static final String INVALIDATION_CHANNEL = "monitor:config:invalidate";
 
     /**
      * Сохранить конфигурацию монитора в Redis для Ping Service
@@ -25,21 +27,23 @@ public class MonitorConfigService {
     public void saveMonitorConfig(Monitor monitor) {
         String configKey = CONFIG_KEY_PREFIX + monitor.getId();
 
-        Map<String, Object> config = new HashMap<>();
-        config.put("monitorId", monitor.getId());
-        config.put("ownerId", monitor.getOwnerId());
-        config.put("name", monitor.getName());
-        config.put("url", monitor.getUrl());
-        config.put("method", monitor.getMethod().name());
-        config.put("headers", monitor.getHeaders());
-        config.put("requestBody", monitor.getRequestBody());
-        config.put("contentType", monitor.getContentType());
-        config.put("timeoutMs", monitor.getTimeoutMs());
-        config.put("intervalSeconds", monitor.getIntervalSeconds());
-        config.put("enabled", monitor.getEnabled());
+        byte[] config = MonitorRecordCodec.encodeConfig(new MonitorRecordCodec.ConfigRecord(
+                monitor.getId(),
+                monitor.getOwnerId() != null ? monitor.getOwnerId() : 0L,
+                monitor.getName(),
+                monitor.getUrl(),
+                monitor.getMethod().name(),
+                monitor.getHeaders(),
+                monitor.getRequestBody(),
+                monitor.getContentType(),
+                monitor.getTimeoutMs(),
+                monitor.getIntervalSeconds(),
+                Boolean.TRUE.equals(monitor.getEnabled())
+        ));
 
         try {
-            redisTemplate.opsForValue().set(configKey, config, 30, TimeUnit.DAYS);
+            binaryRedisTemplate.opsForValue().set(configKey, config, 30, TimeUnit.DAYS);
+            publishInvalidation(monitor.getId());
             log.debug("Saved config for monitor {} to Redis", monitor.getId());
         } catch (Exception e) {
             log.error("Error saving config for monitor {}: {}", monitor.getId(), e.getMessage());
@@ -54,6 +58,7 @@ public class MonitorConfigService {
 
         try {
             redisTemplate.delete(configKey);
+            publishInvalidation(monitorId);
             log.debug("Deleted config for monitor {} from Redis", monitorId);
         } catch (Exception e) {
             log.error("Error deleting config for monitor {}: {}", monitorId, e.getMessage());
@@ -67,5 +72,8 @@ public class MonitorConfigService {
         // Просто перезаписываем конфигурацию
         saveMonitorConfig(monitor);
     }
-}
 
+    private void publishInvalidation(Long monitorId) {
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, monitorId);
+    }
+}
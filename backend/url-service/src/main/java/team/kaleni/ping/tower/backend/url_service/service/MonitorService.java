@@ -17,9 +17,11 @@ import team.kaleni.ping.tower.backend.url_service.entity.MonitorGroup;
 import team.kaleni.ping.tower.backend.url_service.entity.PingStatus;
 import team.kaleni.ping.tower.backend.url_service.repository.MonitorGroupRepository;
 import team.kaleni.ping.tower.backend.url_service.repository.MonitorRepository;
+import team.kaleni.ping.tower.backend.url_service.schedule.PingSchedulePolicy;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 @Service
 @RequiredArgsConstructor
@@ -90,8 +92,9 @@ public class MonitorService {
             // 7) Initialize status in Redis
             monitorStatusService.initializeStatus(saved.getId());
 
-            // 8) Add to ping queue (first ping in immediately )
-            Instant firstPing = Instant.now();
+            // 8) Add to ping queue (first ping within a minute, spread by monitor phase)
+            Instant firstPing = Instant.ofEpochMilli(PingSchedulePolicy.initialRun(
+                    saved.getId(), saved.getIntervalSeconds(), System.currentTimeMillis()));
             monitorStatusService.addToPingQueue(saved.getId(), firstPing);
 
             log.info("Monitor {} initialized in Redis with first ping at {}", saved.getId(), firstPing);
@@ -121,12 +124,12 @@ public class MonitorService {
     public List<MonitorDetailResponse> getAllMonitors(Integer ownerId) {
         List<Monitor> monitors = monitorRepository.findByOwnerId(ownerId);
 
+        // Statuses of all monitors from Redis in one round trip
+        Map<Long, MonitorStatusDTO> statuses = monitorStatusService.getStatuses(
+                monitors.stream().map(Monitor::getId).toList());
+
         return monitors.stream()
-                .map(monitor -> {
-                    // Get status from Redis for each monitor
-                    Optional<MonitorStatusDTO> statusOpt = monitorStatusService.getStatus(monitor.getId());
-                    return mapToDetailResponse(monitor, statusOpt.orElse(null));
-                })
+                .map(monitor -> mapToDetailResponse(monitor, statuses.get(monitor.getId())))
                 .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
                 .toList();
     }
@@ -213,7 +216,7 @@ public class MonitorService {
                 log.info("Monitor {} disabled and removed from ping queue", monitorId);
             } else {
                 // Add to ping queue if enabled
-                Instant nextPing = Instant.now().plusSeconds(30);
+                Instant nextPing = initialPingAfterEnable(existingMonitor);
                 monitorStatusService.addToPingQueue(monitorId, nextPing);
                 log.info("Monitor {} enabled and added to ping queue", monitorId);
             }
@@ -249,7 +252,8 @@ public class MonitorService {
         if (intervalChanged && savedMonitor.getEnabled()) {
             // Remove old schedule and add new one
             monitorStatusService.removeFromPingQueue(monitorId);
-            Instant nextPing = Instant.now().plusSeconds(savedMonitor.getIntervalSeconds());
+            Instant nextPing = Instant.ofEpochMilli(PingSchedulePolicy.nextRun(
+                    monitorId, savedMonitor.getIntervalSeconds(), System.currentTimeMillis()));
             monitorStatusService.addToPingQueue(monitorId, nextPing);
             log.info("Monitor {} ping schedule updated with new interval: {} seconds", monitorId, savedMonitor.getIntervalSeconds());
         }
@@ -301,7 +305,7 @@ public class MonitorService {
 
         if (enabled) {
             // Add to ping queue
-            Instant nextPing = Instant.now().plusSeconds(30);
+            Instant nextPing = initialPingAfterEnable(saved);
             monitorStatusService.addToPingQueue(monitorId, nextPing);
         } else {
             // Remove from ping queue
@@ -311,6 +315,14 @@ public class MonitorService {
         log.info("Monitor {} {} for owner {}", monitorId, enabled ? "enabled" : "disabled", ownerId);
     }
 
+    /**
+     * Первый пинг после включения: не раньше чем через 30 секунд, со смещением по фазе монитора
+     */
+    private Instant initialPingAfterEnable(Monitor monitor) {
+        return Instant.ofEpochMilli(PingSchedulePolicy.initialRun(
+                monitor.getId(), monitor.getIntervalSeconds(), System.currentTimeMillis() + 30_000));
+    }
+
     // 3. testMonitorConfiguration - проверка через PingService
     private boolean testMonitorConfiguration(Monitor monitor) {
         try {
@@ -376,11 +388,11 @@ public class MonitorService {
 
         List<Monitor> monitors = monitorRepository.findByGroup(group);
 
+        Map<Long, MonitorStatusDTO> statuses = monitorStatusService.getStatuses(
+                monitors.stream().map(Monitor::getId).toList());
+
         return monitors.stream()
-                .map(monitor -> {
-                    Optional<MonitorStatusDTO> statusOpt = monitorStatusService.getStatus(monitor.getId());
-                    return mapToDetailResponse(monitor, statusOpt.orElse(null));
-                })
+                .map(monitor -> mapToDetailResponse(monitor, statuses.get(monitor.getId())))
                 .toList();
     }
 }
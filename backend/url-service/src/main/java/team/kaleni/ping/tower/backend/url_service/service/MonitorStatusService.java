@@ -4,10 +4,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
+import team.kaleni.ping.tower.backend.url_service.codec.MonitorRecordCodec;
 import team.kaleni.ping.tower.backend.url_service.dto.inner.MonitorStatusDTO;
 import team.kaleni.ping.tower.backend.url_service.entity.PingStatus;
+import team.kaleni.ping.tower.backend.url_service.schedule.PingSchedulePolicy;
 
 import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
 
@@ -17,9 +23,13 @@ import java.util.concurrent.TimeUnit;
 public class MonitorStatusService {
 
     private final RedisTemplate<String, Object> redisTemplate;
+    // Статусы хранятся в компактном бинарном формате MonitorRecordCodec
+    private final RedisTemplate<String, byte[]> binaryRedisTemplate;
 
     private static final String STATUS_KEY_PREFIX = "monitor:status:";
     private static final String QUEUE_KEY = "ping:queue";
+    // Мониторы, захваченные Ping Service под аренду
+    private static final String INFLIGHT_KEY = "ping:inflight";
 
     public void updateStatus(Long monitorId, PingStatus status, Integer responseTimeMs,
                              Integer responseCode, String errorMessage) {
@@ -34,7 +44,7 @@ public class MonitorStatusService {
                 .errorMessage(errorMessage)
                 .build();
 
-        redisTemplate.opsForValue().set(key, statusDto, 7, TimeUnit.DAYS);
+        binaryRedisTemplate.opsForValue().set(key, encode(statusDto), 7, TimeUnit.DAYS);
         log.debug("Updated status for monitor {}: {}", monitorId, status);
     }
 
@@ -42,44 +52,57 @@ public class MonitorStatusService {
         String key = STATUS_KEY_PREFIX + monitorId;
 
         try {
-            Object rawValue = redisTemplate.opsForValue().get(key);
+            return Optional.ofNullable(decode(binaryRedisTemplate.opsForValue().get(key)));
+        } catch (Exception e) {
+            log.warn("Error reading status for monitor {}, returning empty: {}", monitorId, e.getMessage());
+            return Optional.empty();
+        }
+    }
 
-            if (rawValue == null) {
-                return Optional.empty();
-            }
+    /**
+     * Статусы списка мониторов одним MGET; мониторы без статуса в результат не попадают
+     */
+    public Map<Long, MonitorStatusDTO> getStatuses(List<Long> monitorIds) {
+        if (monitorIds.isEmpty()) return Collections.emptyMap();
 
-            // 🔥 Теперь всегда ожидаем Map
-            if (rawValue instanceof java.util.Map) {
-                java.util.Map<String, Object> map = (java.util.Map<String, Object>) rawValue;
-
-                MonitorStatusDTO statusDto = MonitorStatusDTO.builder()
-                        .status(parseStatus(map.get("status")))
-                        .lastCheckedAt(parseInstant(map.get("lastCheckedAt")))
-                        .responseTimeMs(parseInteger(map.get("responseTimeMs")))
-                        .responseCode(parseInteger(map.get("responseCode")))
-                        .errorMessage(parseString(map.get("errorMessage")))
-                        .build();
-
-                return Optional.of(statusDto);
-            } else {
-                log.warn("Unexpected data format for monitor {} status: {}", monitorId, rawValue.getClass());
-                return Optional.empty();
+        try {
+            List<String> keys = monitorIds.stream()
+                    .map(id -> STATUS_KEY_PREFIX + id)
+                    .toList();
+            List<byte[]> rawValues = binaryRedisTemplate.opsForValue().multiGet(keys);
+
+            Map<Long, MonitorStatusDTO> statuses = new HashMap<>();
+            if (rawValues == null) return statuses;
+
+            for (int i = 0; i < monitorIds.size(); i++) {
+                try {
+                    MonitorStatusDTO status = decode(rawValues.get(i));
+                    if (status != null) {
+                        statuses.put(monitorIds.get(i), status);
+                    }
+                } catch (Exception e) {
+                    log.warn("Error reading status for monitor {}, skipping: {}", monitorIds.get(i), e.getMessage());
+                }
             }
+            return statuses;
 
         } catch (Exception e) {
-            log.warn("Error reading status for monitor {}, returning empty: {}", monitorId, e.getMessage());
-            return Optional.empty();
+            log.warn("Error reading statuses for {} monitors, returning empty: {}", monitorIds.size(), e.getMessage());
+            return Collections.emptyMap();
         }
     }
 
 
     public void addToPingQueue(Long monitorId, Instant nextPingTime) {
-        redisTemplate.opsForZSet().add(QUEUE_KEY, monitorId.toString(), nextPingTime.getEpochSecond());
+        redisTemplate.opsForZSet().add(QUEUE_KEY, monitorId.toString(),
+                PingSchedulePolicy.toScore(nextPingTime.toEpochMilli()));
         log.debug("Added monitor {} to ping queue with next ping at {}", monitorId, nextPingTime);
     }
 
     public void removeFromPingQueue(Long monitorId) {
         redisTemplate.opsForZSet().remove(QUEUE_KEY, monitorId.toString());
+        // Снимаем аренду, чтобы Ping Service не вернул монитор в очередь после текущей проверки
+        redisTemplate.opsForZSet().remove(INFLIGHT_KEY, monitorId.toString());
         log.debug("Removed monitor {} from ping queue", monitorId);
     }
 
@@ -93,15 +116,36 @@ public class MonitorStatusService {
                 .build();
 
         String key = STATUS_KEY_PREFIX + monitorId;
-        redisTemplate.opsForValue().set(key, initialStatus, 7, TimeUnit.DAYS);
+        binaryRedisTemplate.opsForValue().set(key, encode(initialStatus), 7, TimeUnit.DAYS);
         log.info("Initialized status for monitor {}", monitorId);
     }
 
     // Helper methods
-    private PingStatus parseStatus(Object obj) {
-        if (obj == null) return PingStatus.UNKNOWN;
+    private byte[] encode(MonitorStatusDTO status) {
+        return MonitorRecordCodec.encodeStatus(new MonitorRecordCodec.StatusRecord(
+                status.getStatus() != null ? status.getStatus().name() : PingStatus.UNKNOWN.name(),
+                status.getLastCheckedAt(),
+                status.getResponseTimeMs(),
+                status.getResponseCode(),
+                status.getErrorMessage()));
+    }
+
+    private MonitorStatusDTO decode(byte[] rawValue) {
+        MonitorRecordCodec.StatusRecord record = MonitorRecordCodec.decodeStatus(rawValue);
+        if (record == null) return null;
+
+        return MonitorStatusDTO.builder()
+                .status(parseStatus(record.status()))
+                .lastCheckedAt(record.lastCheckedAt())
+                .responseTimeMs(record.responseTimeMs())
+                .responseCode(record.responseCode())
+                .errorMessage(record.errorMessage())
+                .build();
+    }
+
+    private PingStatus parseStatus(String statusStr) {
+        if (statusStr == null) return PingStatus.UNKNOWN;
 
-        String statusStr = obj.toString();
         try {
             return PingStatus.valueOf(statusStr);
         } catch (IllegalArgumentException e) {
@@ -109,33 +153,4 @@ public class MonitorStatusService {
             return PingStatus.UNKNOWN;
         }
     }
-
-    private Instant parseInstant(Object obj) {
-        if (obj == null) return null;
-
-        try {
-            return Instant.parse(obj.toString());
-        } catch (Exception e) {
-            log.warn("Failed to parse Instant: {}", obj);
-            return null;
-        }
-    }
-
-    private Integer parseInteger(Object obj) {
-        if (obj == null) return null;
-        if (obj instanceof Integer) return (Integer) obj;
-        if (obj instanceof Number) return ((Number) obj).intValue();
-        if (obj instanceof String) {
-            try {
-                return Integer.parseInt((String) obj);
-            } catch (NumberFormatException e) {
-                return null;
-            }
-        }
-        return null;
-    }
-
-    private String parseString(Object obj) {
-        return obj != null ? obj.toString() : null;
-    }
 }
@@ -0,0 +1,135 @@
+-- clickhouse/init/03-ping-stats-rollups.sql
+-- Поминутный и посуточный rollup для графиков на длинных периодах.
+-- Хранятся состояния агрегатных функций (AggregatingMergeTree), читаются через -Merge.
+-- Набор перцентилей (p50, p90, p95, p99) тот же, что у ping_stats_hourly_agg (06): индексы в запросах общие.
+-- Оба представления питаются напрямую от ping_results. Скрипт идемпотентен.
+-- Граница между представлениями и дозаполнением - фиксированный момент из rollup_boundaries:
+-- представления учитывают пинги не раньше него, дозаполнение - строго раньше, поэтому ни одна строка
+-- не теряется в бакете миграции и не учитывается дважды. Пинги раньше границы, вставленные уже после
+-- дозаполнения (запаздывающая запись, воспроизведение журнала), восстанавливает перестроение закрытых
+-- месяцев в Statistics Service (statistics.rollup.rebuild.*).
+
+USE ping_history;
+
+-- Отметки однократных миграций, чтобы повторный запуск скрипта не задвоил дозаполнение
+CREATE TABLE IF NOT EXISTS schema_migrations (
+    name String,
+    applied_at DateTime('UTC') DEFAULT now('UTC')
+) ENGINE = MergeTree()
+ORDER BY name;
+
+-- Моменты, с которых rollup питаются от представлений; записываются один раз
+CREATE TABLE IF NOT EXISTS rollup_boundaries (
+    name String,
+    boundary DateTime64(3, 'UTC')
+) ENGINE = MergeTree()
+ORDER BY name;
+
+INSERT INTO rollup_boundaries (name, boundary)
+SELECT 'ping_stats_rollups', now64(3, 'UTC')
+WHERE (SELECT count() FROM ping_history.rollup_boundaries WHERE name = 'ping_stats_rollups') = 0;
+
+CREATE TABLE IF NOT EXISTS ping_stats_minute (
+    monitor_id UInt32,
+    bucket DateTime('UTC'),
+    total_pings AggregateFunction(count),
+    successful_pings AggregateFunction(countIf, UInt8),
+    response_time_sum AggregateFunction(sumIf, UInt32, UInt8),
+    response_time_count AggregateFunction(countIf, UInt8),
+    min_response_time SimpleAggregateFunction(min, Nullable(UInt32)),
+    max_response_time SimpleAggregateFunction(max, Nullable(UInt32)),
+    response_time_quantiles AggregateFunction(quantilesTDigestIf(0.5, 0.9, 0.95, 0.99), UInt32, UInt8)
+) ENGINE = AggregatingMergeTree()
+ORDER BY (monitor_id, bucket)
+PARTITION BY toYYYYMM(bucket)
+TTL bucket + INTERVAL 90 DAY;
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS ping_stats_minute_mv
+TO ping_stats_minute
+AS SELECT
+    monitor_id,
+    toStartOfMinute(ping_timestamp) AS bucket,
+    countState() AS total_pings,
+    countIfState(status = 'UP') AS successful_pings,
+    sumIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_sum,
+    countIfState(status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_count,
+    minIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS min_response_time,
+    maxIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS max_response_time,
+    quantilesTDigestIfState(0.5, 0.9, 0.95, 0.99)(assumeNotNull(response_time_ms),
+        status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_quantiles
+FROM ping_results
+WHERE ping_timestamp >= (SELECT min(boundary) FROM ping_history.rollup_boundaries WHERE name = 'ping_stats_rollups')
+GROUP BY monitor_id, bucket;
+
+-- Помесячные партиции, как у остальных rollup: закрытый месяц перестраивается подменой партиции
+CREATE TABLE IF NOT EXISTS ping_stats_daily (
+    monitor_id UInt32,
+    bucket DateTime('UTC'),
+    total_pings AggregateFunction(count),
+    successful_pings AggregateFunction(countIf, UInt8),
+    response_time_sum AggregateFunction(sumIf, UInt32, UInt8),
+    response_time_count AggregateFunction(countIf, UInt8),
+    min_response_time SimpleAggregateFunction(min, Nullable(UInt32)),
+    max_response_time SimpleAggregateFunction(max, Nullable(UInt32)),
+    response_time_quantiles AggregateFunction(quantilesTDigestIf(0.5, 0.9, 0.95, 0.99), UInt32, UInt8)
+) ENGINE = AggregatingMergeTree()
+ORDER BY (monitor_id, bucket)
+PARTITION BY toYYYYMM(bucket);
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS ping_stats_daily_mv
+TO ping_stats_daily
+AS SELECT
+    monitor_id,
+    toStartOfDay(ping_timestamp) AS bucket,
+    countState() AS total_pings,
+    countIfState(status = 'UP') AS successful_pings,
+    sumIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_sum,
+    countIfState(status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_count,
+    minIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS min_response_time,
+    maxIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS max_response_time,
+    quantilesTDigestIfState(0.5, 0.9, 0.95, 0.99)(assumeNotNull(response_time_ms),
+        status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_quantiles
+FROM ping_results
+WHERE ping_timestamp >= (SELECT min(boundary) FROM ping_history.rollup_boundaries WHERE name = 'ping_stats_rollups')
+GROUP BY monitor_id, bucket;
+
+-- Дозаполнение всего, что раньше границы; бакет, в который попала граница, складывается
+-- из состояний дозаполнения и представления
+INSERT INTO ping_stats_minute
+SELECT
+    monitor_id,
+    toStartOfMinute(ping_timestamp) AS bucket,
+    countState() AS total_pings,
+    countIfState(status = 'UP') AS successful_pings,
+    sumIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_sum,
+    countIfState(status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_count,
+    minIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS min_response_time,
+    maxIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS max_response_time,
+    quantilesTDigestIfState(0.5, 0.9, 0.95, 0.99)(assumeNotNull(response_time_ms),
+        status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_quantiles
+FROM ping_results
+WHERE ping_timestamp < (SELECT min(boundary) FROM ping_history.rollup_boundaries WHERE name = 'ping_stats_rollups')
+  AND ping_timestamp >= now('UTC') - INTERVAL 90 DAY
+  AND (SELECT count() FROM schema_migrations WHERE name = 'ping_stats_rollups_backfill') = 0
+GROUP BY monitor_id, bucket;
+
+INSERT INTO ping_stats_daily
+SELECT
+    monitor_id,
+    toStartOfDay(ping_timestamp) AS bucket,
+    countState() AS total_pings,
+    countIfState(status = 'UP') AS successful_pings,
+    sumIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_sum,
+    countIfState(status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_count,
+    minIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS min_response_time,
+    maxIf(response_time_ms, status = 'UP' AND response_time_ms IS NOT NULL) AS max_response_time,
+    quantilesTDigestIfState(0.5, 0.9, 0.95, 0.99)(assumeNotNull(response_time_ms),
+        status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_quantiles
+FROM ping_results
+WHERE ping_timestamp < (SELECT min(boundary) FROM ping_history.rollup_boundaries WHERE name = 'ping_stats_rollups')
+  AND (SELECT count() FROM schema_migrations WHERE name = 'ping_stats_rollups_backfill') = 0
+GROUP BY monitor_id, bucket;
+
+INSERT INTO schema_migrations (name)
+SELECT 'ping_stats_rollups_backfill'
+WHERE (SELECT count() FROM schema_migrations WHERE name = 'ping_stats_rollups_backfill') = 0;
@@ -0,0 +1,40 @@
+-- clickhouse/init/05-monitor-incidents.sql
+-- Инциденты мониторов (непрерывные серии неуспешных пингов), которые Statistics Service
+-- инкрементально выделяет из ping_results. Отчёты за месяц по тысячам мониторов читают эту таблицу,
+-- а не год сырых пингов. Скрипт идемпотентен.
+
+USE ping_history;
+
+-- Время вставки строки: по нему находятся пинги, записанные позже своего ping_timestamp
+-- (воспроизведение журнала Ping Service после недоступности ClickHouse).
+-- На томе с данными колонку добавлять в три шага, иначе старые строки читаются со временем запроса:
+--   ALTER TABLE ping_results ADD COLUMN inserted_at DateTime64(3, 'UTC') DEFAULT created_at;
+--   ALTER TABLE ping_results MATERIALIZE COLUMN inserted_at SETTINGS mutations_sync = 2;
+--   ALTER TABLE ping_results MODIFY COLUMN inserted_at DateTime64(3, 'UTC') DEFAULT now64(3, 'UTC');
+ALTER TABLE ping_results ADD COLUMN IF NOT EXISTS inserted_at DateTime64(3, 'UTC') DEFAULT now64(3, 'UTC');
+-- Части с давно вставленными строками пропускаются при поиске опоздавших
+ALTER TABLE ping_results ADD INDEX IF NOT EXISTS idx_inserted_at inserted_at TYPE minmax GRANULARITY 1;
+
+-- Одна строка на инцидент; открытый инцидент (ended_at IS NULL) перезаписывается закрытым с большей version.
+-- Инцидент, которого не стало после повторной разметки (опоздавшие пинги сдвинули его начало),
+-- перезаписывается строкой с deleted = 1
+CREATE TABLE IF NOT EXISTS monitor_incidents (
+    monitor_id UInt32,
+    started_at DateTime64(3, 'UTC'),
+    ended_at Nullable(DateTime64(3, 'UTC')),
+    reason Nullable(String),
+    version UInt64,
+    deleted UInt8 DEFAULT 0
+) ENGINE = ReplacingMergeTree(version)
+ORDER BY (monitor_id, started_at)
+PARTITION BY toYYYYMM(started_at);
+
+-- Граница, до которой ping_results уже разобраны на инциденты (по ping_timestamp),
+-- и время вставки, до которого опоздавшие строки уже учтены
+CREATE TABLE IF NOT EXISTS incident_watermark (
+    id UInt8,
+    processed_until DateTime64(3, 'UTC'),
+    inserted_until DateTime64(3, 'UTC'),
+    version UInt64
+) ENGINE = ReplacingMergeTree(version)
+ORDER BY id;
@@ -0,0 +1,83 @@
+-- clickhouse/init/06-ping-stats-hourly-agg.sql
+-- Почасовой rollup на AggregatingMergeTree: все метрики хранятся состояниями агрегатных функций
+-- и читаются через -Merge, поэтому фоновые слияния частей не искажают ни среднее, ни min/max, ни перцентили.
+-- Неуспешным считается любой статус, кроме UP (DOWN, ERROR, TIMEOUT).
+-- Единственный почасовой rollup: заменяет ping_stats_hourly (SummingMergeTree из 01), а также ping_stats_hourly_v2
+-- и ping_latency_hourly, если они были созданы на томе прежними версиями скриптов.
+-- Скрипт идемпотентен; перестроение закрытых месяцев выполняет Statistics Service (statistics.rollup.rebuild.*).
+-- Таблицы schema_migrations и rollup_boundaries создаются в 03-ping-stats-rollups.sql.
+
+USE ping_history;
+
+-- Представление учитывает пинги не раньше этого момента, дозаполнение - строго раньше
+INSERT INTO rollup_boundaries (name, boundary)
+SELECT 'ping_stats_hourly_agg', now64(3, 'UTC')
+WHERE (SELECT count() FROM ping_history.rollup_boundaries WHERE name = 'ping_stats_hourly_agg') = 0;
+
+CREATE TABLE IF NOT EXISTS ping_stats_hourly_agg (
+    monitor_id UInt32,
+    hour_timestamp DateTime('UTC'),
+    total_pings AggregateFunction(count),
+    successful_pings AggregateFunction(countIf, UInt8),
+    failed_pings AggregateFunction(countIf, UInt8),
+    response_time_count AggregateFunction(countIf, UInt8),
+    avg_response_time AggregateFunction(avgIf, UInt32, UInt8),
+    min_response_time AggregateFunction(minIf, UInt32, UInt8),
+    max_response_time AggregateFunction(maxIf, UInt32, UInt8),
+    response_time_quantiles AggregateFunction(quantilesTDigestIf(0.5, 0.9, 0.95, 0.99), UInt32, UInt8)
+) ENGINE = AggregatingMergeTree()
+ORDER BY (monitor_id, hour_timestamp)
+PARTITION BY toYYYYMM(hour_timestamp)
+TTL hour_timestamp + INTERVAL 1 YEAR;
+
+CREATE MATERIALIZED VIEW IF NOT EXISTS ping_stats_hourly_agg_mv
+TO ping_stats_hourly_agg
+AS SELECT
+    monitor_id,
+    toStartOfHour(ping_timestamp) AS hour_timestamp,
+    countState() AS total_pings,
+    countIfState(status = 'UP') AS successful_pings,
+    countIfState(status != 'UP') AS failed_pings,
+    countIfState(status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_count,
+    avgIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS avg_response_time,
+    minIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS min_response_time,
+    maxIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS max_response_time,
+    quantilesTDigestIfState(0.5, 0.9, 0.95, 0.99)(assumeNotNull(response_time_ms),
+        status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_quantiles
+FROM ping_results
+WHERE ping_timestamp >= (SELECT min(boundary) FROM ping_history.rollup_boundaries WHERE name = 'ping_stats_hourly_agg')
+GROUP BY monitor_id, hour_timestamp;
+
+-- Дозаполнение всего, что раньше границы, включая начало часа миграции: каждая строка попадает либо сюда,
+-- либо в представление. Пинги раньше границы, вставленные после дозаполнения, восстанавливает перестроение месяца
+INSERT INTO ping_stats_hourly_agg
+SELECT
+    monitor_id,
+    toStartOfHour(ping_timestamp) AS hour_timestamp,
+    countState() AS total_pings,
+    countIfState(status = 'UP') AS successful_pings,
+    countIfState(status != 'UP') AS failed_pings,
+    countIfState(status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_count,
+    avgIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS avg_response_time,
+    minIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS min_response_time,
+    maxIfState(assumeNotNull(response_time_ms), status = 'UP' AND response_time_ms IS NOT NULL) AS max_response_time,
+    quantilesTDigestIfState(0.5, 0.9, 0.95, 0.99)(assumeNotNull(response_time_ms),
+        status = 'UP' AND response_time_ms IS NOT NULL) AS response_time_quantiles
+FROM ping_results
+WHERE ping_timestamp < (SELECT min(boundary) FROM ping_history.rollup_boundaries WHERE name = 'ping_stats_hourly_agg')
+  AND (SELECT count() FROM schema_migrations WHERE name = 'ping_stats_hourly_agg_backfill') = 0
+GROUP BY monitor_id, hour_timestamp;
+
+INSERT INTO schema_migrations (name)
+SELECT 'ping_stats_hourly_agg_backfill'
+WHERE (SELECT count() FROM schema_migrations WHERE name = 'ping_stats_hourly_agg_backfill') = 0;
+
+-- Прежние почасовые rollup больше не читаются
+DROP VIEW IF EXISTS ping_stats_hourly_mv;
+DROP TABLE IF EXISTS ping_stats_hourly;
+DROP VIEW IF EXISTS ping_stats_hourly_v2_mv;
+DROP TABLE IF EXISTS ping_stats_hourly_v2;
+DROP VIEW IF EXISTS ping_latency_hourly_mv;
+DROP TABLE IF EXISTS ping_latency_hourly;
+-- Общая таблица перестроения заменена таблицами на каждый запуск (RollupRebuildService)
+DROP TABLE IF EXISTS ping_stats_hourly_agg_rebuild;
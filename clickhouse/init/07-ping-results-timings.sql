@@ -0,0 +1,13 @@
+-- clickhouse/init/07-ping-results-timings.sql
+-- Разбивка времени проверки по фазам (мс, последняя попытка). Фазы соединения (dns, connect, tls)
+-- пусты, если запрос ушёл по соединению из пула. Старые строки получают NULL. Скрипт идемпотентен.
+-- На существующем томе init-скрипты не запускаются - скрипт нужно выполнить вручную.
+-- Ping Service схему не меняет: пока колонок нет, он пишет строки без них.
+
+USE ping_history;
+
+ALTER TABLE ping_results ADD COLUMN IF NOT EXISTS dns_ms Nullable(Float32);
+ALTER TABLE ping_results ADD COLUMN IF NOT EXISTS connect_ms Nullable(Float32);
+ALTER TABLE ping_results ADD COLUMN IF NOT EXISTS tls_ms Nullable(Float32);
+ALTER TABLE ping_results ADD COLUMN IF NOT EXISTS ttfb_ms Nullable(Float32);
+ALTER TABLE ping_results ADD COLUMN IF NOT EXISTS download_ms Nullable(Float32);